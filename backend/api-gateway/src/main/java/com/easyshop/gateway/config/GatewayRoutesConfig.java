@@ -1,10 +1,20 @@
 package com.easyshop.gateway.config;
 
+import com.easyshop.gateway.filter.PrincipalOrIpKeyResolver;
+import com.easyshop.gateway.filter.ResponseCacheGatewayFilter;
+import com.easyshop.gateway.filter.TokenBucketRateLimiter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Configuration
 public class GatewayRoutesConfig {
@@ -27,14 +37,91 @@ public class GatewayRoutesConfig {
     @Value("${PURCHASES_ROUTE}")
     private String purchasesRoute;
 
+    @Value("${gateway.response-cache.ttl:30s}")
+    private Duration responseCacheTtl;
+
+    @Value("${gateway.response-cache.max-size:64MB}")
+    private DataSize responseCacheMaxSize;
+
+    @Value("${gateway.response-cache.max-entry-size:1MB}")
+    private DataSize responseCacheMaxEntrySize;
+
+    @Value("${gateway.rate-limit.auth.replenish-rate:10}")
+    private int authReplenishRate;
+
+    @Value("${gateway.rate-limit.auth.burst-capacity:20}")
+    private int authBurstCapacity;
+
+    @Value("${gateway.rate-limit.products.replenish-rate:100}")
+    private int productsReplenishRate;
+
+    @Value("${gateway.rate-limit.products.burst-capacity:200}")
+    private int productsBurstCapacity;
+
+    @Value("${gateway.rate-limit.purchases.replenish-rate:5}")
+    private int purchasesReplenishRate;
+
+    @Value("${gateway.rate-limit.purchases.burst-capacity:10}")
+    private int purchasesBurstCapacity;
+
+    /**
+     * Per-client limiter shared by all routes; each route sets its own limits below.
+     */
     @Bean
-    public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
+    public TokenBucketRateLimiter tokenBucketRateLimiter() {
+        return new TokenBucketRateLimiter(Duration.ofMinutes(1));
+    }
+
+    @Bean
+    public KeyResolver principalOrIpKeyResolver() {
+        return new PrincipalOrIpKeyResolver();
+    }
+
+    /**
+     * Shared cache for anonymous catalog reads; see {@link ResponseCacheGatewayFilter}.
+     */
+    @Bean
+    public ResponseCacheGatewayFilter productResponseCache() {
+        return new ResponseCacheGatewayFilter(responseCacheTtl, responseCacheMaxSize, responseCacheMaxEntrySize);
+    }
+
+    @Bean
+    public RouteLocator customRouteLocator(RouteLocatorBuilder builder, ResponseCacheGatewayFilter productResponseCache,
+                                           TokenBucketRateLimiter rateLimiter, KeyResolver principalOrIpKeyResolver) {
         return builder.routes()
                 .route("auth", r -> r.path(authRoute)
+                        .filters(f -> f.requestRateLimiter()
+                                .rateLimiter(TokenBucketRateLimiter.class, c -> c
+                                        .setReplenishRate(authReplenishRate)
+                                        .setBurstCapacity(authBurstCapacity))
+                                .configure(c -> c.setRateLimiter(rateLimiter).setKeyResolver(principalOrIpKeyResolver)))
                         .uri(authServiceUrl))
+                // Live stock changes (Server-Sent Events): never cached, and without a response
+                // timeout since the stream stays open; each event is flushed as it arrives
+                .route("product-stream", r -> r.path(productsRoute)
+                        .and().header(HttpHeaders.ACCEPT, ".*" + MediaType.TEXT_EVENT_STREAM_VALUE + ".*")
+                        .filters(f -> f.requestRateLimiter()
+                                .rateLimiter(TokenBucketRateLimiter.class, c -> c
+                                        .setReplenishRate(productsReplenishRate)
+                                        .setBurstCapacity(productsBurstCapacity))
+                                .configure(c -> c.setRateLimiter(rateLimiter).setKeyResolver(principalOrIpKeyResolver)))
+                        .metadata(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR, -1)
+                        .uri(productServiceUrl))
                 .route("products", r -> r.path(productsRoute)
+                        // Limit before the cache so a scraper cannot hide behind cache hits
+                        .filters(f -> f.requestRateLimiter()
+                                .rateLimiter(TokenBucketRateLimiter.class, c -> c
+                                        .setReplenishRate(productsReplenishRate)
+                                        .setBurstCapacity(productsBurstCapacity))
+                                .configure(c -> c.setRateLimiter(rateLimiter).setKeyResolver(principalOrIpKeyResolver))
+                                .filter(productResponseCache))
                         .uri(productServiceUrl))
                 .route("purchases", r -> r.path(purchasesRoute)
+                        .filters(f -> f.requestRateLimiter()
+                                .rateLimiter(TokenBucketRateLimiter.class, c -> c
+                                        .setReplenishRate(purchasesReplenishRate)
+                                        .setBurstCapacity(purchasesBurstCapacity))
+                                .configure(c -> c.setRateLimiter(rateLimiter).setKeyResolver(principalOrIpKeyResolver)))
                         .uri(purchaseServiceUrl))
                 .build();
     }
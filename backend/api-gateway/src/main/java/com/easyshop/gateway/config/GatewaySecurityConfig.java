@@ -1,23 +1,43 @@
 package com.easyshop.gateway.config;
 
+import com.easyshop.common.web.security.ClientCredentialsTokenManager;
+import com.easyshop.common.web.security.JwtAuthenticationCache;
+import com.easyshop.common.web.security.ManagementPort;
+import com.easyshop.common.web.security.RefreshingJwkSets;
+import com.easyshop.gateway.security.CachingReactiveClientCredentialsAuthorizedClientManager;
+import com.easyshop.gateway.security.CachingReactiveJwtAuthenticationManager;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.JWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.oauth2.client.*;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.endpoint.DefaultClientCredentialsTokenResponseClient;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtGrantedAuthoritiesConverterAdapter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -34,13 +54,20 @@ public class GatewaySecurityConfig {
      * Configures OAuth2 Resource Server with JWT validation and CORS support.
      */
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, ReactiveJwtDecoder jwtDecoder,
+                                                         Environment environment,
+                                                         @Value("${security.jwt.cache.max-size:10000}") long cacheSize,
+                                                         @Value("${security.jwt.cache.max-ttl:5m}") Duration cacheTtl) {
+        // Tokens seen before skip signature verification and claim conversion until they expire
+        JwtAuthenticationCache cache = new JwtAuthenticationCache(cacheSize, cacheTtl);
+        int managementPort = ManagementPort.of(environment);
         return http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .oauth2ResourceServer(oauth2 -> oauth2
                         .jwt(jwt -> jwt
-                                .jwtAuthenticationConverter(jwtAuthenticationConverter())
+                                .authenticationManager(new CachingReactiveJwtAuthenticationManager(
+                                        jwtDecoder, jwtAuthenticationConverter(), cache))
                         )
                 )
                 .authorizeExchange(exchanges -> exchanges
@@ -48,6 +75,7 @@ public class GatewaySecurityConfig {
                         .pathMatchers("/api/products/**").permitAll()
                         .pathMatchers("/api/cart/**").permitAll()
                         .pathMatchers("/actuator/health").permitAll()
+                        .matchers(exchange -> onPort(exchange, managementPort)).permitAll()
 
                         // Auth endpoints - handled by auth-service
                         .pathMatchers("/api/auth/**").permitAll()
@@ -66,6 +94,33 @@ public class GatewaySecurityConfig {
                 .build();
     }
 
+    private static Mono<ServerWebExchangeMatcher.MatchResult> onPort(ServerWebExchange exchange, int port) {
+        InetSocketAddress local = exchange.getRequest().getLocalAddress();
+        return port > 0 && local != null && local.getPort() == port
+                ? ServerWebExchangeMatcher.MatchResult.match()
+                : ServerWebExchangeMatcher.MatchResult.notMatch();
+    }
+
+    /**
+     * JWT decoder whose JWK set is refreshed in the background rather than on the request path.
+     * Only tokens missing from the authentication cache get here; verification runs off the
+     * event loop because an unknown signing key makes it fetch the JWK set synchronously.
+     */
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuer,
+            @Value("${security.jwt.jwk-set-ttl:5m}") Duration jwkSetTtl) {
+        JWTProcessor<SecurityContext> processor = RefreshingJwkSets.jwtProcessor(
+                RefreshingJwkSets.jwkSource(jwkSetUri, jwkSetTtl));
+        NimbusReactiveJwtDecoder decoder = new NimbusReactiveJwtDecoder(jwt ->
+                Mono.fromCallable(() -> processor.process(jwt, null)).subscribeOn(Schedulers.boundedElastic()));
+        decoder.setJwtValidator(issuer.isBlank()
+                ? JwtValidators.createDefault()
+                : JwtValidators.createDefaultWithIssuer(issuer));
+        return decoder;
+    }
+
     /**
      * CORS configuration for handling browser preflight requests.
      * Must be processed before security to allow browser requests.
@@ -102,12 +157,13 @@ public class GatewaySecurityConfig {
     }
 
     /**
-     * OAuth2 authorized client service for service-to-service communication.
+     * Client-credentials tokens for service-to-service communication, cached and renewed in the
+     * background before they expire.
      */
-    @Bean
-    public ReactiveOAuth2AuthorizedClientService authorizedClientService(
-            ReactiveClientRegistrationRepository clientRegistrationRepository) {
-        return new InMemoryReactiveOAuth2AuthorizedClientService(clientRegistrationRepository);
+    @Bean(destroyMethod = "close")
+    public ClientCredentialsTokenManager clientCredentialsTokenManager(
+            @Value("${security.oauth2.client.refresh-ahead:60s}") Duration refreshAhead) {
+        return new ClientCredentialsTokenManager(new DefaultClientCredentialsTokenResponseClient(), refreshAhead);
     }
 
     /**
@@ -116,15 +172,8 @@ public class GatewaySecurityConfig {
     @Bean
     public ReactiveOAuth2AuthorizedClientManager authorizedClientManager(
             ReactiveClientRegistrationRepository clients,
-            ReactiveOAuth2AuthorizedClientService svc) {
-
-        var provider = ReactiveOAuth2AuthorizedClientProviderBuilder.builder()
-                .clientCredentials()
-                .build();
-
-        var manager = new AuthorizedClientServiceReactiveOAuth2AuthorizedClientManager(clients, svc);
-        manager.setAuthorizedClientProvider(provider);
-        return manager;
+            ClientCredentialsTokenManager tokens) {
+        return new CachingReactiveClientCredentialsAuthorizedClientManager(clients, tokens);
     }
 
 }
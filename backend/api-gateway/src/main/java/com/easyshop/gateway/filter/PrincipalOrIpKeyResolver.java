@@ -0,0 +1,32 @@
+package com.easyshop.gateway.filter;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Rate-limit key: the JWT subject for authenticated requests, the client IP otherwise.
+ * The IP is the socket peer, or the forwarded client if the server is configured to trust
+ * forwarded headers ({@code server.forward-headers-strategy}).
+ */
+public class PrincipalOrIpKeyResolver implements KeyResolver {
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        return exchange.getPrincipal()
+                .filter(p -> !(p instanceof AnonymousAuthenticationToken))
+                .map(p -> "sub:" + p.getName())
+                .switchIfEmpty(Mono.fromSupplier(() -> "ip:" + clientIp(exchange)));
+    }
+
+    private static String clientIp(ServerWebExchange exchange) {
+        InetSocketAddress remote = exchange.getRequest().getRemoteAddress();
+        if (remote == null) {
+            return "unknown";
+        }
+        return remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+    }
+}
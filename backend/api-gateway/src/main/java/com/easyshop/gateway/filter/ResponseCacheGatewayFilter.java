@@ -0,0 +1,290 @@
+package com.easyshop.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache for public GET responses, keyed on path and query.
+ * <p>
+ * Freshness follows the upstream {@code Cache-Control} ({@code s-maxage}, then {@code max-age}),
+ * capped at the configured TTL; {@code no-store}, {@code private} and {@code Set-Cookie} responses
+ * are never stored. Responses without a max-age are stored only if they carry an ETag, and are
+ * then revalidated on every use. Stale entries that carry an ETag are revalidated with
+ * {@code If-None-Match} rather than refetched. One variant is kept per key: an entry remembers the
+ * request headers named by its {@code Vary} and is only served to requests that match them.
+ * Concurrent misses on the same key are coalesced into one upstream call.
+ */
+@Slf4j
+public class ResponseCacheGatewayFilter implements GatewayFilter {
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private static final Set<String> STORED_HEADERS = Set.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LANGUAGE,
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL);
+
+    private final Cache<String, CachedResponse> cache;
+    private final ConcurrentMap<String, CompletableFuture<Optional<CachedResponse>>> inFlight = new ConcurrentHashMap<>();
+    private final Ticker ticker;
+    private final long maxTtlNanos;
+    private final long maxEntryBytes;
+
+    public ResponseCacheGatewayFilter(Duration ttl, DataSize maxSize, DataSize maxEntrySize) {
+        this(ttl, maxSize, maxEntrySize, Ticker.systemTicker());
+    }
+
+    ResponseCacheGatewayFilter(Duration ttl, DataSize maxSize, DataSize maxEntrySize, Ticker ticker) {
+        this.ticker = ticker;
+        this.maxTtlNanos = ttl.toNanos();
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, CachedResponse r) -> key.length() + r.body().length)
+                // Stale entries are kept a while longer so they can be revalidated by ETag
+                .expireAfterWrite(ttl.multipliedBy(10))
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || directives(request.getHeaders()).containsKey("no-store")) {
+            return chain.filter(exchange);
+        }
+        String key = key(request);
+        // Copied up front: mutating the upstream request's headers writes through to the original
+        List<String> ifNoneMatch = List.copyOf(request.getHeaders().getIfNoneMatch());
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null && !cached.matches(request.getHeaders())) {
+            // Stored for another variant; the response to this request replaces it
+            cached = null;
+        }
+        if (cached != null && cached.isFresh(ticker.read())) {
+            return respond(exchange, ifNoneMatch, cached, "HIT");
+        }
+
+        CompletableFuture<Optional<CachedResponse>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<CachedResponse>> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            // Someone is already fetching this key; wait for them, or go upstream if they could not cache it.
+            // A follower giving up must not cancel the shared future.
+            return Mono.fromFuture(leader, true)
+                    .flatMap(r -> r.isPresent() && r.get().matches(request.getHeaders())
+                            ? respond(exchange, ifNoneMatch, r.get(), "HIT")
+                            : chain.filter(exchange));
+        }
+        Runnable done = () -> {
+            inFlight.remove(key, mine);
+            mine.complete(Optional.empty());
+        };
+        // Not doFinally: that runs after the caller is signalled, so the next request could still join us
+        return fetch(exchange, chain, key, ifNoneMatch, cached, mine)
+                .doOnTerminate(done)
+                .doOnCancel(done);
+    }
+
+    private Mono<Void> fetch(ServerWebExchange exchange, GatewayFilterChain chain, String key,
+                             List<String> ifNoneMatch, CachedResponse stale, CompletableFuture<Optional<CachedResponse>> result) {
+        boolean revalidate = stale != null && stale.etag() != null;
+        ServerHttpRequest upstream = exchange.getRequest().mutate()
+                .headers(h -> {
+                    // Ask for a full body unless we hold one to revalidate
+                    h.remove(HttpHeaders.IF_NONE_MATCH);
+                    h.remove(HttpHeaders.IF_MODIFIED_SINCE);
+                    if (revalidate) {
+                        h.setIfNoneMatch(stale.etag());
+                    }
+                })
+                .build();
+        HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+        boolean authorized = requestHeaders.containsKey(HttpHeaders.AUTHORIZATION);
+
+        ServerHttpResponseDecorator capturing = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                HttpStatus status = HttpStatus.resolve(getStatusCode() == null ? 200 : getStatusCode().value());
+                if (revalidate && status == HttpStatus.NOT_MODIFIED) {
+                    // The 304 answers our If-None-Match, not the client's: always answer from the stored
+                    // body. It updates the stored headers, and may carry little more than the ETag
+                    CachedResponse entry = stale;
+                    Long lifetime = lifetimeNanos(stale.updatedHeaders(getHeaders()), authorized);
+                    if (lifetime != null) {
+                        entry = stale.refreshed(ticker.read(), lifetime, getHeaders());
+                        cache.put(key, entry);
+                        result.complete(Optional.of(entry));
+                    } else {
+                        cache.invalidate(key);
+                        result.complete(Optional.empty());
+                    }
+                    CachedResponse revalidated = entry;
+                    return Flux.from(body).doOnNext(DataBufferUtils::release)
+                            .then(Mono.defer(() -> respond(exchange, ifNoneMatch, revalidated, "REVALIDATED")));
+                }
+                Long lifetime = lifetimeNanos(getHeaders(), authorized);
+                if (status != HttpStatus.OK || lifetime == null) {
+                    result.complete(Optional.empty());
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(body).flatMap(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    CachedResponse entry = CachedResponse.of(bytes, getHeaders(), requestHeaders, ticker.read(), lifetime);
+                    if (bytes.length > maxEntryBytes) {
+                        result.complete(Optional.empty());
+                        return respond(exchange, ifNoneMatch, entry, "BYPASS");
+                    }
+                    cache.put(key, entry);
+                    result.complete(Optional.of(entry));
+                    return respond(exchange, ifNoneMatch, entry, "MISS");
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().request(upstream).response(capturing).build());
+    }
+
+    /**
+     * Writes a cached response, or 304 if it matches the client's {@code If-None-Match}.
+     */
+    private Mono<Void> respond(ServerWebExchange exchange, List<String> ifNoneMatch, CachedResponse entry,
+                               String cacheStatus) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.putAll(entry.headers());
+        headers.set(CACHE_STATUS_HEADER, cacheStatus);
+        headers.set(HttpHeaders.AGE, Long.toString(TimeUnit.NANOSECONDS.toSeconds(ticker.read() - entry.storedAt())));
+
+        if (entry.etag() != null && (ifNoneMatch.contains(entry.etag()) || ifNoneMatch.contains("*"))) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(entry.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(entry.body())));
+    }
+
+    /**
+     * How long a response may be served without revalidation, or {@code null} if it must not be stored.
+     */
+    private Long lifetimeNanos(HttpHeaders headers, boolean authorized) {
+        Map<String, String> cc = directives(headers);
+        if (cc.containsKey("no-store") || cc.containsKey("private")
+                || headers.containsKey(HttpHeaders.SET_COOKIE) || headers.getVary().contains("*")) {
+            return null;
+        }
+        // A response to an authenticated request is only shareable if upstream says so explicitly
+        if (authorized && !(cc.containsKey("public") || cc.containsKey("s-maxage") || cc.containsKey("must-revalidate"))) {
+            return null;
+        }
+        if (cc.containsKey("no-cache")) {
+            return headers.getETag() != null ? 0L : null;
+        }
+        String maxAge = cc.containsKey("s-maxage") ? cc.get("s-maxage") : cc.get("max-age");
+        if (maxAge == null) {
+            // No freshness information: never served without asking upstream, so only worth keeping to revalidate
+            return headers.getETag() != null ? 0L : null;
+        }
+        try {
+            return Math.min(maxTtlNanos, TimeUnit.SECONDS.toNanos(Long.parseLong(maxAge)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> directives(HttpHeaders headers) {
+        Map<String, String> result = new HashMap<>();
+        for (String value : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+            for (String directive : value.split(",")) {
+                String[] parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                if (!parts[0].isEmpty()) {
+                    result.put(parts[0], parts.length > 1 ? parts[1].replace("\"", "") : "");
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String key(ServerHttpRequest request) {
+        String query = request.getURI().getRawQuery();
+        return query == null ? request.getURI().getRawPath() : request.getURI().getRawPath() + "?" + query;
+    }
+
+    /**
+     * @param vary the values the storing request had for each header named by the response's {@code Vary}
+     */
+    record CachedResponse(byte[] body, HttpHeaders headers, String etag, Map<String, List<String>> vary,
+                          long storedAt, long lifetimeNanos) {
+
+        static CachedResponse of(byte[] body, HttpHeaders upstream, HttpHeaders request, long now, long lifetimeNanos) {
+            HttpHeaders stored = new HttpHeaders();
+            upstream.forEach((name, values) -> {
+                if (STORED_HEADERS.stream().anyMatch(name::equalsIgnoreCase)) {
+                    stored.put(name, List.copyOf(values));
+                }
+            });
+            Map<String, List<String>> vary = new HashMap<>();
+            for (String name : upstream.getVary()) {
+                vary.put(name.toLowerCase(Locale.ROOT), List.copyOf(request.getOrEmpty(name)));
+            }
+            if (!vary.isEmpty()) {
+                stored.put(HttpHeaders.VARY, List.copyOf(upstream.get(HttpHeaders.VARY)));
+            }
+            return new CachedResponse(body, HttpHeaders.readOnlyHttpHeaders(stored), upstream.getETag(), Map.copyOf(vary),
+                    now, lifetimeNanos);
+        }
+
+        /**
+         * The stored headers as updated by a 304 from upstream.
+         */
+        HttpHeaders updatedHeaders(HttpHeaders notModified) {
+            HttpHeaders updated = new HttpHeaders();
+            updated.putAll(headers);
+            updated.putAll(notModified);
+            return updated;
+        }
+
+        CachedResponse refreshed(long now, long lifetimeNanos, HttpHeaders upstream) {
+            HttpHeaders stored = new HttpHeaders();
+            stored.putAll(headers);
+            if (upstream.getCacheControl() != null) {
+                stored.setCacheControl(upstream.getCacheControl());
+            }
+            return new CachedResponse(body, HttpHeaders.readOnlyHttpHeaders(stored), etag, vary, now, lifetimeNanos);
+        }
+
+        boolean matches(HttpHeaders request) {
+            return vary.entrySet().stream().allMatch(e -> e.getValue().equals(request.getOrEmpty(e.getKey())));
+        }
+
+        boolean isFresh(long now) {
+            return now - storedAt < lifetimeNanos;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.easyshop.gateway.filter;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process token-bucket {@link RateLimiter} with per-route limits and no external store.
+ * <p>
+ * Each (route, client) bucket is a single {@link AtomicLong} holding the time at which it will
+ * be full again (the GCRA form of a token bucket), so a request costs one map lookup and one
+ * CAS. Buckets that have refilled completely are indistinguishable from new ones and are
+ * dropped by a periodic sweep. Limits are per gateway instance.
+ */
+public class TokenBucketRateLimiter implements RateLimiter<TokenBucketRateLimiter.Config>, DisposableBean {
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+    public static final String REQUESTED_TOKENS_HEADER = "X-RateLimit-Requested-Tokens";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private final Map<String, Config> config = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoTime;
+    private final Disposable sweeper;
+
+    public TokenBucketRateLimiter(Duration sweepInterval) {
+        this(System::nanoTime, sweepInterval);
+    }
+
+    TokenBucketRateLimiter(LongSupplier nanoTime, Duration sweepInterval) {
+        this.nanoTime = nanoTime;
+        this.sweeper = Schedulers.parallel().schedulePeriodically(this::evictIdle,
+                sweepInterval.toNanos(), sweepInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config limit = config.get(routeId);
+        if (limit == null) {
+            return Mono.just(new Response(true, Map.of()));
+        }
+        long now = nanoTime.getAsLong();
+        Bucket bucket = buckets.computeIfAbsent(routeId + '|' + id, k -> new Bucket(limit, now));
+        return Mono.just(bucket.take(now));
+    }
+
+    /**
+     * Drops buckets that have refilled completely. A request racing with the sweep may consume
+     * from a bucket that is being dropped, which at worst grants that client one extra burst token.
+     */
+    void evictIdle() {
+        long now = nanoTime.getAsLong();
+        buckets.values().removeIf(b -> b.isFull(now));
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    @Override
+    public Map<String, Config> getConfig() {
+        return config;
+    }
+
+    @Override
+    public Class<Config> getConfigClass() {
+        return Config.class;
+    }
+
+    @Override
+    public Config newConfig() {
+        return new Config();
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.dispose();
+    }
+
+    private static final class Bucket {
+        private final long interval;
+        private final long burst;
+        private final long cost;
+        private final Map<String, String> fixedHeaders;
+        // Time at which the bucket is full again; at or before "now" means full
+        private final AtomicLong fullAt;
+
+        Bucket(Config c, long now) {
+            this.fullAt = new AtomicLong(now);
+            this.interval = TimeUnit.SECONDS.toNanos(1) / c.getReplenishRate();
+            this.burst = interval * c.getBurstCapacity();
+            this.cost = interval * c.getRequestedTokens();
+            this.fixedHeaders = Map.of(
+                    REPLENISH_RATE_HEADER, Integer.toString(c.getReplenishRate()),
+                    BURST_CAPACITY_HEADER, Integer.toString(c.getBurstCapacity()),
+                    REQUESTED_TOKENS_HEADER, Integer.toString(c.getRequestedTokens()));
+        }
+
+        Response take(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long base = current - now > 0 ? current : now;
+                long next = base + cost;
+                if (next - now > burst) {
+                    long wait = next - now - burst;
+                    return response(false, (burst - (base - now)) / interval,
+                            Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return response(true, (burst - (next - now)) / interval, 0);
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+
+        private Response response(boolean allowed, long remaining, long retryAfterSeconds) {
+            Map<String, String> headers = new HashMap<>(fixedHeaders);
+            headers.put(REMAINING_HEADER, Long.toString(Math.max(0, remaining)));
+            if (!allowed) {
+                headers.put(RETRY_AFTER_HEADER, Long.toString(retryAfterSeconds));
+            }
+            return new Response(allowed, headers);
+        }
+    }
+
+    /**
+     * Per-route limit: {@code replenishRate} tokens per second, up to {@code burstCapacity}
+     * banked, {@code requestedTokens} taken per request.
+     */
+    public static class Config {
+        private int replenishRate = 10;
+        private int burstCapacity = 20;
+        private int requestedTokens = 1;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public Config setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+            return this;
+        }
+    }
+}
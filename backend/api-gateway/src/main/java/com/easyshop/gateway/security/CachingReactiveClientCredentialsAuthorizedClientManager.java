@@ -0,0 +1,39 @@
+package com.easyshop.gateway.security;
+
+import com.easyshop.common.web.security.ClientCredentialsTokenManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of the servlet services' caching authorized client manager. Tokens come
+ * from a {@link ClientCredentialsTokenManager}, which renews them on its own thread ahead of
+ * expiry, so callers on the event loop get the cached token without a round trip.
+ */
+public class CachingReactiveClientCredentialsAuthorizedClientManager implements ReactiveOAuth2AuthorizedClientManager {
+
+    private final ReactiveClientRegistrationRepository registrations;
+    private final ClientCredentialsTokenManager tokens;
+
+    public CachingReactiveClientCredentialsAuthorizedClientManager(ReactiveClientRegistrationRepository registrations,
+                                                                   ClientCredentialsTokenManager tokens) {
+        this.registrations = registrations;
+        this.tokens = tokens;
+    }
+
+    @Override
+    public Mono<OAuth2AuthorizedClient> authorize(OAuth2AuthorizeRequest request) {
+        return registrations.findByRegistrationId(request.getClientRegistrationId())
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException(
+                        "Unknown client registration " + request.getClientRegistrationId())))
+                .filter(registration -> AuthorizationGrantType.CLIENT_CREDENTIALS.equals(
+                        registration.getAuthorizationGrantType()))
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Client registration "
+                        + request.getClientRegistrationId() + " does not use the client_credentials grant")))
+                .flatMap(registration -> Mono.fromFuture(() -> tokens.getToken(registration))
+                        .map(token -> new OAuth2AuthorizedClient(registration, request.getPrincipal().getName(), token)));
+    }
+}
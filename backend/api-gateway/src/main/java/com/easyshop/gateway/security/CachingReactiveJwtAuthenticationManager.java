@@ -0,0 +1,49 @@
+package com.easyshop.gateway.security;
+
+import com.easyshop.common.web.security.JwtAuthenticationCache;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of the servlet services' caching manager: each distinct bearer token is
+ * decoded, verified and converted once, and repeats of it are answered from a
+ * {@link JwtAuthenticationCache} without leaving the event loop. Rejected tokens are not cached.
+ */
+public class CachingReactiveJwtAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final JwtReactiveAuthenticationManager delegate;
+    private final JwtAuthenticationCache cache;
+
+    public CachingReactiveJwtAuthenticationManager(
+            ReactiveJwtDecoder decoder,
+            Converter<Jwt, ? extends Mono<? extends AbstractAuthenticationToken>> converter,
+            JwtAuthenticationCache cache) {
+        this.delegate = new JwtReactiveAuthenticationManager(decoder);
+        this.delegate.setJwtAuthenticationConverter(converter);
+        this.cache = cache;
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return Mono.empty();
+        }
+        JwtAuthenticationToken cached = cache.get(bearer.getToken());
+        if (cached != null) {
+            return Mono.just(JwtAuthenticationCache.copyOf(cached));
+        }
+        return delegate.authenticate(bearer).doOnNext(result -> {
+            if (result instanceof JwtAuthenticationToken jwt) {
+                cache.put(bearer.getToken(), jwt);
+            }
+        });
+    }
+}
@@ -22,6 +22,11 @@ public class TraceIdWebFilter implements WebFilter {
         String traceId = exchange.getRequest().getHeaders().getFirst(TRACE_ID_HEADER);
         if (traceId == null || traceId.isBlank()) {
             traceId = UUID.randomUUID().toString();
+            // Routed services pick the generated id up instead of starting their own
+            String generated = traceId;
+            exchange = exchange.mutate()
+                    .request(request -> request.headers(headers -> headers.set(TRACE_ID_HEADER, generated)))
+                    .build();
         }
         MDC.put("traceId", traceId);
         exchange.getResponse().getHeaders().add(TRACE_ID_HEADER, traceId);
@@ -0,0 +1,242 @@
+package com.easyshop.gateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheGatewayFilterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ResponseCacheGatewayFilter filter = new ResponseCacheGatewayFilter(
+            Duration.ofSeconds(30), DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), now::get);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<String> upstreamIfNoneMatch = new ArrayList<>();
+
+    @Test
+    void servesRepeatedReadsFromCache() {
+        GatewayFilterChain upstream = upstream("max-age=0, s-maxage=5", Duration.ZERO);
+
+        MockServerWebExchange first = get("/api/products?limit=2");
+        filter.filter(first, upstream).block();
+        MockServerWebExchange second = get("/api/products?limit=2");
+        filter.filter(second, upstream).block();
+
+        assertThat(calls).hasValue(1);
+        assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("[\"p\"]");
+        assertThat(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.CACHE_STATUS_HEADER)).isEqualTo("HIT");
+        assertThat(second.getResponse().getHeaders().getETag()).isEqualTo("\"7\"");
+    }
+
+    @Test
+    void keysOnQuery() {
+        GatewayFilterChain upstream = upstream("s-maxage=5", Duration.ZERO);
+
+        filter.filter(get("/api/products?limit=2"), upstream).block();
+        filter.filter(get("/api/products?limit=3"), upstream).block();
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void coalescesConcurrentMisses() {
+        GatewayFilterChain upstream = upstream("s-maxage=5", Duration.ofMillis(100));
+        List<MockServerWebExchange> exchanges = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            exchanges.add(get("/api/products/1"));
+        }
+
+        Flux.fromIterable(exchanges).flatMap(e -> filter.filter(e, upstream), 50).blockLast();
+
+        assertThat(calls).hasValue(1);
+        assertThat(exchanges).allSatisfy(e ->
+                assertThat(e.getResponse().getBodyAsString().block()).isEqualTo("[\"p\"]"));
+    }
+
+    @Test
+    void doesNotStoreNoStoreOrPrivateResponses() {
+        filter.filter(get("/api/products/1"), upstream("no-store", Duration.ZERO)).block();
+        filter.filter(get("/api/products/1"), upstream("private, max-age=60", Duration.ZERO)).block();
+        filter.filter(get("/api/products/1"), upstream("private, max-age=60", Duration.ZERO)).block();
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void doesNotShareAuthorizedResponsesUnlessUpstreamAllows() {
+        GatewayFilterChain upstream = upstream("max-age=60", Duration.ZERO);
+
+        filter.filter(get("/api/products/1", HttpHeaders.AUTHORIZATION, "Bearer t"), upstream).block();
+        filter.filter(get("/api/products/1"), upstream).block();
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void doesNotStoreResponsesWithoutFreshnessOrETag() {
+        GatewayFilterChain upstream = upstream(null, null, null);
+
+        filter.filter(get("/api/products?ids=1,2"), upstream).block();
+        MockServerWebExchange second = get("/api/products?ids=1,2");
+        filter.filter(second, upstream).block();
+
+        assertThat(calls).hasValue(2);
+        assertThat(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.CACHE_STATUS_HEADER)).isNull();
+    }
+
+    @Test
+    void revalidatesResponsesWithoutFreshnessOnEveryUse() {
+        GatewayFilterChain upstream = upstream(null, "\"7\"", null);
+
+        filter.filter(get("/api/products/1"), upstream).block();
+        MockServerWebExchange second = get("/api/products/1");
+        filter.filter(second, upstream).block();
+
+        assertThat(calls).hasValue(2);
+        assertThat(upstreamIfNoneMatch).containsExactly("\"7\"");
+        assertThat(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.CACHE_STATUS_HEADER))
+                .isEqualTo("REVALIDATED");
+    }
+
+    @Test
+    void servesAVariantOnlyToRequestsWithTheSameVaryHeaders() {
+        GatewayFilterChain upstream = upstream("s-maxage=5", "\"7\"", HttpHeaders.ACCEPT_LANGUAGE);
+
+        filter.filter(get("/api/products/1", HttpHeaders.ACCEPT_LANGUAGE, "de"), upstream).block();
+        MockServerWebExchange french = get("/api/products/1", HttpHeaders.ACCEPT_LANGUAGE, "fr");
+        filter.filter(french, upstream).block();
+        MockServerWebExchange frenchAgain = get("/api/products/1", HttpHeaders.ACCEPT_LANGUAGE, "fr");
+        filter.filter(frenchAgain, upstream).block();
+
+        assertThat(calls).hasValue(2);
+        assertThat(french.getResponse().getBodyAsString().block()).isEqualTo("[\"fr\"]");
+        assertThat(frenchAgain.getResponse().getBodyAsString().block()).isEqualTo("[\"fr\"]");
+        assertThat(frenchAgain.getResponse().getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_LANGUAGE);
+    }
+
+    @Test
+    void revalidatesStaleEntryWithETag() {
+        GatewayFilterChain upstream = upstream("s-maxage=5", Duration.ZERO);
+        filter.filter(get("/api/products/1"), upstream).block();
+
+        now.addAndGet(Duration.ofSeconds(6).toNanos());
+        MockServerWebExchange stale = get("/api/products/1");
+        filter.filter(stale, upstream).block();
+
+        assertThat(calls).hasValue(2);
+        assertThat(upstreamIfNoneMatch).containsExactly("\"7\"");
+        assertThat(stale.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(stale.getResponse().getBodyAsString().block()).isEqualTo("[\"p\"]");
+        assertThat(stale.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.CACHE_STATUS_HEADER))
+                .isEqualTo("REVALIDATED");
+    }
+
+    @Test
+    void unconditionalAuthorizedRequestGetsTheBodyWhenAStaleEntryIsRevalidated() {
+        GatewayFilterChain upstream = upstream("max-age=0, s-maxage=5", Duration.ZERO);
+        filter.filter(get("/api/products?limit=2"), upstream).block();
+
+        now.addAndGet(Duration.ofSeconds(6).toNanos());
+        MockServerWebExchange loggedIn = get("/api/products?limit=2", HttpHeaders.AUTHORIZATION, "Bearer t");
+        filter.filter(loggedIn, upstream).block();
+        MockServerWebExchange again = get("/api/products?limit=2", HttpHeaders.AUTHORIZATION, "Bearer t");
+        filter.filter(again, upstream).block();
+
+        assertThat(upstreamIfNoneMatch).containsExactly("\"7\"");
+        assertThat(loggedIn.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(loggedIn.getResponse().getBodyAsString().block()).isEqualTo("[\"p\"]");
+        // The stored s-maxage still applies to the refreshed entry
+        assertThat(again.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilter.CACHE_STATUS_HEADER))
+                .isEqualTo("HIT");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void answersClientRevalidationFromCache() {
+        GatewayFilterChain upstream = upstream("s-maxage=5", Duration.ZERO);
+        filter.filter(get("/api/products/1"), upstream).block();
+
+        MockServerWebExchange conditional = get("/api/products/1", HttpHeaders.IF_NONE_MATCH, "\"7\"");
+        filter.filter(conditional, upstream).block();
+
+        assertThat(calls).hasValue(1);
+        assertThat(conditional.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    void fetchesFullBodyForClientWithOutdatedETag() {
+        MockServerWebExchange conditional = get("/api/products/1", HttpHeaders.IF_NONE_MATCH, "\"6\"");
+        filter.filter(conditional, upstream("s-maxage=5", Duration.ZERO)).block();
+
+        assertThat(upstreamIfNoneMatch).isEmpty();
+        assertThat(conditional.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(conditional.getResponse().getBodyAsString().block()).isEqualTo("[\"p\"]");
+    }
+
+    /**
+     * Fake product-service: answers with ETag "7", honouring If-None-Match.
+     */
+    private GatewayFilterChain upstream(String cacheControl, Duration latency) {
+        return upstream(cacheControl, "\"7\"", null, latency);
+    }
+
+    private GatewayFilterChain upstream(String cacheControl, String etag, String vary) {
+        return upstream(cacheControl, etag, vary, Duration.ZERO);
+    }
+
+    /**
+     * Fake product-service with the given ETag, if any, honouring If-None-Match with a bare 304.
+     * With a {@code vary} header the body echoes that request header.
+     */
+    private GatewayFilterChain upstream(String cacheControl, String etag, String vary, Duration latency) {
+        return exchange -> {
+            calls.incrementAndGet();
+            return Mono.delay(latency).then(Mono.defer(() -> {
+                var response = exchange.getResponse();
+                if (etag != null) {
+                    response.getHeaders().setETag(etag);
+                }
+                String ifNoneMatch = exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+                if (ifNoneMatch != null) {
+                    upstreamIfNoneMatch.add(ifNoneMatch);
+                }
+                if (etag != null && etag.equals(ifNoneMatch)) {
+                    // Only the ETag, as Spring's checkNotModified sends it
+                    response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                    return response.writeWith(Flux.empty());
+                }
+                response.getHeaders().setCacheControl(cacheControl);
+                if (vary != null) {
+                    response.getHeaders().setVary(List.of(vary));
+                }
+                response.setStatusCode(HttpStatus.OK);
+                response.getHeaders().set(HttpHeaders.CONTENT_TYPE, "application/json");
+                String body = vary == null ? "p" : exchange.getRequest().getHeaders().getFirst(vary);
+                return response.writeWith(Mono.just(response.bufferFactory()
+                        .wrap(("[\"" + body + "\"]").getBytes(StandardCharsets.UTF_8))));
+            }));
+        };
+    }
+
+    private static MockServerWebExchange get(String uri, String... headers) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(uri);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
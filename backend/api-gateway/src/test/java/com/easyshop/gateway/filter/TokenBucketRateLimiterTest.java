@@ -0,0 +1,110 @@
+package com.easyshop.gateway.filter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(123_456_789L);
+    private final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(now::get, Duration.ofHours(1));
+
+    TokenBucketRateLimiterTest() {
+        limiter.getConfig().put("products", limiter.newConfig().setReplenishRate(10).setBurstCapacity(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.destroy();
+    }
+
+    @Test
+    void allowsBurstThenRejectsWithHeaders() {
+        for (int i = 4; i >= 0; i--) {
+            RateLimiter.Response r = allow("ip:1");
+            assertThat(r.isAllowed()).isTrue();
+            assertThat(r.getHeaders()).containsEntry(TokenBucketRateLimiter.REMAINING_HEADER, Integer.toString(i));
+        }
+
+        RateLimiter.Response denied = allow("ip:1");
+
+        assertThat(denied.isAllowed()).isFalse();
+        assertThat(denied.getHeaders())
+                .containsEntry(TokenBucketRateLimiter.REMAINING_HEADER, "0")
+                .containsEntry(TokenBucketRateLimiter.REPLENISH_RATE_HEADER, "10")
+                .containsEntry(TokenBucketRateLimiter.BURST_CAPACITY_HEADER, "5")
+                .containsEntry(TokenBucketRateLimiter.RETRY_AFTER_HEADER, "1");
+    }
+
+    @Test
+    void refillsAtReplenishRate() {
+        for (int i = 0; i < 5; i++) {
+            allow("ip:1");
+        }
+        assertThat(allow("ip:1").isAllowed()).isFalse();
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat(allow("ip:1").isAllowed()).isTrue();
+        assertThat(allow("ip:1").isAllowed()).isFalse();
+    }
+
+    @Test
+    void keepsClientsAndRoutesApart() {
+        for (int i = 0; i < 5; i++) {
+            allow("ip:1");
+        }
+
+        assertThat(allow("ip:1").isAllowed()).isFalse();
+        assertThat(allow("sub:alice").isAllowed()).isTrue();
+        assertThat(limiter.isAllowed("unlimited", "ip:1").block().isAllowed()).isTrue();
+    }
+
+    @Test
+    void evictsOnlyRefilledBuckets() {
+        allow("ip:1");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        allow("ip:2");
+
+        limiter.evictIdle();
+
+        assertThat(limiter.bucketCount()).isEqualTo(1);
+    }
+
+    @Test
+    void neverGrantsMoreThanBurstUnderContention() throws Exception {
+        AtomicInteger allowed = new AtomicInteger();
+        try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        if (allow("ip:1").isAllowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        assertThat(allowed).hasValue(5);
+    }
+
+    private RateLimiter.Response allow(String id) {
+        return limiter.isAllowed("products", id).block();
+    }
+}
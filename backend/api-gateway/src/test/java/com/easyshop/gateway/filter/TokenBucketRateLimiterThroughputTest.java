@@ -0,0 +1,60 @@
+package com.easyshop.gateway.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the limiter on the real clock across many clients and threads. Wall-clock bounds
+ * depend on the machine, so it is run by hand rather than in the build.
+ */
+@Slf4j
+@Disabled
+class TokenBucketRateLimiterThroughputTest {
+
+    /**
+     * Reports the cost of one decision across many clients and threads; it should stay in the
+     * low microseconds so the limiter is negligible next to proxying at 50k requests per second.
+     */
+    @Test
+    void decisionCostsMicroseconds() throws Exception {
+        TokenBucketRateLimiter real = new TokenBucketRateLimiter(Duration.ofHours(1));
+        real.getConfig().put("products", real.newConfig().setReplenishRate(1_000).setBurstCapacity(2_000));
+        int threads = 8;
+        int perThread = 200_000;
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            long start = System.nanoTime();
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        real.isAllowed("products", "ip:" + ((i * 31 + offset) % 10_000)).block();
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            long decisions = (long) threads * perThread;
+            // CPU time per decision, assuming every core was busy
+            long cpuNanos = elapsed * Math.min(threads, Runtime.getRuntime().availableProcessors()) / decisions;
+            log.info("{} decisions in {} ms ({} ns CPU/decision, {} decisions/sec)", decisions,
+                    elapsed / 1_000_000, cpuNanos, decisions * 1_000_000_000L / elapsed);
+            assertThat(cpuNanos).isLessThan(TimeUnit.MICROSECONDS.toNanos(20));
+        } finally {
+            real.destroy();
+        }
+    }
+}
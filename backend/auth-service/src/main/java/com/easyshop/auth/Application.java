@@ -2,8 +2,12 @@ package com.easyshop.auth;
 
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.*;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableAsync
+@EnableScheduling
 public class Application {
     public static void main(String[] a) {
         SpringApplication.run(Application.class, a);
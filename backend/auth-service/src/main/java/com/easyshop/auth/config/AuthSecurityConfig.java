@@ -1,8 +1,18 @@
 package com.easyshop.auth.config;
 
+import com.easyshop.auth.security.BCryptCostCalibrator;
+import com.easyshop.auth.security.BoundedPasswordEncoder;
+import com.easyshop.auth.security.PasswordHashingAdmissionFilter;
+import com.easyshop.common.web.security.ManagementPort;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -19,6 +29,8 @@ import org.springframework.security.web.authentication.LoginUrlAuthenticationEnt
 import org.springframework.security.web.util.matcher.MediaTypeRequestMatcher;
 import org.springframework.http.MediaType;
 
+import java.time.Duration;
+
 
 /**
  * Spring Authorization Server configuration with OIDC Discovery support.
@@ -72,12 +84,15 @@ public class AuthSecurityConfig {
     @Bean
     @Order(2)
     public SecurityFilterChain defaultSecurityFilterChain(HttpSecurity http,
-                                                          DaoAuthenticationProvider authProvider)
+                                                          DaoAuthenticationProvider authProvider,
+                                                          Environment environment)
             throws Exception {
         http
                 .authorizeHttpRequests((authorize) -> authorize
                         .requestMatchers("/login", "/error", "/webjars/**",
                                 "/healthz", "/readyz", "/api/auth/**").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers(ManagementPort.requests(environment)).permitAll()
                         .anyRequest().authenticated()
                 )
                 // Form login handles the redirect to the login page from the
@@ -92,15 +107,39 @@ public class AuthSecurityConfig {
     }
 
     /**
-     * Password encoder for user authentication.
+     * Password encoder for user authentication. Hashing runs on a bounded pool off the request
+     * thread, with the bcrypt cost calibrated at startup unless a fixed cost is configured.
+     */
+    @Bean(destroyMethod = "close")
+    public PasswordEncoder passwordEncoder(@Value("${auth.password.bcrypt.cost:0}") int cost,
+                                           @Value("${auth.password.bcrypt.target-hash-time:100ms}") Duration target,
+                                           @Value("${auth.password.bcrypt.min-cost:10}") int minCost,
+                                           @Value("${auth.password.bcrypt.max-cost:14}") int maxCost,
+                                           @Value("${auth.password.hashing.threads:0}") int threads,
+                                           @Value("${auth.password.hashing.queue-capacity:64}") int queueCapacity,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        int strength = cost > 0 ? cost : BCryptCostCalibrator.calibrate(target, minCost, maxCost);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), queueCapacity);
+        meterRegistry.ifAvailable(encoder::bindTo);
+        return encoder;
+    }
+
+    /**
+     * Turns refused password hashing inside the security filter chains into 503 responses.
+     * Runs just inside {@code TraceIdFilter} and ahead of Spring Security.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public FilterRegistrationBean<PasswordHashingAdmissionFilter> passwordHashingAdmissionFilter() {
+        FilterRegistrationBean<PasswordHashingAdmissionFilter> registration =
+                new FilterRegistrationBean<>(new PasswordHashingAdmissionFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
     }
 
     /**
      * Authentication provider using the custom {@link DatabaseUserDetailsService} and password encoding.
+     * Hashes with a lower cost than the current one are re-encoded on successful login.
      */
     @Bean
     public DaoAuthenticationProvider authenticationProvider(DatabaseUserDetailsService userDetailsService,
@@ -108,6 +147,7 @@ public class AuthSecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
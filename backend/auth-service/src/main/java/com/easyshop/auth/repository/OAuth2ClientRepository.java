@@ -2,10 +2,15 @@ package com.easyshop.auth.repository;
 
 import com.easyshop.auth.entity.OAuth2Client;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface OAuth2ClientRepository extends JpaRepository<OAuth2Client, Long> {
     Optional<OAuth2Client> findByClientId(String clientId);
     boolean existsByClientId(String clientId);
+
+    @Query("select max(coalesce(c.updatedAt, c.createdAt)) from OAuth2Client c")
+    Optional<LocalDateTime> findLastModified();
 }
@@ -1,11 +1,27 @@
 package com.easyshop.auth.repository;
 
 import com.easyshop.auth.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    @Query("select u.id as id, u.email as email from User u where u.id > :afterId order by u.id")
+    List<EmailRow> findEmailsAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Query("select u.id as id, u.email as email from User u where u.createdAt >= :since")
+    List<EmailRow> findEmailsCreatedSince(@Param("since") LocalDateTime since);
+
+    interface EmailRow {
+        Long getId();
+        String getEmail();
+    }
 }
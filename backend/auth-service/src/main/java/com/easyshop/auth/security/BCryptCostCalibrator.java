@@ -0,0 +1,45 @@
+package com.easyshop.auth.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+/**
+ * Picks the bcrypt cost for this machine: the highest cost whose hash time stays within the
+ * target, bounded by {@code minCost} and {@code maxCost}. Each extra cost step doubles the work.
+ */
+@Slf4j
+public final class BCryptCostCalibrator {
+
+    private static final int SAMPLES = 3;
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(Duration target, int minCost, int maxCost) {
+        String salt = BCrypt.gensalt(minCost);
+        BCrypt.hashpw("calibration", salt);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Duration measured = Duration.ofNanos(best);
+        int cost = costFor(measured, target, minCost, maxCost);
+        log.info("Using bcrypt cost {} (~{} ms per hash, target {} ms)",
+                cost, measured.toMillis() << (cost - minCost), target.toMillis());
+        return cost;
+    }
+
+    static int costFor(Duration measuredAtMinCost, Duration target, int minCost, int maxCost) {
+        int cost = minCost;
+        long estimated = Math.max(1, measuredAtMinCost.toNanos());
+        while (cost < maxCost && estimated * 2 <= target.toNanos()) {
+            estimated *= 2;
+            cost++;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,47 @@
+package com.easyshop.auth.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Answers 503 with {@code Retry-After} when password hashing was refused inside the security
+ * filter chain (form login, client authentication at the token endpoint), where controller
+ * advice does not apply.
+ */
+@Slf4j
+public class PasswordHashingAdmissionFilter extends OncePerRequestFilter {
+
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } catch (PasswordHashingRejectedException e) {
+            reject(request, response, e);
+        } catch (ServletException e) {
+            if (!(e.getCause() instanceof PasswordHashingRejectedException rejected)) {
+                throw e;
+            }
+            reject(request, response, rejected);
+        }
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response,
+                               PasswordHashingRejectedException e) throws IOException {
+        log.warn("Rejected {} {}: {}", request.getMethod(), request.getRequestURI(), e.getMessage());
+        if (response.isCommitted()) {
+            return;
+        }
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+    }
+}
@@ -4,6 +4,7 @@ import com.easyshop.auth.entity.User;
 import com.easyshop.auth.repository.UserRepository;
 
 import com.easyshop.auth.web.dto.AuthDto;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -13,19 +14,24 @@ import java.util.regex.Pattern;
 public class AuthService {
     private final UserRepository users;
     private final PasswordEncoder enc;
+    private final RegisteredEmails emails;
+    private volatile String dummyHash;
 
     // Password validation patterns
     private static final Pattern PASSWORD_PATTERN = Pattern.compile(
         "^(?=.*[a-z])(?=.*[A-Z])(?=.*\\d)(?=.*[@$!%*?&])[A-Za-z\\d@$!%*?&]{8,}$"
     );
 
-    public AuthService(UserRepository users, PasswordEncoder enc) {
+    public AuthService(UserRepository users, PasswordEncoder enc, RegisteredEmails emails) {
         this.users = users;
         this.enc = enc;
+        this.emails = emails;
     }
 
     public boolean register(AuthDto d) {
-        if (users.existsByEmail(d.email())) {
+        String email = RegisteredEmails.normalize(d.email());
+        // Only emails the filter may have seen need the database check
+        if (emails.mightExist(email) && users.existsByEmail(email)) {
             return false;
         }
         
@@ -35,17 +41,46 @@ public class AuthService {
         }
         
         User user = new User();
-        user.setEmail(d.email().toLowerCase().trim());
+        user.setEmail(email);
         user.setPassword(enc.encode(d.password()));
         user.setRole(User.Role.USER);
-        user.setUsername(d.email().toLowerCase().trim()); // Use email as username
-        users.save(user);
+        user.setUsername(email); // Use email as username
+        try {
+            users.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // The unique constraint decides when two registrations for the same email race
+            return false;
+        }
+        emails.add(email);
         return true;
     }
 
     public boolean login(AuthDto d) {
-        var u = users.findByEmail(d.email().toLowerCase().trim()).orElse(null);
-        return u != null && enc.matches(d.password(), u.getPassword());
+        String email = RegisteredEmails.normalize(d.email());
+        if (!emails.mightExist(email)) {
+            // Unknown email: skip the database, but hash anyway so the response takes as long
+            enc.matches(d.password(), dummyHash());
+            return false;
+        }
+        var u = users.findByEmail(email).orElse(null);
+        if (u == null || !enc.matches(d.password(), u.getPassword())) {
+            return false;
+        }
+        // Re-hash passwords stored with an older, cheaper bcrypt cost
+        if (enc.upgradeEncoding(u.getPassword())) {
+            u.setPassword(enc.encode(d.password()));
+            users.save(u);
+        }
+        return true;
+    }
+
+    private String dummyHash() {
+        String hash = dummyHash;
+        if (hash == null) {
+            hash = enc.encode("userNotFoundPassword");
+            dummyHash = hash;
+        }
+        return hash;
     }
 
     private boolean isValidPassword(String password) {
@@ -4,8 +4,13 @@ import com.easyshop.auth.entity.OAuth2Client;
 import com.easyshop.auth.repository.OAuth2ClientRepository;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
@@ -13,79 +18,183 @@ import org.springframework.security.oauth2.server.authorization.settings.TokenSe
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
+/**
+ * Serves registered clients from an immutable in-memory snapshot of {@code oauth2_clients}.
+ * The snapshot is built once the application is ready (after {@link OAuth2ClientInitializer}
+ * has seeded the table) and rebuilt only when the table's row count or latest
+ * {@code updated_at} changes, so token requests never touch the database.
+ */
+@Slf4j
 @Service
 public class DatabaseRegisteredClientRepository implements RegisteredClientRepository {
-    
+
+    private static final TypeReference<Set<String>> STRING_SET = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Object>> SETTINGS = new TypeReference<>() {};
+
     private final OAuth2ClientRepository clientRepository;
     private final ObjectMapper objectMapper;
-    
+    private volatile Snapshot snapshot;
+
     public DatabaseRegisteredClientRepository(OAuth2ClientRepository clientRepository, ObjectMapper objectMapper) {
         this.clientRepository = clientRepository;
         this.objectMapper = objectMapper;
     }
-    
+
     @Override
     public void save(RegisteredClient registeredClient) {
         // Not implemented - clients are managed through OAuth2ClientInitializer
         throw new UnsupportedOperationException("Use OAuth2ClientInitializer to manage clients");
     }
-    
+
     @Override
     public RegisteredClient findById(String id) {
-        return clientRepository.findById(Long.valueOf(id))
-                .map(this::convertToRegisteredClient)
-                .orElse(null);
+        return snapshot().byId().get(id);
     }
-    
+
     @Override
     public RegisteredClient findByClientId(String clientId) {
-        return clientRepository.findByClientId(clientId)
-                .map(this::convertToRegisteredClient)
-                .orElse(null);
+        return snapshot().byClientId().get(clientId);
+    }
+
+    /**
+     * Loads the snapshot once startup runners, including the client initializer, are done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload(currentVersion());
+    }
+
+    /**
+     * Rebuilds the snapshot when clients were added, removed or updated since it was taken.
+     */
+    @Scheduled(fixedDelayString = "${oauth2.client-registry.refresh-interval:30s}",
+            initialDelayString = "${oauth2.client-registry.refresh-interval:30s}")
+    public void refreshIfChanged() {
+        Version version = currentVersion();
+        Snapshot current = snapshot;
+        if (current == null || !current.version().equals(version)) {
+            reload(version);
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = reload(currentVersion());
+                }
+            }
+        }
+        return current;
+    }
+
+    private synchronized Snapshot reload(Version version) {
+        List<OAuth2Client> clients = clientRepository.findAll();
+        Map<String, RegisteredClient> byId = new HashMap<>();
+        Map<String, RegisteredClient> byClientId = new HashMap<>();
+        for (OAuth2Client client : clients) {
+            RegisteredClient registered = convertToRegisteredClient(client);
+            byId.put(registered.getId(), registered);
+            byClientId.put(registered.getClientId(), registered);
+        }
+        Snapshot loaded = new Snapshot(Map.copyOf(byId), Map.copyOf(byClientId), version);
+        snapshot = loaded;
+        log.info("Loaded {} OAuth2 clients", clients.size());
+        return loaded;
+    }
+
+    private Version currentVersion() {
+        return new Version(clientRepository.count(), clientRepository.findLastModified().orElse(null));
     }
-    
+
     private RegisteredClient convertToRegisteredClient(OAuth2Client client) {
         try {
-            RegisteredClient.Builder builder = RegisteredClient.withId(UUID.randomUUID().toString())
+            // The row id keeps the registered client id stable across lookups and restarts
+            RegisteredClient.Builder builder = RegisteredClient.withId(String.valueOf(client.getId()))
                     .clientId(client.getClientId())
                     .clientSecret(client.getClientSecret());
-            
+
             // Parse client authentication methods
-            Set<String> authMethods = objectMapper.readValue(client.getClientAuthenticationMethods(), new TypeReference<Set<String>>() {});
+            Set<String> authMethods = objectMapper.readValue(client.getClientAuthenticationMethods(), STRING_SET);
             authMethods.forEach(method -> builder.clientAuthenticationMethod(new ClientAuthenticationMethod(method)));
-            
+
             // Parse authorization grant types
-            Set<String> grantTypes = objectMapper.readValue(client.getAuthorizationGrantTypes(), new TypeReference<Set<String>>() {});
+            Set<String> grantTypes = objectMapper.readValue(client.getAuthorizationGrantTypes(), STRING_SET);
             grantTypes.forEach(grantType -> builder.authorizationGrantType(new AuthorizationGrantType(grantType)));
-            
+
             // Parse redirect URIs
             if (client.getRedirectUris() != null && !client.getRedirectUris().isEmpty()) {
-                Set<String> redirectUris = objectMapper.readValue(client.getRedirectUris(), new TypeReference<Set<String>>() {});
+                Set<String> redirectUris = objectMapper.readValue(client.getRedirectUris(), STRING_SET);
                 redirectUris.forEach(builder::redirectUri);
             }
-            
+
             // Parse scopes
-            Set<String> scopes = objectMapper.readValue(client.getScopes(), new TypeReference<Set<String>>() {});
+            Set<String> scopes = objectMapper.readValue(client.getScopes(), STRING_SET);
             scopes.forEach(builder::scope);
-            
+
             // Parse client settings
             if (client.getClientSettings() != null && !client.getClientSettings().isEmpty()) {
-                ClientSettings clientSettings = objectMapper.readValue(client.getClientSettings(), ClientSettings.class);
-                builder.clientSettings(clientSettings);
+                builder.clientSettings(clientSettings(objectMapper.readValue(client.getClientSettings(), SETTINGS)));
             }
-            
+
             // Parse token settings
             if (client.getTokenSettings() != null && !client.getTokenSettings().isEmpty()) {
-                TokenSettings tokenSettings = objectMapper.readValue(client.getTokenSettings(), TokenSettings.class);
-                builder.tokenSettings(tokenSettings);
+                builder.tokenSettings(tokenSettings(objectMapper.readValue(client.getTokenSettings(), SETTINGS)));
             }
-            
+
             return builder.build();
         } catch (Exception e) {
-            throw new RuntimeException("Failed to convert OAuth2Client to RegisteredClient", e);
+            throw new RuntimeException("Failed to convert OAuth2Client " + client.getClientId() + " to RegisteredClient", e);
         }
     }
+
+    private static ClientSettings clientSettings(Map<String, Object> settings) {
+        ClientSettings.Builder builder = ClientSettings.builder();
+        settings.forEach((name, value) -> {
+            switch (name) {
+                case "requireAuthorizationConsent" -> builder.requireAuthorizationConsent((Boolean) value);
+                case "requireProofKey" -> builder.requireProofKey((Boolean) value);
+                default -> builder.setting(name, value);
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Time to live values are stored in seconds.
+     */
+    private static TokenSettings tokenSettings(Map<String, Object> settings) {
+        TokenSettings.Builder builder = TokenSettings.builder();
+        settings.forEach((name, value) -> {
+            switch (name) {
+                case "accessTokenTimeToLive" -> builder.accessTokenTimeToLive(seconds(value));
+                case "refreshTokenTimeToLive" -> builder.refreshTokenTimeToLive(seconds(value));
+                case "authorizationCodeTimeToLive" -> builder.authorizationCodeTimeToLive(seconds(value));
+                case "reuseRefreshTokens" -> builder.reuseRefreshTokens((Boolean) value);
+                case "idTokenSignatureAlgorithm" ->
+                        builder.idTokenSignatureAlgorithm(SignatureAlgorithm.from((String) value));
+                default -> builder.setting(name, value);
+            }
+        });
+        return builder.build();
+    }
+
+    private static Duration seconds(Object value) {
+        return Duration.ofSeconds(((Number) value).longValue());
+    }
+
+    private record Version(long clients, LocalDateTime lastModified) {
+    }
+
+    private record Snapshot(Map<String, RegisteredClient> byId, Map<String, RegisteredClient> byClientId,
+                            Version version) {
+    }
 }
@@ -1,7 +1,9 @@
 package com.easyshop.auth.service;
 
+import com.easyshop.auth.entity.User;
 import com.easyshop.auth.repository.UserRepository;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -9,21 +11,39 @@ import org.springframework.transaction.annotation.Transactional;
 
 /**
  * {@link UserDetailsService} implementation that loads users from the database using {@link UserRepository}.
- * The user's email is used as the unique identifier for authentication.
+ * The user's email is used as the unique identifier for authentication; emails that
+ * {@link RegisteredEmails} has never seen are rejected without a query. Stored password hashes
+ * that the encoder considers outdated are replaced after a successful form login.
  */
 @Service
 @Transactional(readOnly = true)
-public class DatabaseUserDetailsService implements UserDetailsService {
+public class DatabaseUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository users;
 
-    public DatabaseUserDetailsService(UserRepository users) {
+    private final RegisteredEmails emails;
+
+    public DatabaseUserDetailsService(UserRepository users, RegisteredEmails emails) {
         this.users = users;
+        this.emails = emails;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return users.findByEmail(username.toLowerCase().trim())
+        String email = RegisteredEmails.normalize(username);
+        // DaoAuthenticationProvider still runs a dummy hash for unknown users
+        if (!emails.mightExist(email)) {
+            throw new UsernameNotFoundException("User not found: " + username);
+        }
+        return users.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
     }
-}
 
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User stored = users.findByEmail(RegisteredEmails.normalize(user.getUsername()))
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + user.getUsername()));
+        stored.setPassword(newPassword);
+        return users.save(stored);
+    }
+}
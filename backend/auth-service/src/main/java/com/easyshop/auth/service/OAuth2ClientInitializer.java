@@ -11,6 +11,8 @@ import java.util.Set;
 
 @Service
 public class OAuth2ClientInitializer implements CommandLineRunner {
+
+    private static final String PURCHASE_SERVICE_SCOPES = "[\"read\",\"write\",\"STOCK_RESERVE\"]";
     
     private final OAuth2ClientRepository clientRepository;
     private final PasswordEncoder passwordEncoder;
@@ -29,6 +31,10 @@ public class OAuth2ClientInitializer implements CommandLineRunner {
     
     @Value("${PURCHASE_SERVICE_CLIENT_SECRET:purchase-service-secret}")
     private String purchaseServiceClientSecret;
+
+    // Only set for load tests; never in production, the client may administer the catalog
+    @Value("${LOADTEST_CLIENT_SECRET:}")
+    private String loadTestClientSecret;
     
     public OAuth2ClientInitializer(OAuth2ClientRepository clientRepository, PasswordEncoder passwordEncoder) {
         this.clientRepository = clientRepository;
@@ -86,19 +92,51 @@ public class OAuth2ClientInitializer implements CommandLineRunner {
             clientRepository.save(productServiceClient);
         }
         
-        // Initialize purchase-service client
-        if (!clientRepository.existsByClientId("purchase-service")) {
+        // Initialize purchase-service client; STOCK_RESERVE lets it take and return stock in product-service
+        clientRepository.findByClientId("purchase-service").ifPresentOrElse(existing -> {
+            // Clients created before the scope existed get it added
+            if (!existing.getScopes().contains("\"STOCK_RESERVE\"")) {
+                existing.setScopes(PURCHASE_SERVICE_SCOPES);
+                clientRepository.save(existing);
+            }
+        }, () -> {
             OAuth2Client purchaseServiceClient = OAuth2Client.builder()
                     .clientId("purchase-service")
                     .clientSecret(passwordEncoder.encode(purchaseServiceClientSecret))
                     .clientAuthenticationMethods("[\"client_secret_basic\"]")
                     .authorizationGrantTypes("[\"client_credentials\"]")
                     .redirectUris("[]")
-                    .scopes("[\"read\",\"write\"]")
+                    .scopes(PURCHASE_SERVICE_SCOPES)
                     .clientSettings("{}")
                     .tokenSettings("{\"accessTokenTimeToLive\":3600}")
                     .build();
             clientRepository.save(purchaseServiceClient);
+        });
+
+        // Initialize load-test client (the load generator's buyer and catalog seeder). Its ADMIN scope
+        // administers the catalog, so it only exists while LOADTEST_CLIENT_SECRET is set
+        if (loadTestClientSecret.isBlank()) {
+            clientRepository.findByClientId("load-test").ifPresent(clientRepository::delete);
+            return;
         }
+        clientRepository.findByClientId("load-test").ifPresentOrElse(existing -> {
+            // A new secret replaces the one the client was registered with
+            if (!passwordEncoder.matches(loadTestClientSecret, existing.getClientSecret())) {
+                existing.setClientSecret(passwordEncoder.encode(loadTestClientSecret));
+                clientRepository.save(existing);
+            }
+        }, () -> {
+            OAuth2Client loadTestClient = OAuth2Client.builder()
+                    .clientId("load-test")
+                    .clientSecret(passwordEncoder.encode(loadTestClientSecret))
+                    .clientAuthenticationMethods("[\"client_secret_basic\"]")
+                    .authorizationGrantTypes("[\"client_credentials\"]")
+                    .redirectUris("[]")
+                    .scopes("[\"read\",\"write\",\"ADMIN\"]")
+                    .clientSettings("{}")
+                    .tokenSettings("{\"accessTokenTimeToLive\":3600}")
+                    .build();
+            clientRepository.save(loadTestClient);
+        });
     }
 }
@@ -0,0 +1,206 @@
+package com.easyshop.auth.service;
+
+import com.easyshop.auth.repository.UserRepository;
+import com.easyshop.auth.repository.UserRepository.EmailRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory Bloom filter of every registered (normalized) email, so that logins and
+ * registrations for emails that were never seen can be answered without a database round trip.
+ * <p>
+ * The filter is built once the application is ready and then kept in step with registrations
+ * made through this instance ({@link #add}) and, every {@code refresh-interval}, with users
+ * created by other instances. A miss also triggers that catch-up when the last one is older
+ * than {@code max-staleness}, so a user who just registered elsewhere is not turned away.
+ * Until the first load completes, every email is reported as possibly registered.
+ */
+@Slf4j
+@Service
+public class RegisteredEmails {
+
+    private static final int BATCH_SIZE = 10_000;
+    // Rows are stamped with the creating instance's clock; re-read this far back to cover skew
+    // between instances and transactions that commit after a later one.
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofSeconds(30);
+
+    private final UserRepository users;
+    private final long expectedUsers;
+    private final double falsePositiveProbability;
+    private final long maxStalenessNanos;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Counter absent;
+    private final Counter maybePresent;
+
+    private volatile EmailBloomFilter filter;
+    private volatile LocalDateTime createdSince;
+    private volatile long lastSyncNanos;
+
+    public RegisteredEmails(UserRepository users,
+                            @Value("${auth.email-filter.expected-users:1000000}") long expectedUsers,
+                            @Value("${auth.email-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                            @Value("${auth.email-filter.max-staleness:1s}") Duration maxStaleness,
+                            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.users = users;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            absent = lookups(registry, "absent");
+            maybePresent = lookups(registry, "maybe_present");
+            Gauge.builder("auth.email.filter.size", this, RegisteredEmails::size)
+                    .description("Emails in the registered email filter")
+                    .register(registry);
+        } else {
+            absent = null;
+            maybePresent = null;
+        }
+    }
+
+    public static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * Whether a user with this normalized email may exist. {@code false} is definite;
+     * {@code true} must be confirmed against the database.
+     */
+    public boolean mightExist(String email) {
+        EmailBloomFilter current = filter;
+        boolean result = current == null || current.mightContain(email);
+        if (!result && System.nanoTime() - lastSyncNanos > maxStalenessNanos) {
+            catchUpIfStale();
+            result = filter.mightContain(email);
+        }
+        record(result);
+        return result;
+    }
+
+    /**
+     * Records an email registered through this instance.
+     */
+    public void add(String email) {
+        EmailBloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+    }
+
+    public long size() {
+        EmailBloomFilter current = filter;
+        return current == null ? 0 : current.approximateSize();
+    }
+
+    /**
+     * Builds the filter once Flyway and the other startup work are done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        syncLock.lock();
+        try {
+            rebuild();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Picks up users registered by other instances, or rebuilds a larger filter once this one
+     * holds more emails than it was sized for.
+     */
+    @Scheduled(fixedDelayString = "${auth.email-filter.refresh-interval:5s}",
+            initialDelayString = "${auth.email-filter.refresh-interval:5s}")
+    public void refresh() {
+        syncLock.lock();
+        try {
+            EmailBloomFilter current = filter;
+            if (current == null || current.isSaturated()) {
+                rebuild();
+            } else {
+                catchUp(current);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void catchUpIfStale() {
+        try {
+            // Never queue logins behind a full rebuild; they fall back to the current filter
+            if (!syncLock.tryLock(100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            if (System.nanoTime() - lastSyncNanos > maxStalenessNanos) {
+                catchUp(filter);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        long count = users.count();
+        EmailBloomFilter built = new EmailBloomFilter(Math.max(expectedUsers, count * 2), falsePositiveProbability);
+        long afterId = 0;
+        List<EmailRow> batch;
+        do {
+            batch = users.findEmailsAfter(afterId, Limit.of(BATCH_SIZE));
+            for (EmailRow row : batch) {
+                built.put(normalize(row.getEmail()));
+                afterId = row.getId();
+            }
+        } while (batch.size() == BATCH_SIZE);
+        filter = built;
+        createdSince = startedAt.minus(CATCH_UP_OVERLAP);
+        lastSyncNanos = System.nanoTime();
+        log.info("Loaded {} registered emails into a {} KiB filter in {} ms", built.approximateSize(),
+                built.bitSize() / 8 / 1024, Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private void catchUp(EmailBloomFilter current) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        for (EmailRow row : users.findEmailsCreatedSince(createdSince)) {
+            current.put(normalize(row.getEmail()));
+        }
+        createdSince = startedAt.minus(CATCH_UP_OVERLAP);
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void record(boolean result) {
+        Counter counter = result ? maybePresent : absent;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("auth.email.filter.lookups")
+                .description("Registered email filter lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -1,8 +1,10 @@
 package com.easyshop.auth.web;
 
+import com.easyshop.auth.security.PasswordHashingRejectedException;
 import com.easyshop.common.web.ApiResponseDto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -31,6 +33,14 @@ public class GlobalExceptionHandler {
                 .body(new ApiResponseDto(false, "Database error"));
     }
 
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<ApiResponseDto> handleHashingRejected(PasswordHashingRejectedException ex) {
+        log.warn("Password hashing rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponseDto(false, ex.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponseDto> handleUnexpected(Exception ex) {
         log.error("Unexpected error", ex);
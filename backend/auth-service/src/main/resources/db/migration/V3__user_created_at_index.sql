@@ -0,0 +1,2 @@
+-- Lets auth-service pick up recently registered emails without scanning the table
+CREATE INDEX IF NOT EXISTS idx_user_created_at ON auth.user(created_at);
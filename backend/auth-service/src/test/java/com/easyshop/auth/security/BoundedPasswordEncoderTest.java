@@ -0,0 +1,122 @@
+package com.easyshop.auth.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class BoundedPasswordEncoderTest {
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    @Test
+    void hashesOffTheCallingThread() {
+        AtomicReference<String> hashingThread = new AtomicReference<>();
+        encoder = new BoundedPasswordEncoder(new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                hashingThread.set(Thread.currentThread().getName());
+                return "hashed:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("hashed:" + rawPassword);
+            }
+        }, 1, 1);
+
+        assertThat(encoder.encode("secret")).isEqualTo("hashed:secret");
+        assertThat(encoder.matches("secret", "hashed:secret")).isTrue();
+        assertThat(hashingThread.get()).startsWith("password-hashing-").isNotEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    void rejectsWhenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        encoder = new BoundedPasswordEncoder(blockingEncoder(release), 1, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        encoder.bindTo(registry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        await().atMost(Duration.ofSeconds(1))
+                .until(() -> registry.get("executor.active").tag("name", "password.hashing").gauge().value() == 1);
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        await().atMost(Duration.ofSeconds(1)).until(() -> encoder.queueDepth() == 1);
+
+        assertThatThrownBy(() -> encoder.encode("c")).isInstanceOf(PasswordHashingRejectedException.class);
+        assertThat(encoder.rejectedCount()).isEqualTo(1);
+        assertThat(registry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("executor.queued").tag("name", "password.hashing").gauge().value()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(1, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("b");
+    }
+
+    @Test
+    void failuresReachTheCaller() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1);
+
+        assertThatThrownBy(() -> encoder.encode(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void lowerCostHashesAreUpgraded() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), 1, 1);
+
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret"))).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("secret"))).isFalse();
+    }
+
+    @Test
+    void costIsTheHighestWithinTarget() {
+        assertThat(BCryptCostCalibrator.costFor(Duration.ofMillis(40), Duration.ofMillis(100), 10, 14)).isEqualTo(11);
+        assertThat(BCryptCostCalibrator.costFor(Duration.ofMillis(40), Duration.ofMillis(160), 10, 14)).isEqualTo(12);
+        assertThat(BCryptCostCalibrator.costFor(Duration.ofMillis(200), Duration.ofMillis(100), 10, 14)).isEqualTo(10);
+        assertThat(BCryptCostCalibrator.costFor(Duration.ofMillis(1), Duration.ofSeconds(1), 10, 14)).isEqualTo(14);
+    }
+
+    @Test
+    void calibrationStaysWithinBounds() {
+        int cost = BCryptCostCalibrator.calibrate(Duration.ofMillis(50), 4, 8);
+
+        assertThat(cost).isBetween(4, 8);
+    }
+
+    private static PasswordEncoder blockingEncoder(CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.easyshop.auth.service;
+
+import com.easyshop.auth.entity.User;
+import com.easyshop.auth.repository.UserRepository;
+import com.easyshop.auth.web.dto.AuthDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthServiceTest {
+
+    private static final String PASSWORD = "Secret123!";
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final BCryptPasswordEncoder encoder = spy(new BCryptPasswordEncoder(5));
+    private final RegisteredEmails emails = mock(RegisteredEmails.class);
+    private final AuthService service = new AuthService(users, encoder, emails);
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("alice@example.com");
+        when(users.findByEmail("alice@example.com")).thenAnswer(invocation -> Optional.of(user));
+        when(emails.mightExist("alice@example.com")).thenReturn(true);
+    }
+
+    @Test
+    void loginRehashesPasswordsStoredWithLowerCost() {
+        user.setPassword(new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        assertThat(service.login(new AuthDto("alice@example.com", PASSWORD))).isTrue();
+
+        verify(users).save(user);
+        assertThat(user.getPassword()).startsWith("$2a$05$");
+        assertThat(encoder.matches(PASSWORD, user.getPassword())).isTrue();
+    }
+
+    @Test
+    void loginKeepsCurrentHashes() {
+        user.setPassword(encoder.encode(PASSWORD));
+
+        assertThat(service.login(new AuthDto("alice@example.com", PASSWORD))).isTrue();
+
+        verify(users, never()).save(any());
+    }
+
+    @Test
+    void failedLoginNeverRehashes() {
+        user.setPassword(new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        assertThat(service.login(new AuthDto("alice@example.com", "Wrong123!"))).isFalse();
+
+        verify(users, never()).save(any());
+    }
+
+    @Test
+    void loginForUnknownEmailSkipsTheDatabaseButStillHashes() {
+        assertThat(service.login(new AuthDto(" Bob@Example.com", PASSWORD))).isFalse();
+
+        verify(emails).mightExist("bob@example.com");
+        verify(users, never()).findByEmail(anyString());
+        verify(encoder).matches(any(), anyString());
+    }
+
+    @Test
+    void registerForUnknownEmailSkipsTheExistenceCheck() {
+        assertThat(service.register(new AuthDto("Bob@example.com", PASSWORD))).isTrue();
+
+        verify(users, never()).existsByEmail(anyString());
+        verify(users).save(any(User.class));
+        verify(emails).add("bob@example.com");
+    }
+
+    @Test
+    void registerChecksTheDatabaseWhenTheFilterMayContainTheEmail() {
+        when(users.existsByEmail("alice@example.com")).thenReturn(true);
+
+        assertThat(service.register(new AuthDto("alice@example.com", PASSWORD))).isFalse();
+
+        verify(users, never()).save(any(User.class));
+    }
+
+    @Test
+    void uniqueConstraintDecidesRacingRegistrations() {
+        when(users.save(any(User.class))).thenThrow(new DataIntegrityViolationException("uk_user_email"));
+
+        assertThat(service.register(new AuthDto("bob@example.com", PASSWORD))).isFalse();
+
+        verify(users, times(1)).save(any(User.class));
+        verify(emails, never()).add(anyString());
+    }
+}
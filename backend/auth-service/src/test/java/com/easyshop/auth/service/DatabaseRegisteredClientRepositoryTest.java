@@ -0,0 +1,166 @@
+package com.easyshop.auth.service;
+
+import com.easyshop.auth.entity.OAuth2Client;
+import com.easyshop.auth.repository.OAuth2ClientRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DatabaseRegisteredClientRepositoryTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    private final List<OAuth2Client> rows = new ArrayList<>();
+    private OAuth2ClientRepository clientRepository;
+    private DatabaseRegisteredClientRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        rows.add(OAuth2Client.builder()
+                .id(1L)
+                .clientId("webapp")
+                .clientAuthenticationMethods("[\"none\"]")
+                .authorizationGrantTypes("[\"authorization_code\",\"refresh_token\"]")
+                .redirectUris("[\"http://localhost:3000/callback\"]")
+                .scopes("[\"openid\",\"read\"]")
+                .clientSettings("{\"requireAuthorizationConsent\":false,\"requireProofKey\":true}")
+                .tokenSettings("{\"accessTokenTimeToLive\":3600,\"refreshTokenTimeToLive\":604800,\"idTokenSignatureAlgorithm\":\"RS256\"}")
+                .updatedAt(CREATED)
+                .build());
+        rows.add(serviceClient(2L, "gateway", CREATED));
+
+        clientRepository = mock(OAuth2ClientRepository.class);
+        when(clientRepository.findAll()).thenAnswer(invocation -> List.copyOf(rows));
+        when(clientRepository.count()).thenAnswer(invocation -> (long) rows.size());
+        when(clientRepository.findLastModified()).thenAnswer(invocation -> rows.stream()
+                .map(OAuth2Client::getUpdatedAt)
+                .max(LocalDateTime::compareTo));
+        repository = new DatabaseRegisteredClientRepository(clientRepository, new ObjectMapper());
+        repository.load();
+    }
+
+    @Test
+    void lookupsAreServedFromTheLoadedSnapshot() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(repository.findByClientId("gateway")).isNotNull();
+            assertThat(repository.findById("1")).isNotNull();
+        }
+
+        verify(clientRepository, times(1)).findAll();
+        verify(clientRepository, times(0)).findByClientId("gateway");
+    }
+
+    @Test
+    void idsAreStableAndResolvable() {
+        RegisteredClient gateway = repository.findByClientId("gateway");
+
+        assertThat(gateway.getId()).isEqualTo("2");
+        assertThat(repository.findById(gateway.getId())).isSameAs(gateway);
+        assertThat(repository.findByClientId("gateway")).isSameAs(gateway);
+        assertThat(repository.findByClientId("unknown")).isNull();
+    }
+
+    @Test
+    void columnsAreParsedIntoTheRegisteredClient() {
+        RegisteredClient webapp = repository.findByClientId("webapp");
+
+        assertThat(webapp.getClientAuthenticationMethods()).containsExactly(ClientAuthenticationMethod.NONE);
+        assertThat(webapp.getAuthorizationGrantTypes())
+                .containsExactlyInAnyOrder(AuthorizationGrantType.AUTHORIZATION_CODE, AuthorizationGrantType.REFRESH_TOKEN);
+        assertThat(webapp.getRedirectUris()).containsExactly("http://localhost:3000/callback");
+        assertThat(webapp.getScopes()).containsExactlyInAnyOrder("openid", "read");
+        assertThat(webapp.getClientSettings().isRequireProofKey()).isTrue();
+        assertThat(webapp.getClientSettings().isRequireAuthorizationConsent()).isFalse();
+        assertThat(webapp.getTokenSettings().getAccessTokenTimeToLive()).isEqualTo(Duration.ofHours(1));
+        assertThat(webapp.getTokenSettings().getRefreshTokenTimeToLive()).isEqualTo(Duration.ofDays(7));
+        assertThat(webapp.getTokenSettings().getIdTokenSignatureAlgorithm()).isEqualTo(SignatureAlgorithm.RS256);
+    }
+
+    @Test
+    void unchangedTableIsNotReloaded() {
+        repository.refreshIfChanged();
+        repository.refreshIfChanged();
+
+        verify(clientRepository, times(1)).findAll();
+    }
+
+    @Test
+    void updatedClientIsPickedUp() {
+        RegisteredClient before = repository.findByClientId("gateway");
+        rows.set(1, serviceClient(2L, "gateway", CREATED.plusMinutes(1)));
+        rows.get(1).setScopes("[\"read\"]");
+
+        repository.refreshIfChanged();
+
+        assertThat(repository.findByClientId("gateway")).isNotSameAs(before);
+        assertThat(repository.findByClientId("gateway").getScopes()).containsExactly("read");
+    }
+
+    @Test
+    void addedAndRemovedClientsArePickedUp() {
+        rows.add(serviceClient(3L, "purchase-service", CREATED));
+        repository.refreshIfChanged();
+        assertThat(repository.findByClientId("purchase-service")).isNotNull();
+
+        rows.remove(2);
+        repository.refreshIfChanged();
+        assertThat(repository.findByClientId("purchase-service")).isNull();
+    }
+
+    @Test
+    void repeatLookupsDoNotAllocate() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < 10_000; i++) {
+            repository.findByClientId("gateway");
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            repository.findByClientId("gateway");
+            repository.findById("2");
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Leaves room for the measurement itself, far below one object per lookup
+        assertThat(allocated).isLessThan(10_000);
+    }
+
+    @Test
+    void firstLookupLoadsWhenNotYetLoaded() {
+        DatabaseRegisteredClientRepository fresh = new DatabaseRegisteredClientRepository(clientRepository, new ObjectMapper());
+
+        assertThat(fresh.findByClientId("webapp")).isNotNull();
+    }
+
+    private static OAuth2Client serviceClient(long id, String clientId, LocalDateTime updatedAt) {
+        return OAuth2Client.builder()
+                .id(id)
+                .clientId(clientId)
+                .clientSecret("{noop}secret")
+                .clientAuthenticationMethods("[\"client_secret_basic\"]")
+                .authorizationGrantTypes("[\"client_credentials\"]")
+                .redirectUris("[]")
+                .scopes("[\"read\",\"write\"]")
+                .clientSettings("{}")
+                .tokenSettings("{\"accessTokenTimeToLive\":3600}")
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
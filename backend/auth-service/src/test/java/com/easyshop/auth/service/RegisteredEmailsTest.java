@@ -0,0 +1,157 @@
+package com.easyshop.auth.service;
+
+import com.easyshop.auth.repository.UserRepository;
+import com.easyshop.auth.repository.UserRepository.EmailRow;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RegisteredEmailsTest {
+
+    private final List<EmailRow> rows = new ArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private UserRepository users;
+
+    @BeforeEach
+    void setUp() {
+        users = mock(UserRepository.class);
+        when(users.count()).thenAnswer(invocation -> (long) rows.size());
+        when(users.findEmailsAfter(anyLong(), any(Limit.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            int max = invocation.<Limit>getArgument(1).max();
+            int from = (int) afterId;
+            return rows.subList(Math.min(from, rows.size()), Math.min(from + max, rows.size()));
+        });
+        when(users.findEmailsCreatedSince(any(LocalDateTime.class))).thenReturn(List.of());
+    }
+
+    @Test
+    void reportsEveryEmailAsPossibleUntilLoaded() {
+        RegisteredEmails emails = emails(100, Duration.ofMinutes(1));
+
+        assertThat(emails.mightExist("anyone@example.com")).isTrue();
+    }
+
+    @Test
+    void loadsRegisteredEmailsNormalized() {
+        addUsers(25_000);
+        rows.add(row(rows.size() + 1, " Mixed.Case@Example.com"));
+        RegisteredEmails emails = emails(100, Duration.ofMinutes(1));
+
+        emails.load();
+
+        assertThat(emails.mightExist("user1@example.com")).isTrue();
+        assertThat(emails.mightExist("user25000@example.com")).isTrue();
+        assertThat(emails.mightExist("mixed.case@example.com")).isTrue();
+        assertThat(emails.mightExist("nobody@example.com")).isFalse();
+        verify(users, times(3)).findEmailsAfter(anyLong(), any(Limit.class));
+        assertThat(registry.get("auth.email.filter.lookups").tag("result", "absent").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void remembersEmailsRegisteredLocally() {
+        RegisteredEmails emails = emails(100, Duration.ofMinutes(1));
+        emails.load();
+
+        emails.add("new@example.com");
+
+        assertThat(emails.mightExist("new@example.com")).isTrue();
+    }
+
+    @Test
+    void staleMissCatchesUpWithOtherInstances() {
+        RegisteredEmails emails = emails(100, Duration.ZERO);
+        emails.load();
+        when(users.findEmailsCreatedSince(any(LocalDateTime.class)))
+                .thenReturn(List.of(row(1, "elsewhere@example.com")));
+
+        assertThat(emails.mightExist("elsewhere@example.com")).isTrue();
+    }
+
+    @Test
+    void freshMissDoesNotQuery() {
+        RegisteredEmails emails = emails(100, Duration.ofMinutes(1));
+        emails.load();
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(emails.mightExist("attacker" + i + "@example.com")).isFalse();
+        }
+
+        verify(users, never()).findEmailsCreatedSince(any(LocalDateTime.class));
+    }
+
+    @Test
+    void refreshRebuildsLargerOnceSaturated() {
+        addUsers(10);
+        RegisteredEmails emails = emails(10, Duration.ofMinutes(1));
+        emails.load();
+        addUsers(200);
+        rows.forEach(row -> emails.add(row.getEmail()));
+
+        emails.refresh();
+
+        verify(users, times(2)).count();
+        assertThat(emails.size()).isEqualTo(210);
+    }
+
+    @Test
+    void unknownEmailsRarelyLookRegistered() {
+        addUsers(100_000);
+        RegisteredEmails emails = emails(100_000, Duration.ofMinutes(1));
+        emails.load();
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (emails.mightExist("stranger" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(emails.size()).isGreaterThan(99_000);
+        assertThat(falsePositives).isLessThan(1_500);
+    }
+
+    private RegisteredEmails emails(long expectedUsers, Duration maxStaleness) {
+        return new RegisteredEmails(users, expectedUsers, 0.01, maxStaleness,
+                new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    private void addUsers(int count) {
+        int first = rows.size() + 1;
+        for (int i = first; i < first + count; i++) {
+            rows.add(row(i, "user" + i + "@example.com"));
+        }
+    }
+
+    private static EmailRow row(long id, String email) {
+        return new EmailRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.auth.entity.User;
+import com.easyshop.auth.repository.UserRepository;
+import com.easyshop.auth.security.BoundedPasswordEncoder;
+import com.easyshop.auth.service.AuthService;
+import com.easyshop.auth.service.DatabaseRegisteredClientRepository;
+import com.easyshop.auth.service.OAuth2ClientInitializer;
+import com.easyshop.auth.service.RegisteredEmails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * The auth-service beans behind login, registration and client lookup, without the
+ * authorization server's web layer. {@code benchmark.bcrypt-cost} sets the hashing cost.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan(basePackageClasses = User.class)
+@EnableJpaRepositories(basePackageClasses = UserRepository.class)
+@Import({AuthService.class, RegisteredEmails.class, DatabaseRegisteredClientRepository.class,
+        OAuth2ClientInitializer.class})
+class AuthConfig {
+
+    @Bean
+    BoundedPasswordEncoder passwordEncoder(@Value("${benchmark.bcrypt-cost:10}") int cost) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(cost),
+                Runtime.getRuntime().availableProcessors(), 64);
+    }
+}
@@ -0,0 +1,78 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.auth.service.AuthService;
+import com.easyshop.auth.web.dto.AuthDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login and registration through {@link AuthService}, bcrypt included. At the production cost
+ * the hash dominates; the cheap cost shows what the service adds around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthServiceBenchmark {
+
+    private static final String PASSWORD = "Benchmark1!";
+
+    @Param({"4", "10"})
+    public int bcryptCost;
+
+    @Param({"10000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private AuthService service;
+    private final AtomicLong registrations = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.start(AuthConfig.class, "benchmark.bcrypt-cost=" + bcryptCost);
+        service = context.getBean(AuthService.class);
+        for (int i = 0; i < users; i++) {
+            service.register(new AuthDto("user" + i + "@example.com", PASSWORD));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean loginKnownUser() {
+        return service.login(new AuthDto("user42@example.com", PASSWORD));
+    }
+
+    /**
+     * Answered by the registered email filter without a query.
+     */
+    @Benchmark
+    public boolean loginUnknownEmail() {
+        return service.login(new AuthDto("stranger@example.org", PASSWORD));
+    }
+
+    @Benchmark
+    public boolean register() {
+        return service.register(new AuthDto("new" + registrations.incrementAndGet() + "@example.com", PASSWORD));
+    }
+}
@@ -0,0 +1,163 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.purchase.client.ProductClient;
+import com.easyshop.purchase.domain.CheckoutRequestRepository;
+import com.easyshop.purchase.domain.OutboxEventRepository;
+import com.easyshop.purchase.domain.PendingReleaseRepository;
+import com.easyshop.purchase.domain.Purchase;
+import com.easyshop.purchase.domain.PurchaseItemRepository;
+import com.easyshop.purchase.domain.PurchaseRepository;
+import com.easyshop.purchase.outbox.InProcessPurchaseEventBroker;
+import com.easyshop.purchase.outbox.OutboxRelay;
+import com.easyshop.purchase.outbox.PurchaseEventOutbox;
+import com.easyshop.purchase.service.CheckoutIdempotency;
+import com.easyshop.purchase.service.PurchaseService;
+import com.easyshop.purchase.web.dto.CheckoutDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import feign.FeignException;
+import feign.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Checkout latency against a product-service that answers every call after
+ * {@value #LATENCY_MS} ms, per cart size, with the bulk lookup and with the fallback that
+ * fans out one lookup per line on virtual threads, a few at a time. The bulk lookup should stay
+ * close to one round trip for the lookup plus one for the reservation, whatever the cart size;
+ * the fallback adds a round trip for every eight lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CheckoutLookupLatencyBenchmark {
+    static final long LATENCY_MS = 20;
+
+    @Param({"bulk", "fan-out"})
+    public String lookup;
+
+    @Param({"1", "10", "50"})
+    public int cartSize;
+
+    private ConfigurableApplicationContext context;
+    private PurchaseService service;
+    private CheckoutDto cart;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.start(Config.class, "benchmark.lookup=" + lookup);
+        service = context.getBean(PurchaseService.class);
+        cart = new CheckoutDto(LongStream.rangeClosed(1, cartSize)
+                .mapToObj(id -> new CheckoutDto.Item(id, 1))
+                .toList());
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearPurchases() {
+        context.getBean(PurchaseItemRepository.class).deleteAllInBatch();
+        context.getBean(PurchaseRepository.class).deleteAllInBatch();
+        context.getBean(OutboxEventRepository.class).deleteAllInBatch();
+        context.getBean(CheckoutRequestRepository.class).deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PurchaseResponseDto checkout() {
+        return service.checkout(cart, "buyer@example.com");
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Purchase.class)
+    @EnableJpaRepositories(basePackageClasses = PurchaseRepository.class)
+    @Import({PurchaseEventOutbox.class, OutboxRelay.class, InProcessPurchaseEventBroker.class,
+            CheckoutIdempotency.class})
+    static class Config {
+
+        @Bean
+        PurchaseService purchaseService(PurchaseRepository purchases, PurchaseItemRepository items,
+                                        TransactionTemplate transactions, PurchaseEventOutbox events,
+                                        CheckoutIdempotency idempotency, PendingReleaseRepository pendingReleases,
+                                        Environment environment) {
+            ProductClient client = new SlowProductClient("bulk".equals(environment.getProperty("benchmark.lookup")));
+            return new PurchaseService(purchases, items, client, transactions, events, idempotency,
+                    PurchaseCheckoutBenchmark.Config.releases(pendingReleases, client, transactions));
+        }
+    }
+
+    /**
+     * Every call takes {@value #LATENCY_MS} ms. Without the bulk endpoint, bulk lookups fail
+     * with 404 as an older product-service would answer.
+     */
+    static class SlowProductClient extends PurchaseCheckoutBenchmark.StubProductClient {
+        private final boolean bulk;
+
+        SlowProductClient(boolean bulk) {
+            this.bulk = bulk;
+        }
+
+        @Override
+        public ProductInfo getProduct(Long id) {
+            pause();
+            return super.getProduct(id);
+        }
+
+        @Override
+        public List<ProductInfo> getProducts(Collection<Long> ids) {
+            if (!bulk) {
+                Request request = Request.create(Request.HttpMethod.GET, "/api/products", Map.of(), null,
+                        StandardCharsets.UTF_8, null);
+                throw new FeignException.NotFound("Not Found", request, null, Map.of());
+            }
+            pause();
+            return ids.stream().map(super::getProduct).toList();
+        }
+
+        @Override
+        public ReservationResult reserve(ReservationRequest request) {
+            pause();
+            return super.reserve(request);
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.easyshop.benchmarks;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the small Spring contexts the repository-backed benchmarks run against: only the
+ * service classes under test, their repositories and an in-memory database, configured by
+ * {@code benchmarks.yml}. Each benchmark class runs in its own forked JVM, so contexts never
+ * share a database.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static ConfigurableApplicationContext start(Class<?> configuration, String... properties) {
+        return new SpringApplicationBuilder(configuration)
+                .properties("spring.config.name=benchmarks")
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.product.domain.Product;
+import com.easyshop.purchase.web.dto.PurchaseItemDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Response bodies of the product and purchase endpoints, written with an {@link ObjectMapper}
+ * configured the way Spring MVC's message converter builds it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper mapper;
+    private Product product;
+    private List<Product> page;
+    private PurchaseResponseDto purchase;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        product = product(1);
+        page = IntStream.rangeClosed(1, 20).mapToObj(JsonSerializationBenchmark::product).toList();
+        purchase = new PurchaseResponseDto(1L, new BigDecimal("149.85"), "COMPLETED",
+                IntStream.rangeClosed(1, 5)
+                        .mapToObj(i -> new PurchaseItemDto((long) i, "Product " + i, new BigDecimal("29.97"), 3))
+                        .toList());
+    }
+
+    @Benchmark
+    public byte[] product() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] productPage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] purchase() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(purchase);
+    }
+
+    private static Product product(int id) {
+        return new Product((long) id, "Product " + id, "A product used by the serialization benchmark",
+                new BigDecimal("9.99"), 100, 0L);
+    }
+}
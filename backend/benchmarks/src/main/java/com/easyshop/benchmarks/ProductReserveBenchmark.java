@@ -0,0 +1,97 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.product.domain.Product;
+import com.easyshop.product.domain.ProductRepository;
+import com.easyshop.product.service.ProductCatalogCache;
+import com.easyshop.product.service.ProductService;
+import com.easyshop.product.service.StockFeed;
+import com.easyshop.product.web.dto.ReserveBatchDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductService#reserve} (one conditional UPDATE) and {@link ProductService#reserveAll}
+ * for a small cart, through the transactional proxy, against the database stand-in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductReserveBenchmark {
+
+    @Param("1000")
+    public int products;
+
+    private ConfigurableApplicationContext context;
+    private ProductService service;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.start(Config.class);
+        service = context.getBean(ProductService.class);
+        ProductRepository repo = context.getBean(ProductRepository.class);
+        List<Product> rows = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            // Enough stock that no run ever drains a product
+            rows.add(Product.builder().name("Product " + i).price(BigDecimal.TEN).stock(Integer.MAX_VALUE).build());
+        }
+        ids = repo.saveAll(rows).stream().mapToLong(Product::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ProductService.ReserveResult reserve() {
+        return service.reserve(randomId(), 1);
+    }
+
+    @Benchmark
+    public ProductService.BatchReserveResult reserveCartOfThree() {
+        return service.reserveAll(UUID.randomUUID(), List.of(
+                new ReserveBatchDto.Line(randomId(), 1),
+                new ReserveBatchDto.Line(randomId(), 2),
+                new ReserveBatchDto.Line(randomId(), 1)));
+    }
+
+    private long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Product.class)
+    @EnableJpaRepositories(basePackageClasses = ProductRepository.class)
+    @Import({ProductService.class, ProductCatalogCache.class, StockFeed.class})
+    static class Config {
+    }
+}
@@ -0,0 +1,172 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.purchase.client.ProductClient;
+import com.easyshop.purchase.domain.CheckoutRequestRepository;
+import com.easyshop.purchase.domain.OutboxEventRepository;
+import com.easyshop.purchase.domain.PendingReleaseRepository;
+import com.easyshop.purchase.domain.Purchase;
+import com.easyshop.purchase.domain.PurchaseItemRepository;
+import com.easyshop.purchase.domain.PurchaseRepository;
+import com.easyshop.purchase.outbox.InProcessPurchaseEventBroker;
+import com.easyshop.purchase.outbox.OutboxRelay;
+import com.easyshop.purchase.outbox.PurchaseEventOutbox;
+import com.easyshop.purchase.service.CheckoutIdempotency;
+import com.easyshop.purchase.service.PurchaseService;
+import com.easyshop.purchase.service.StockReleases;
+import com.easyshop.purchase.web.dto.CheckoutDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * {@link PurchaseService#checkout} end to end on the purchase side: pricing, the reservation
+ * call and persisting the purchase with its items and outbox event. {@link ProductClient} is
+ * answered in memory, so the numbers exclude the network hop to product-service. The
+ * {@code Idempotency-Key} variants show the cost of claiming a key and of answering a retry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PurchaseCheckoutBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int cartSize;
+
+    private ConfigurableApplicationContext context;
+    private PurchaseService service;
+    private CheckoutDto cart;
+    private final AtomicLong keys = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.start(Config.class);
+        service = context.getBean(PurchaseService.class);
+        cart = new CheckoutDto(IntStream.rangeClosed(1, cartSize)
+                .mapToObj(i -> new CheckoutDto.Item((long) i, 1 + i % 3))
+                .toList());
+    }
+
+    /**
+     * Keeps the purchase tables from growing across iterations.
+     */
+    @TearDown(Level.Iteration)
+    public void clearPurchases() {
+        context.getBean(PurchaseItemRepository.class).deleteAllInBatch();
+        context.getBean(PurchaseRepository.class).deleteAllInBatch();
+        context.getBean(OutboxEventRepository.class).deleteAllInBatch();
+        context.getBean(CheckoutRequestRepository.class).deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PurchaseResponseDto checkout() {
+        return service.checkout(cart, "buyer@example.com");
+    }
+
+    @Benchmark
+    public PurchaseResponseDto checkoutWithNewKey() {
+        return service.checkout(cart, "buyer@example.com", "key-" + keys.incrementAndGet());
+    }
+
+    @Benchmark
+    public PurchaseResponseDto retryWithSameKey() {
+        return service.checkout(cart, "buyer@example.com", "retry-" + cartSize);
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Purchase.class)
+    @EnableJpaRepositories(basePackageClasses = PurchaseRepository.class)
+    @Import({PurchaseEventOutbox.class, OutboxRelay.class, InProcessPurchaseEventBroker.class,
+            CheckoutIdempotency.class})
+    static class Config {
+
+        @Bean
+        PurchaseService purchaseService(PurchaseRepository purchases, PurchaseItemRepository items,
+                                        TransactionTemplate transactions, PurchaseEventOutbox events,
+                                        CheckoutIdempotency idempotency, PendingReleaseRepository pendingReleases) {
+            ProductClient client = new StubProductClient();
+            return new PurchaseService(purchases, items, client, transactions, events, idempotency,
+                    releases(pendingReleases, client, transactions));
+        }
+
+        /**
+         * Releases without the background retries; no checkout here ever needs one.
+         */
+        static StockReleases releases(PendingReleaseRepository pendingReleases, ProductClient client,
+                                      TransactionTemplate transactions) {
+            return new StockReleases(pendingReleases, client, transactions, Duration.ofSeconds(10),
+                    Duration.ofSeconds(1), Duration.ofMinutes(5),
+                    new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        }
+    }
+
+    /**
+     * Every product exists with plenty of stock, and every reservation succeeds.
+     */
+    static class StubProductClient implements ProductClient {
+
+        @Override
+        public ProductInfo getProduct(Long id) {
+            return new ProductInfo(id, "Product " + id, "Benchmark product", BigDecimal.valueOf(9.99), 1_000_000);
+        }
+
+        @Override
+        public List<ProductInfo> getProducts(Collection<Long> ids) {
+            List<ProductInfo> found = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                found.add(getProduct(id));
+            }
+            return found;
+        }
+
+        @Override
+        public ReservationResult reserve(ReservationRequest request) {
+            return new ReservationResult(true, request.items().stream()
+                    .map(l -> new ReservationResult.LineResult(l.productId(), l.qty(), "OK"))
+                    .toList());
+        }
+
+        @Override
+        public void release(UUID reservationId) {
+        }
+    }
+}
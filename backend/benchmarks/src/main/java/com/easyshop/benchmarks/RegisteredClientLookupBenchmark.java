@@ -0,0 +1,68 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.auth.entity.OAuth2Client;
+import com.easyshop.auth.repository.OAuth2ClientRepository;
+import com.easyshop.auth.service.DatabaseRegisteredClientRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DatabaseRegisteredClientRepository#findByClientId}, which the authorization server
+ * calls on every token request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisteredClientLookupBenchmark {
+
+    @Param({"20"})
+    public int extraClients;
+
+    private ConfigurableApplicationContext context;
+    private DatabaseRegisteredClientRepository clients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.start(AuthConfig.class, "benchmark.bcrypt-cost=4");
+        OAuth2ClientRepository repository = context.getBean(OAuth2ClientRepository.class);
+        for (int i = 0; i < extraClients; i++) {
+            repository.save(OAuth2Client.builder()
+                    .clientId("client-" + i)
+                    .clientAuthenticationMethods("[\"client_secret_basic\"]")
+                    .authorizationGrantTypes("[\"client_credentials\"]")
+                    .scopes("[\"read\"]")
+                    .tokenSettings("{\"accessTokenTimeToLive\":3600}")
+                    .build());
+        }
+        clients = context.getBean(DatabaseRegisteredClientRepository.class);
+        clients.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public RegisteredClient findByClientId() {
+        return clients.findByClientId("purchase-service");
+    }
+}
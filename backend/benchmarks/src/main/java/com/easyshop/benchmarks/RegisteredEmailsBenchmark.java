@@ -0,0 +1,133 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.auth.repository.UserRepository;
+import com.easyshop.auth.repository.UserRepository.EmailRow;
+import com.easyshop.auth.service.RegisteredEmails;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RegisteredEmails} with {@link #users} registered users: the per-lookup cost of an
+ * email nobody registered, which registration and password reset answer without a query, and
+ * of a registered one, and the time to load the filter at startup. The false positive rate of
+ * the loaded filter is logged once per trial.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisteredEmailsBenchmark {
+    private static final int PROBES = 1 << 16;
+
+    @Param({"1000000"})
+    public int users;
+
+    private UserRepository repository;
+    private RegisteredEmails emails;
+    private String[] unknown;
+    private String[] known;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        repository = repository(users);
+        emails = load();
+        unknown = new String[PROBES];
+        known = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            unknown[i] = "stranger" + i + "@example.org";
+            known[i] = email(1 + (int) ((long) i * users / PROBES));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            if (emails.mightExist("probe" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        log.info("{} users: {} in the filter, false positive rate {}", users, emails.size(),
+                falsePositives / 1_000_000.0);
+    }
+
+    @Benchmark
+    public boolean unknownEmail() {
+        return emails.mightExist(unknown[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean knownEmail() {
+        return emails.mightExist(known[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RegisteredEmails loadAtStartup() {
+        return load();
+    }
+
+    private RegisteredEmails load() {
+        RegisteredEmails loaded = new RegisteredEmails(repository, users, 0.01, Duration.ofMinutes(1),
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        loaded.load();
+        return loaded;
+    }
+
+    private static String email(int id) {
+        return "user" + id + "@example.com";
+    }
+
+    /**
+     * Answers the queries {@link RegisteredEmails} makes from {@code count} users held in memory,
+     * so the numbers are the filter's and not the database's.
+     */
+    private static UserRepository repository(int count) {
+        List<EmailRow> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rows.add(new Row((long) i, email(i)));
+        }
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "count" -> (long) rows.size();
+                    case "findEmailsAfter" -> {
+                        int from = (int) Math.min((long) args[0], rows.size());
+                        yield rows.subList(from, Math.min(from + ((Limit) args[1]).max(), rows.size()));
+                    }
+                    case "findEmailsCreatedSince" -> List.of();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private record Row(Long id, String email) implements EmailRow {
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getEmail() {
+            return email;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.easyshop.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}, typically from two commits:
+ * <pre>
+ * java -cp benchmarks.jar com.easyshop.benchmarks.ResultDiff base.json head.json [threshold-percent]
+ * </pre>
+ * Prints one line per benchmark and parameter combination and exits with status 1 when any
+ * of them got worse by more than the threshold (10% by default) and by more than the two
+ * runs' combined error, so it can gate a build.
+ */
+public final class ResultDiff {
+
+    static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private ResultDiff() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: ResultDiff <base.json> <head.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        ObjectMapper mapper = new ObjectMapper();
+        List<Change> changes = compare(read(mapper, Path.of(args[0])), read(mapper, Path.of(args[1])), threshold);
+        print(changes, System.out);
+        if (changes.stream().anyMatch(Change::regressed)) {
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Score> read(ObjectMapper mapper, Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : mapper.readTree(file.toFile())) {
+            JsonNode metric = run.path("primaryMetric");
+            String mode = run.path("mode").asText();
+            scores.put(key(run), new Score(metric.path("score").asDouble(),
+                    metric.path("scoreError").asDouble(0), metric.path("scoreUnit").asText(),
+                    !mode.equals("thrpt")));
+        }
+        return scores;
+    }
+
+    static List<Change> compare(Map<String, Score> base, Map<String, Score> head, double thresholdPercent) {
+        List<Change> changes = new ArrayList<>();
+        head.forEach((key, after) -> {
+            Score before = base.get(key);
+            if (before != null) {
+                changes.add(new Change(key, before, after, thresholdPercent));
+            }
+        });
+        return changes;
+    }
+
+    static void print(List<Change> changes, PrintStream out) {
+        for (Change change : changes) {
+            out.printf("%-90s %12.3f -> %12.3f %-8s %+7.1f%%%s%n", change.key(),
+                    change.before().value(), change.after().value(), change.after().unit(),
+                    change.percent(), change.regressed() ? "  REGRESSION" : "");
+        }
+    }
+
+    // Benchmark name plus its parameters in a stable order, e.g. "...reserve(products=1000)"
+    private static String key(JsonNode run) {
+        StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+        Map<String, String> params = new TreeMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = run.path("params").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> param = it.next();
+            params.put(param.getKey(), param.getValue().asText());
+        }
+        if (!params.isEmpty()) {
+            key.append('(');
+            params.forEach((name, value) -> key.append(name).append('=').append(value).append(','));
+            key.setCharAt(key.length() - 1, ')');
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param lowerIsBetter true for time-per-operation modes, false for throughput
+     */
+    record Score(double value, double error, String unit, boolean lowerIsBetter) {
+    }
+
+    record Change(String key, Score before, Score after, double thresholdPercent) {
+
+        /**
+         * Signed change in percent, positive when the result got worse.
+         */
+        double percent() {
+            double delta = (after.value() - before.value()) / before.value() * 100;
+            return after.lowerIsBetter() ? delta : -delta;
+        }
+
+        boolean regressed() {
+            double worse = after.lowerIsBetter() ? after.value() - before.value() : before.value() - after.value();
+            return percent() > thresholdPercent && worse > before.error() + after.error();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.common.web.TraceIdFilter;
+import com.easyshop.common.web.metrics.MdcSpanContext;
+import com.easyshop.common.web.metrics.RequestRoutes;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics recorded for one checkout-like request: its own timer, one outbound call and three
+ * repository calls, each a route-tagged histogram timer in a Prometheus registry with trace id
+ * exemplars. At 10k requests per second on four cores, 1% of the CPU is 4 µs per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMetricsBenchmark {
+
+    private PrometheusMeterRegistry registry;
+    private int request;
+
+    @Setup
+    public void setUp() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT, new PrometheusRegistry(), Clock.SYSTEM,
+                new MdcSpanContext());
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+        servletRequest.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/purchases");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(servletRequest));
+        MDC.put(TraceIdFilter.TRACE_ID_KEY, "4bf92f35-77b3-4da6-a3ce-929d0e0e4736");
+        MDC.put(TraceIdFilter.SPAN_ID_KEY, "00f067aa0ba902b7");
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        MDC.clear();
+        registry.close();
+    }
+
+    @Benchmark
+    public void checkoutRequest() {
+        long nanos = 100_000 + (request++ % 1000) * 1_000L;
+        timer("http.server.requests", "uri", RequestRoutes.current()).record(nanos, TimeUnit.NANOSECONDS);
+        timer("http.client.requests", RequestRoutes.TAG, RequestRoutes.current())
+                .record(nanos / 2, TimeUnit.NANOSECONDS);
+        for (int call = 0; call < 3; call++) {
+            timer("spring.data.repository.invocations", RequestRoutes.TAG, RequestRoutes.current())
+                    .record(nanos / 10, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String name, String tag, String value) {
+        return Timer.builder(name).tag(tag, value).publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1)).maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.common.web.TraceIdFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link TraceIdFilter}, which runs first on every servlet request, for a
+ * request that carries a trace id from the gateway and one that does not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceIdFilterBenchmark {
+
+    private final TraceIdFilter filter = new TraceIdFilter();
+    private final FilterChain chain = (request, response) -> { };
+    private MockHttpServletRequest traced;
+    private MockHttpServletRequest untraced;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        traced = new MockHttpServletRequest("GET", "/api/products/1");
+        traced.addHeader(TraceIdFilter.TRACE_ID_HEADER, "4bf92f35-77b3-4da6-a3ce-929d0e0e4736");
+        untraced = new MockHttpServletRequest("GET", "/api/products/1");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse forwardedTraceId() throws ServletException, IOException {
+        response.reset();
+        filter.doFilter(traced, response, chain);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse generatedTraceId() throws ServletException, IOException {
+        response.reset();
+        filter.doFilter(untraced, response, chain);
+        return response;
+    }
+}
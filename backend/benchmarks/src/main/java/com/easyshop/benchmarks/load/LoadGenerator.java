@@ -0,0 +1,104 @@
+package com.easyshop.benchmarks.load;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+
+/**
+ * Open-model load: requests are due at a fixed rate whether or not earlier ones have been
+ * answered, the way independent shoppers arrive, each on its own virtual thread. On top of the
+ * steady mix, a burst of logins is due every {@code login-burst-interval}. When more than
+ * {@code max-in-flight} requests are outstanding, due ones are recorded as not sent rather
+ * than queued, so an overloaded system shows up as errors instead of a slower arrival rate.
+ */
+final class LoadGenerator {
+
+    private final LoadTestOptions options;
+    private final ToIntFunction<Scenario> sender;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+
+    LoadGenerator(LoadTestOptions options, ToIntFunction<Scenario> sender) {
+        this.options = options;
+        this.sender = sender;
+        this.scenarios = options.mix().keySet().toArray(Scenario[]::new);
+        this.cumulativeWeights = new int[scenarios.length];
+        int total = 0;
+        for (int i = 0; i < scenarios.length; i++) {
+            total += options.mix().get(scenarios[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Generates load for the given time and waits for the outstanding requests.
+     */
+    Map<Scenario, RouteStats> run(Duration length) {
+        Map<Scenario, RouteStats> stats = new EnumMap<>(Scenario.class);
+        for (Scenario scenario : Scenario.values()) {
+            stats.put(scenario, new RouteStats());
+        }
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        double intervalNanos = 1e9 / options.rate();
+        long burstIntervalNanos = options.loginBurstInterval().toNanos();
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            long end = start + length.toNanos();
+            long nextBurst = options.loginBurstSize() > 0 && burstIntervalNanos > 0 ? start + burstIntervalNanos : Long.MAX_VALUE;
+            for (long i = 0; ; i++) {
+                long due = start + (long) (i * intervalNanos);
+                if (due >= end) {
+                    break;
+                }
+                while (nextBurst <= due) {
+                    for (int b = 0; b < options.loginBurstSize(); b++) {
+                        submit(requests, inFlight, stats, Scenario.LOGIN, nextBurst);
+                    }
+                    nextBurst += burstIntervalNanos;
+                }
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                submit(requests, inFlight, stats, pick(), due);
+            }
+        }
+        return stats;
+    }
+
+    Scenario pick() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return scenarios[i];
+            }
+        }
+        throw new IllegalStateException("Weight " + roll + " out of range");
+    }
+
+    private void submit(ExecutorService requests, Semaphore inFlight, Map<Scenario, RouteStats> stats,
+                        Scenario scenario, long dueNanos) {
+        RouteStats route = stats.get(scenario);
+        if (!inFlight.tryAcquire()) {
+            route.record(RouteStats.NOT_SENT, 0);
+            return;
+        }
+        requests.execute(() -> {
+            int status;
+            try {
+                status = sender.applyAsInt(scenario);
+            } catch (RuntimeException e) {
+                status = RouteStats.NO_RESPONSE;
+            } finally {
+                inFlight.release();
+            }
+            route.record(status, System.nanoTime() - dueNanos);
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.easyshop.benchmarks.load;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-route results of the measured phase of a run: throughput, latency percentiles and
+ * error rate. Written to {@code report.json} next to the run's manifest and printed as a table.
+ */
+public record LoadReport(double seconds, List<Route> routes) {
+
+    public static LoadReport of(Map<Scenario, RouteStats> stats, Duration measured) {
+        double seconds = measured.toNanos() / 1e9;
+        return new LoadReport(seconds, stats.entrySet().stream()
+                .map(entry -> Route.of(entry.getKey(), entry.getValue(), seconds))
+                .toList());
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-30s %9s %9s %9s %8s %9s %9s %9s %9s%n", "route", "requests", "req/s", "ok/s",
+                "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Route route : routes) {
+            out.printf("%-30s %9d %9.1f %9.1f %7.2f%% %9.2f %9.2f %9.2f %9.2f%n", route.route(), route.requests(),
+                    route.throughput(), route.successThroughput(), route.errorRate() * 100,
+                    route.p50(), route.p99(), route.p999(), route.max());
+        }
+    }
+
+    /**
+     * @param throughput        requests per second, answered or not
+     * @param successThroughput requests per second answered with 2xx or 304
+     * @param statuses          request count per HTTP status; 0 is no response, -1 not sent
+     */
+    public record Route(String scenario, String route, long requests, double throughput, double successThroughput,
+                        long errors, double errorRate, double p50, double p90, double p99, double p999, double max,
+                        Map<String, Long> statuses) {
+
+        static Route of(Scenario scenario, RouteStats stats, double seconds) {
+            long requests = stats.requests();
+            long errors = stats.errors();
+            Map<String, Long> statuses = new LinkedHashMap<>();
+            stats.statuses().forEach((status, count) -> statuses.put(String.valueOf(status), count));
+            return new Route(scenario.key(), scenario.route(), requests, requests / seconds,
+                    (requests - errors) / seconds, errors, requests == 0 ? 0 : (double) errors / requests,
+                    stats.latencyMillis(50), stats.latencyMillis(90), stats.latencyMillis(99),
+                    stats.latencyMillis(99.9), stats.maxLatencyMillis(), statuses);
+        }
+    }
+}
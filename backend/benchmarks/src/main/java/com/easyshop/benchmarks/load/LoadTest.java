@@ -0,0 +1,120 @@
+package com.easyshop.benchmarks.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * End-to-end load test against a running EasyShop topology (see benchmarks/README.md):
+ * <pre>
+ * java -cp benchmarks.jar com.easyshop.benchmarks.load.LoadTest --rate=300 --duration=2m
+ * </pre>
+ * Seeds products and users, runs an unmeasured warmup, then the measured phase, and writes
+ * {@code run.json} (everything that shaped the run: options, commit, JVM, and each service's
+ * configuration as served by the config server) and {@code report.json} to {@code --output}.
+ */
+public final class LoadTest {
+
+    private static final List<String> SERVICES = List.of("api-gateway", "auth-service", "product-service", "purchase-service");
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Files.createDirectories(options.output());
+        Instant started = Instant.now();
+        String runId = Long.toString(started.toEpochMilli(), 36);
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("runId", runId);
+        manifest.put("startedAt", started.toString());
+        manifest.put("commit", git("rev-parse", "HEAD"));
+        manifest.put("uncommittedChanges", !git("status", "--porcelain").isEmpty());
+        manifest.put("java", System.getProperty("java.vm.name") + " " + Runtime.version());
+        manifest.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        manifest.put("options", options.describe());
+        manifest.put("services", serviceConfigs(options, json));
+
+        try (Workload workload = new Workload(options, json)) {
+            System.out.printf("Seeding %d products and %d users...%n", options.products(), options.users());
+            workload.seed(runId);
+            manifest.put("seeded", Map.of("products", workload.products(), "users", workload.users()));
+            json.writeValue(options.output().resolve("run.json").toFile(), manifest);
+
+            LoadGenerator generator = new LoadGenerator(options, workload::send);
+            if (!options.warmup().isZero()) {
+                System.out.printf("Warming up for %ds...%n", options.warmup().toSeconds());
+                generator.run(options.warmup());
+            }
+            System.out.printf("Measuring %.0f req/s for %ds...%n", options.rate(), options.duration().toSeconds());
+            LoadReport report = LoadReport.of(generator.run(options.duration()), options.duration());
+            json.writeValue(options.output().resolve("report.json").toFile(), report);
+            report.print(System.out);
+            System.out.println("Results in " + options.output().toAbsolutePath());
+        }
+    }
+
+    /**
+     * Each service's property sources for the run's profiles, or why they could not be fetched.
+     */
+    private static Map<String, Object> serviceConfigs(LoadTestOptions options, ObjectMapper json) {
+        Map<String, Object> configs = new LinkedHashMap<>();
+        String basic = Base64.getEncoder().encodeToString(
+                (options.configServerUser() + ":" + options.configServerPassword()).getBytes(StandardCharsets.UTF_8));
+        try (HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()) {
+            for (String service : SERVICES) {
+                try {
+                    HttpResponse<String> response = http.send(HttpRequest.newBuilder(
+                                    URI.create(options.configServerUrl() + "/" + service + "/" + options.profiles()))
+                            .timeout(Duration.ofSeconds(10))
+                            .header("Authorization", "Basic " + basic)
+                            .build(), HttpResponse.BodyHandlers.ofString());
+                    configs.put(service, response.statusCode() == 200
+                            ? json.readTree(response.body())
+                            : Map.of("error", "config server answered " + response.statusCode()));
+                } catch (IOException e) {
+                    configs.put(service, Map.of("error", String.valueOf(e.getMessage())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    configs.put(service, Map.of("error", "interrupted"));
+                }
+            }
+        }
+        return configs;
+    }
+
+    private static String git(String... args) {
+        try {
+            Process process = new ProcessBuilder(concat("git", args)).redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return process.waitFor() == 0 ? output : "";
+        } catch (IOException e) {
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        }
+    }
+
+    private static String[] concat(String first, String... rest) {
+        String[] all = new String[rest.length + 1];
+        all[0] = first;
+        System.arraycopy(rest, 0, all, 1, rest.length);
+        return all;
+    }
+}
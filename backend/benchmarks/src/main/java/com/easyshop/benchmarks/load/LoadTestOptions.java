@@ -0,0 +1,178 @@
+package com.easyshop.benchmarks.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Settings of one load test run, from {@code --name=value} arguments. Every setting is recorded
+ * in the run's manifest, so two reports can be compared knowing exactly what produced them.
+ */
+public record LoadTestOptions(
+        String gatewayUrl,
+        String productServiceUrl,
+        String issuerUrl,
+        String clientId,
+        String clientSecret,
+        String configServerUrl,
+        String configServerUser,
+        String configServerPassword,
+        String profiles,
+        double rate,
+        Duration warmup,
+        Duration duration,
+        Map<Scenario, Integer> mix,
+        int cartMin,
+        int cartMax,
+        int loginBurstSize,
+        Duration loginBurstInterval,
+        int users,
+        int products,
+        int stock,
+        int maxInFlight,
+        Duration requestTimeout,
+        Path output) {
+
+    private static final Map<String, String> DEFAULTS = defaults();
+
+    public static LoadTestOptions parse(String... args) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            if (!values.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + "; known: " + DEFAULTS.keySet());
+            }
+            values.put(name, arg.substring(eq + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                values.get("gateway"),
+                values.get("product-service"),
+                values.get("issuer"),
+                values.get("client-id"),
+                values.get("client-secret"),
+                values.get("config-server"),
+                values.get("config-server-user"),
+                values.get("config-server-password"),
+                values.get("profiles"),
+                Double.parseDouble(values.get("rate")),
+                DurationStyle.detectAndParse(values.get("warmup")),
+                DurationStyle.detectAndParse(values.get("duration")),
+                parseMix(values.get("mix")),
+                Integer.parseInt(values.get("cart-min")),
+                Integer.parseInt(values.get("cart-max")),
+                Integer.parseInt(values.get("login-burst-size")),
+                DurationStyle.detectAndParse(values.get("login-burst-interval")),
+                Integer.parseInt(values.get("users")),
+                Integer.parseInt(values.get("products")),
+                Integer.parseInt(values.get("stock")),
+                Integer.parseInt(values.get("max-in-flight")),
+                DurationStyle.detectAndParse(values.get("request-timeout")),
+                Path.of(values.get("output").isEmpty()
+                        ? "load-results/" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                        : values.get("output")));
+        options.validate();
+        return options;
+    }
+
+    /**
+     * The settings as they go into the manifest; the client secret is left out.
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> described = new LinkedHashMap<>();
+        described.put("gateway", gatewayUrl);
+        described.put("product-service", productServiceUrl);
+        described.put("issuer", issuerUrl);
+        described.put("client-id", clientId);
+        described.put("config-server", configServerUrl);
+        described.put("profiles", profiles);
+        described.put("rate", rate);
+        described.put("warmup", warmup.toString());
+        described.put("duration", duration.toString());
+        described.put("mix", mix.entrySet().stream()
+                .map(weight -> weight.getKey() + ":" + weight.getValue())
+                .collect(Collectors.joining(",")));
+        described.put("cart-min", cartMin);
+        described.put("cart-max", cartMax);
+        described.put("login-burst-size", loginBurstSize);
+        described.put("login-burst-interval", loginBurstInterval.toString());
+        described.put("users", users);
+        described.put("products", products);
+        described.put("stock", stock);
+        described.put("max-in-flight", maxInFlight);
+        described.put("request-timeout", requestTimeout.toString());
+        described.put("output", output.toString());
+        return described;
+    }
+
+    static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected scenario:weight in --mix, got " + part);
+            }
+            weights.put(Scenario.named(pair[0].trim()), Integer.parseInt(pair[1].trim()));
+        }
+        return Collections.unmodifiableMap(weights);
+    }
+
+    private void validate() {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        if (cartMin < 1 || cartMax < cartMin) {
+            throw new IllegalArgumentException("Expected 1 <= --cart-min <= --cart-max");
+        }
+        if (cartMax > products) {
+            throw new IllegalArgumentException("--products must be at least --cart-max");
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("--mix needs a positive weight");
+        }
+        if ((mix.getOrDefault(Scenario.LOGIN, 0) > 0 || loginBurstSize > 0) && users < 1) {
+            throw new IllegalArgumentException("Logins need --users of at least 1");
+        }
+        if (clientSecret.isBlank()) {
+            throw new IllegalArgumentException("--client-secret is required: the LOADTEST_CLIENT_SECRET auth-service runs with");
+        }
+    }
+
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("gateway", "http://localhost:8080");
+        defaults.put("product-service", "http://localhost:9002");
+        defaults.put("issuer", "http://localhost:9001");
+        defaults.put("client-id", "load-test");
+        defaults.put("client-secret", "");
+        defaults.put("config-server", "http://localhost:8888");
+        defaults.put("config-server-user", "config");
+        defaults.put("config-server-password", "config");
+        defaults.put("profiles", "local,loadtest");
+        defaults.put("rate", "200");
+        defaults.put("warmup", "15s");
+        defaults.put("duration", "60s");
+        defaults.put("mix", "page:40,product:40,login:10,checkout:10");
+        defaults.put("cart-min", "1");
+        defaults.put("cart-max", "50");
+        defaults.put("login-burst-size", "50");
+        defaults.put("login-burst-interval", "10s");
+        defaults.put("users", "100");
+        defaults.put("products", "200");
+        defaults.put("stock", "1000000");
+        defaults.put("max-in-flight", "2000");
+        defaults.put("request-timeout", "10s");
+        defaults.put("output", "");
+        return defaults;
+    }
+}
@@ -0,0 +1,71 @@
+package com.easyshop.benchmarks.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes of the requests sent to one route: a latency histogram (1 µs to 1 min, three
+ * significant digits) and counts per status. Latency is measured from the moment the request
+ * was due to be sent, not from when it actually was, so a stalled system is charged for the
+ * requests it kept waiting.
+ */
+public final class RouteStats {
+
+    /** Status recorded when no response arrived: connection failure, timeout. */
+    public static final int NO_RESPONSE = 0;
+    /** Status recorded when the generator had too many requests in flight to send one. */
+    public static final int NOT_SENT = -1;
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    public void record(int status, long latencyNanos) {
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (status > 0) {
+            latency.recordValue(Math.min(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)), MAX_LATENCY_MICROS));
+        }
+    }
+
+    public long requests() {
+        return statuses.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Requests that did not get a 2xx or 304 answer, including those never sent.
+     */
+    public long errors() {
+        return statuses.entrySet().stream()
+                .filter(entry -> !isSuccess(entry.getKey()))
+                .mapToLong(entry -> entry.getValue().sum())
+                .sum();
+    }
+
+    public Map<Integer, Long> statuses() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Latency at the given percentile (0-100) of the answered requests, in milliseconds.
+     */
+    public double latencyMillis(double percentile) {
+        return latency.getTotalCount() == 0 ? 0 : latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public double maxLatencyMillis() {
+        return latency.getTotalCount() == 0 ? 0 : latency.getMaxValue() / 1000.0;
+    }
+
+    static boolean isSuccess(int status) {
+        return status >= 200 && status < 300 || status == 304;
+    }
+}
@@ -0,0 +1,47 @@
+package com.easyshop.benchmarks.load;
+
+import java.util.Arrays;
+
+/**
+ * The kinds of request the load generator sends through the gateway, each reported as its own route.
+ */
+public enum Scenario {
+
+    /** A page of the catalog, as the storefront's product list loads it. */
+    PAGE("page", "GET /api/products"),
+    /** A single product, as its detail page loads it. */
+    PRODUCT("product", "GET /api/products/{id}"),
+    /** A credential check by a registered user. */
+    LOGIN("login", "POST /api/auth/login"),
+    /** A checkout of a cart with between {@code cart-min} and {@code cart-max} lines. */
+    CHECKOUT("checkout", "POST /api/purchases/checkout");
+
+    private final String key;
+    private final String route;
+
+    Scenario(String key, String route) {
+        this.key = key;
+        this.route = route;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String route() {
+        return route;
+    }
+
+    static Scenario named(String key) {
+        return Arrays.stream(values())
+                .filter(scenario -> scenario.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown scenario " + key
+                        + "; known: " + Arrays.stream(values()).map(Scenario::key).toList()));
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,220 @@
+package com.easyshop.benchmarks.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends the requests of each {@link Scenario} through the gateway, and seeds the products and
+ * users they need. Checkouts are made as the {@code load-test} client, whose client-credentials
+ * token the gateway and purchase-service accept like a user's.
+ */
+final class Workload implements AutoCloseable {
+
+    static final String PASSWORD = "LoadTest1!";
+
+    private static final int SEED_CONCURRENCY = 16;
+
+    private final LoadTestOptions options;
+    private final ObjectMapper json;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient http;
+    private final List<Long> productIds = new ArrayList<>();
+    private final List<String> emails = new ArrayList<>();
+
+    private final ReentrantLock tokenLock = new ReentrantLock();
+    private volatile String token;
+    private volatile long tokenRenewAtNanos;
+
+    Workload(LoadTestOptions options, ObjectMapper json) {
+        this.options = options;
+        this.json = json;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Creates the products checkouts draw from, with enough stock not to run out, and registers
+     * the users that log in. Emails carry {@code runId} so reruns against the same database work.
+     */
+    void seed(String runId) throws Exception {
+        productIds.addAll(parallel(options.products(), i -> {
+            ObjectNode product = json.createObjectNode()
+                    .put("name", "Load test product " + runId + "-" + i)
+                    .put("description", "Created by the load generator")
+                    .put("price", BigDecimal.valueOf(100 + i % 900, 2))
+                    .put("stock", options.stock());
+            HttpResponse<String> response = send(post(options.productServiceUrl() + "/api/admin/products", product)
+                    .header("Authorization", "Bearer " + token())
+                    .build());
+            expect(response, 201, "create product");
+            return json.readTree(response.body()).path("id").asLong();
+        }));
+        emails.addAll(parallel(options.users(), i -> {
+            String email = "load-" + runId + "-" + i + "@example.com";
+            HttpResponse<String> response = send(post(options.gatewayUrl() + "/api/auth/register", credentials(email)).build());
+            expect(response, 200, "register " + email);
+            return email;
+        }));
+    }
+
+    int products() {
+        return productIds.size();
+    }
+
+    int users() {
+        return emails.size();
+    }
+
+    /**
+     * Sends one request of the scenario and answers its status, {@link RouteStats#NO_RESPONSE}
+     * if none arrived.
+     */
+    int send(Scenario scenario) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            HttpRequest request = switch (scenario) {
+                case PAGE -> get("/api/products?limit=20");
+                case PRODUCT -> get("/api/products/" + productIds.get(random.nextInt(productIds.size())));
+                case LOGIN -> post(options.gatewayUrl() + "/api/auth/login",
+                        credentials(emails.get(random.nextInt(emails.size())))).build();
+                case CHECKOUT -> post(options.gatewayUrl() + "/api/purchases/checkout", cart(random))
+                        .header("Authorization", "Bearer " + token())
+                        .build();
+            };
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return RouteStats.NO_RESPONSE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RouteStats.NO_RESPONSE;
+        }
+    }
+
+    @Override
+    public void close() {
+        http.close();
+        executor.close();
+    }
+
+    private ObjectNode cart(ThreadLocalRandom random) {
+        int lines = random.nextInt(options.cartMin(), options.cartMax() + 1);
+        List<Long> picked = new ArrayList<>(productIds);
+        Collections.shuffle(picked, random);
+        ObjectNode cart = json.createObjectNode();
+        ArrayNode items = cart.putArray("items");
+        for (Long id : picked.subList(0, lines)) {
+            items.addObject().put("productId", id).put("quantity", 1);
+        }
+        return cart;
+    }
+
+    private ObjectNode credentials(String email) {
+        return json.createObjectNode().put("email", email).put("password", PASSWORD);
+    }
+
+    /**
+     * The client-credentials token, fetched again a minute before it expires.
+     */
+    private String token() throws IOException, InterruptedException {
+        if (token == null || System.nanoTime() > tokenRenewAtNanos) {
+            // A lock rather than synchronized: a virtual thread blocked on a monitor pins its carrier
+            tokenLock.lock();
+            try {
+                if (token == null || System.nanoTime() > tokenRenewAtNanos) {
+                    String basic = Base64.getEncoder().encodeToString(
+                            (options.clientId() + ":" + options.clientSecret()).getBytes(StandardCharsets.UTF_8));
+                    HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(options.issuerUrl() + "/oauth2/token"))
+                            .timeout(options.requestTimeout())
+                            .header("Authorization", "Basic " + basic)
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials&scope="
+                                    + URLEncoder.encode("read write ADMIN", StandardCharsets.UTF_8)))
+                            .build());
+                    expect(response, 200, "fetch a token for " + options.clientId());
+                    JsonNode body = json.readTree(response.body());
+                    tokenRenewAtNanos = System.nanoTime()
+                            + Duration.ofSeconds(Math.max(0, body.path("expires_in").asLong() - 60)).toNanos();
+                    token = body.path("access_token").asText();
+                }
+            } finally {
+                tokenLock.unlock();
+            }
+        }
+        return token;
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(options.gatewayUrl() + path))
+                .timeout(options.requestTimeout())
+                .GET()
+                .build();
+    }
+
+    private HttpRequest.Builder post(String url, JsonNode body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(options.requestTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void expect(HttpResponse<String> response, int status, String action) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException("Could not " + action + ": " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private <T> List<T> parallel(int count, SeedStep<T> step) throws Exception {
+        Semaphore permits = new Semaphore(SEED_CONCURRENCY);
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                permits.acquire();
+                try {
+                    return step.run(index);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+        List<T> results = new ArrayList<>(count);
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface SeedStep<T> {
+        T run(int index) throws Exception;
+    }
+}
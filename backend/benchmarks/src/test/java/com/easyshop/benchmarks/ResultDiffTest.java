@@ -0,0 +1,88 @@
+package com.easyshop.benchmarks;
+
+import com.easyshop.benchmarks.ResultDiff.Change;
+import com.easyshop.benchmarks.ResultDiff.Score;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultDiffTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keysResultsByBenchmarkAndParameters() throws IOException {
+        Map<String, Score> scores = ResultDiff.read(new ObjectMapper(), write("base.json", """
+                [
+                  {"benchmark": "com.easyshop.benchmarks.AuthServiceBenchmark.loginKnownUser", "mode": "avgt",
+                   "params": {"users": "10000", "bcryptCost": "4"},
+                   "primaryMetric": {"score": 812.5, "scoreError": 12.0, "scoreUnit": "us/op"}},
+                  {"benchmark": "com.easyshop.benchmarks.TraceIdFilterBenchmark.generatedTraceId", "mode": "thrpt",
+                   "primaryMetric": {"score": 2.5, "scoreError": 0.1, "scoreUnit": "ops/us"}}
+                ]
+                """));
+
+        assertThat(scores).containsOnlyKeys(
+                "com.easyshop.benchmarks.AuthServiceBenchmark.loginKnownUser(bcryptCost=4,users=10000)",
+                "com.easyshop.benchmarks.TraceIdFilterBenchmark.generatedTraceId");
+        assertThat(scores.get("com.easyshop.benchmarks.TraceIdFilterBenchmark.generatedTraceId").lowerIsBetter()).isFalse();
+    }
+
+    @Test
+    void slowerAverageTimeBeyondThresholdAndErrorIsARegression() {
+        assertThat(change(avgt(100, 2), avgt(115, 2)).regressed()).isTrue();
+        assertThat(change(avgt(100, 2), avgt(105, 2)).regressed()).isFalse();
+        assertThat(change(avgt(100, 2), avgt(80, 2)).regressed()).isFalse();
+        // Within the noise of either run
+        assertThat(change(avgt(100, 20), avgt(115, 20)).regressed()).isFalse();
+    }
+
+    @Test
+    void lowerThroughputIsARegression() {
+        Change change = change(thrpt(10, 0.1), thrpt(8, 0.1));
+
+        assertThat(change.percent()).isEqualTo(20.0);
+        assertThat(change.regressed()).isTrue();
+        assertThat(change(thrpt(10, 0.1), thrpt(12, 0.1)).regressed()).isFalse();
+    }
+
+    @Test
+    void comparesOnlyBenchmarksPresentInBothRuns() {
+        List<Change> changes = ResultDiff.compare(
+                Map.of("a", avgt(100, 1), "removed", avgt(1, 0)),
+                Map.of("a", avgt(150, 1), "added", avgt(1, 0)), 10);
+
+        assertThat(changes).extracting(Change::key).containsExactly("a");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultDiff.print(changes, new PrintStream(out, true, StandardCharsets.UTF_8));
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("+50.0%", "REGRESSION");
+    }
+
+    private Path write(String name, String json) throws IOException {
+        return Files.writeString(dir.resolve(name), json);
+    }
+
+    private static Change change(Score before, Score after) {
+        return new Change("benchmark", before, after, ResultDiff.DEFAULT_THRESHOLD_PERCENT);
+    }
+
+    private static Score avgt(double value, double error) {
+        return new Score(value, error, "us/op", true);
+    }
+
+    private static Score thrpt(double value, double error) {
+        return new Score(value, error, "ops/us", false);
+    }
+}
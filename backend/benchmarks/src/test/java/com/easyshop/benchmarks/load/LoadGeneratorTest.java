@@ -0,0 +1,93 @@
+package com.easyshop.benchmarks.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LoadGeneratorTest {
+
+    @Test
+    void sendsTheMixAtTheConfiguredRate() {
+        LoadTestOptions options = LoadTestOptions.parse("--client-secret=s3cret", "--rate=2000", "--mix=product:3,checkout:1",
+                "--login-burst-size=0");
+
+        Map<Scenario, RouteStats> stats = new LoadGenerator(options, scenario -> 200).run(Duration.ofSeconds(1));
+
+        long products = stats.get(Scenario.PRODUCT).requests();
+        long checkouts = stats.get(Scenario.CHECKOUT).requests();
+        assertThat(products + checkouts).isEqualTo(2000);
+        assertThat((double) products / (products + checkouts)).isCloseTo(0.75, within(0.05));
+        assertThat(stats.get(Scenario.LOGIN).requests()).isZero();
+    }
+
+    @Test
+    void addsLoginBursts() {
+        LoadTestOptions options = LoadTestOptions.parse("--client-secret=s3cret", "--rate=100", "--mix=page:1",
+                "--login-burst-size=25", "--login-burst-interval=200ms");
+
+        Map<Scenario, RouteStats> stats = new LoadGenerator(options, scenario -> 200).run(Duration.ofSeconds(1));
+
+        assertThat(stats.get(Scenario.LOGIN).requests()).isEqualTo(4 * 25);
+    }
+
+    @Test
+    void countsRequestsBeyondMaxInFlightAsNotSent() {
+        LoadTestOptions options = LoadTestOptions.parse("--client-secret=s3cret", "--rate=1000", "--mix=checkout:1", "--max-in-flight=10",
+                "--login-burst-size=0");
+        CountDownLatch release = new CountDownLatch(1);
+        // Hold every request until the generator has stopped sending
+        Thread.startVirtualThread(() -> {
+            LockSupport.parkNanos(Duration.ofMillis(400).toNanos());
+            release.countDown();
+        });
+
+        Map<Scenario, RouteStats> stats = new LoadGenerator(options, scenario -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 200;
+        }).run(Duration.ofMillis(200));
+
+        RouteStats checkout = stats.get(Scenario.CHECKOUT);
+        assertThat(checkout.requests()).isEqualTo(200);
+        assertThat(checkout.statuses()).containsEntry(200, 10L).containsEntry(RouteStats.NOT_SENT, 190L);
+        assertThat(checkout.errors()).isEqualTo(checkout.statuses().get(RouteStats.NOT_SENT));
+    }
+
+    @Test
+    void reportsPercentilesThroughputAndErrorRatePerRoute() {
+        RouteStats checkout = new RouteStats();
+        for (int i = 1; i <= 1000; i++) {
+            checkout.record(200, Duration.ofMillis(i).toNanos());
+        }
+        checkout.record(409, Duration.ofMillis(5).toNanos());
+        checkout.record(RouteStats.NO_RESPONSE, Duration.ofSeconds(10).toNanos());
+
+        LoadReport report = LoadReport.of(Map.of(Scenario.CHECKOUT, checkout), Duration.ofSeconds(10));
+        LoadReport.Route route = report.routes().get(0);
+
+        assertThat(route.route()).isEqualTo("POST /api/purchases/checkout");
+        assertThat(route.requests()).isEqualTo(1002);
+        assertThat(route.throughput()).isCloseTo(100.2, within(0.01));
+        assertThat(route.successThroughput()).isCloseTo(100.0, within(0.01));
+        assertThat(route.errorRate()).isCloseTo(2 / 1002.0, within(1e-9));
+        assertThat(route.p50()).isCloseTo(500, within(1.0));
+        assertThat(route.p99()).isCloseTo(990, within(1.0));
+        assertThat(route.p999()).isCloseTo(999, within(1.0));
+        assertThat(route.statuses()).containsEntry("200", 1000L).containsEntry("409", 1L).containsEntry("0", 1L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out, true, StandardCharsets.UTF_8));
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("POST /api/purchases/checkout", "0.20%");
+    }
+}
@@ -0,0 +1,46 @@
+package com.easyshop.benchmarks.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadTestOptionsTest {
+
+    @Test
+    void overridesDefaults() {
+        LoadTestOptions options = LoadTestOptions.parse("--rate=350.5", "--duration=2m", "--mix=product:3,checkout:1",
+                "--cart-max=10", "--output=/tmp/run", "--client-secret=s3cret");
+
+        assertThat(options.rate()).isEqualTo(350.5);
+        assertThat(options.duration()).isEqualTo(Duration.ofMinutes(2));
+        assertThat(options.warmup()).isEqualTo(Duration.ofSeconds(15));
+        assertThat(options.mix()).containsExactly(Map.entry(Scenario.PRODUCT, 3), Map.entry(Scenario.CHECKOUT, 1));
+        assertThat(options.cartMin()).isEqualTo(1);
+        assertThat(options.cartMax()).isEqualTo(10);
+        assertThat(options.output()).hasToString("/tmp/run");
+    }
+
+    @Test
+    void describesEverySettingButTheSecret() {
+        Map<String, Object> described = LoadTestOptions.parse("--client-secret=s3cret").describe();
+
+        assertThat(described).containsEntry("mix", "page:40,product:40,login:10,checkout:10")
+                .containsEntry("cart-max", 50)
+                .doesNotContainKey("client-secret");
+        assertThat(described.values()).doesNotContain("s3cret");
+    }
+
+    @Test
+    void rejectsUnknownOrInconsistentOptions() {
+        assertThatThrownBy(() -> LoadTestOptions.parse("--rps=10")).hasMessageContaining("Unknown option --rps");
+        assertThatThrownBy(() -> LoadTestOptions.parse("--mix=browse:1")).hasMessageContaining("Unknown scenario browse");
+        assertThatThrownBy(() -> LoadTestOptions.parse("--cart-max=60", "--products=50"))
+                .hasMessageContaining("--products must be at least --cart-max");
+        assertThatThrownBy(() -> LoadTestOptions.parse("--rate=0")).hasMessageContaining("--rate");
+        assertThatThrownBy(() -> LoadTestOptions.parse("--rate=10")).hasMessageContaining("--client-secret is required");
+    }
+}
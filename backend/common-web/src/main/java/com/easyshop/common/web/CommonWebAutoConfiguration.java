@@ -0,0 +1,71 @@
+package com.easyshop.common.web;
+
+import com.easyshop.common.web.metrics.MdcSpanContext;
+import com.easyshop.common.web.metrics.RouteObservationFilter;
+import com.easyshop.common.web.metrics.RouteRepositoryTagsProvider;
+import io.prometheus.metrics.tracer.common.SpanContext;
+import org.springframework.boot.actuate.autoconfigure.metrics.data.RepositoryMetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.prometheus.PrometheusMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.metrics.data.RepositoryTagsProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Set;
+
+/**
+ * Registers the shared web infrastructure in every service that depends on common-web.
+ * Services live in their own packages, so component scanning does not reach these classes.
+ */
+@AutoConfiguration(before = {RepositoryMetricsAutoConfiguration.class, PrometheusMetricsExportAutoConfiguration.class})
+public class CommonWebAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(TaskDecorator.class)
+    public MdcTaskDecorator mdcTaskDecorator() {
+        return new MdcTaskDecorator();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public TraceIdFilter traceIdFilter() {
+            return new TraceIdFilter();
+        }
+
+        /**
+         * Trace and span ids from the MDC become exemplars on Prometheus histograms.
+         */
+        @Bean
+        @ConditionalOnMissingBean(SpanContext.class)
+        public MdcSpanContext mdcSpanContext() {
+            return new MdcSpanContext();
+        }
+
+        /**
+         * Outbound HTTP calls (Feign clients) are tagged with the route that made them.
+         */
+        @Bean
+        public RouteObservationFilter routeObservationFilter() {
+            return new RouteObservationFilter(Set.of("http.client.requests"));
+        }
+
+        @Configuration(proxyBeanMethods = false)
+        @ConditionalOnClass(name = "org.springframework.data.repository.Repository")
+        static class RepositoryMetricsConfiguration {
+
+            @Bean
+            @ConditionalOnMissingBean(RepositoryTagsProvider.class)
+            public RouteRepositoryTagsProvider routeRepositoryTagsProvider() {
+                return new RouteRepositoryTagsProvider();
+            }
+        }
+    }
+}
@@ -8,18 +8,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Puts the caller's {@code X-Trace-Id} (or a new one) into the MDC as {@code traceId}, next to a
+ * {@code spanId} identifying this service's part of the request. Both end up in log lines and,
+ * as exemplars, on the latency histograms scraped from {@code /actuator/prometheus}.
+ */
 @Slf4j
-@Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
 public class TraceIdFilter extends OncePerRequestFilter {
 
-    private static final String TRACE_ID_HEADER = "X-Trace-Id";
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    public static final String TRACE_ID_KEY = "traceId";
+    public static final String SPAN_ID_KEY = "spanId";
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -29,12 +36,14 @@ public class TraceIdFilter extends OncePerRequestFilter {
         if (traceId == null || traceId.isBlank()) {
             traceId = UUID.randomUUID().toString();
         }
-        MDC.put("traceId", traceId);
+        MDC.put(TRACE_ID_KEY, traceId);
+        MDC.put(SPAN_ID_KEY, HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextLong()));
         response.addHeader(TRACE_ID_HEADER, traceId);
         try {
             filterChain.doFilter(request, response);
         } finally {
-            MDC.remove("traceId");
+            MDC.remove(TRACE_ID_KEY);
+            MDC.remove(SPAN_ID_KEY);
         }
     }
 }
@@ -0,0 +1,33 @@
+package com.easyshop.common.web.metrics;
+
+import com.easyshop.common.web.TraceIdFilter;
+import io.prometheus.metrics.tracer.common.SpanContext;
+import org.slf4j.MDC;
+
+/**
+ * Feeds the MDC trace and span ids set by {@link TraceIdFilter} to the Prometheus exemplar
+ * sampler, so a slow histogram bucket links to a trace id that can be looked up in the logs.
+ * Exemplars are rate limited by the sampler and only appear in the OpenMetrics format.
+ */
+public class MdcSpanContext implements SpanContext {
+
+    @Override
+    public String getCurrentTraceId() {
+        return MDC.get(TraceIdFilter.TRACE_ID_KEY);
+    }
+
+    @Override
+    public String getCurrentSpanId() {
+        return MDC.get(TraceIdFilter.SPAN_ID_KEY);
+    }
+
+    @Override
+    public boolean isCurrentSpanSampled() {
+        return MDC.get(TraceIdFilter.TRACE_ID_KEY) != null;
+    }
+
+    @Override
+    public void markCurrentSpanAsExemplar() {
+        // Nothing to mark: there is no tracer behind the MDC ids
+    }
+}
@@ -0,0 +1,34 @@
+package com.easyshop.common.web.metrics;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Route of the servlet request being handled on the current thread, i.e. the mapping pattern
+ * such as {@code /api/products/{id}} that {@code http.server.requests} reports as {@code uri}.
+ * Lets meters recorded further down the call (repositories, outbound clients) be broken down
+ * by the endpoint that caused them without putting ids or trace ids into tags.
+ */
+public final class RequestRoutes {
+
+    public static final String TAG = "route";
+    public static final String NONE = "none";
+
+    private RequestRoutes() {
+    }
+
+    /**
+     * The current route, or {@value #NONE} outside a request or before handler mapping
+     * (scheduled jobs, filters, threads the request handed work to).
+     */
+    public static String current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return NONE;
+        }
+        Object pattern = attributes.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        return pattern instanceof String route ? route : NONE;
+    }
+}
@@ -0,0 +1,30 @@
+package com.easyshop.common.web.metrics;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationFilter;
+
+import java.util.Set;
+
+/**
+ * Adds the {@link RequestRoutes#current() current route} as a {@code route} tag to the named
+ * observations, e.g. {@code http.client.requests}, so an outbound call's latency can be told
+ * apart per inbound endpoint. Filters run when the observation stops, which for blocking
+ * clients is on the request thread.
+ */
+public class RouteObservationFilter implements ObservationFilter {
+
+    private final Set<String> observationNames;
+
+    public RouteObservationFilter(Set<String> observationNames) {
+        this.observationNames = Set.copyOf(observationNames);
+    }
+
+    @Override
+    public Observation.Context map(Observation.Context context) {
+        if (observationNames.contains(context.getName())) {
+            context.addLowCardinalityKeyValue(KeyValue.of(RequestRoutes.TAG, RequestRoutes.current()));
+        }
+        return context;
+    }
+}
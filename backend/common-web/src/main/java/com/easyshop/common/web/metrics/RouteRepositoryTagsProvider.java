@@ -0,0 +1,19 @@
+package com.easyshop.common.web.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.data.DefaultRepositoryTagsProvider;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener.RepositoryMethodInvocation;
+
+/**
+ * Tags {@code spring.data.repository.invocations} with the route of the request that made the
+ * call, on top of the default repository, method, state and exception tags.
+ */
+public class RouteRepositoryTagsProvider extends DefaultRepositoryTagsProvider {
+
+    @Override
+    public Iterable<Tag> repositoryTags(RepositoryMethodInvocation invocation) {
+        return Tags.of(super.repositoryTags(invocation))
+                .and(RequestRoutes.TAG, RequestRoutes.current());
+    }
+}
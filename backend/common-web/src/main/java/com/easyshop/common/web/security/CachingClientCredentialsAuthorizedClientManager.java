@@ -0,0 +1,52 @@
+package com.easyshop.common.web.security;
+
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Authorized client manager for client-credentials registrations that hands out tokens from
+ * a {@link ClientCredentialsTokenManager} instead of asking the token endpoint whenever the
+ * previous token lapsed.
+ */
+public class CachingClientCredentialsAuthorizedClientManager implements OAuth2AuthorizedClientManager {
+
+    private final ClientRegistrationRepository registrations;
+    private final ClientCredentialsTokenManager tokens;
+
+    public CachingClientCredentialsAuthorizedClientManager(ClientRegistrationRepository registrations,
+                                                           ClientCredentialsTokenManager tokens) {
+        this.registrations = registrations;
+        this.tokens = tokens;
+    }
+
+    @Override
+    public OAuth2AuthorizedClient authorize(OAuth2AuthorizeRequest request) {
+        ClientRegistration registration = registrations.findByRegistrationId(request.getClientRegistrationId());
+        if (registration == null) {
+            throw new IllegalArgumentException("Unknown client registration " + request.getClientRegistrationId());
+        }
+        if (!AuthorizationGrantType.CLIENT_CREDENTIALS.equals(registration.getAuthorizationGrantType())) {
+            throw new IllegalArgumentException("Client registration " + registration.getRegistrationId()
+                    + " does not use the client_credentials grant");
+        }
+        return new OAuth2AuthorizedClient(registration, request.getPrincipal().getName(), token(registration));
+    }
+
+    private OAuth2AccessToken token(ClientRegistration registration) {
+        try {
+            return tokens.getToken(registration).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
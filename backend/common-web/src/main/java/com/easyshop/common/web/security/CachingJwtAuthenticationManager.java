@@ -0,0 +1,48 @@
+package com.easyshop.common.web.security;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+/**
+ * Resource server authentication manager that decodes, verifies and converts each distinct
+ * bearer token once and serves repeats of it from a {@link JwtAuthenticationCache}.
+ * Rejected tokens are never cached, so they are checked again on every request.
+ */
+public class CachingJwtAuthenticationManager implements AuthenticationManager {
+
+    private final JwtAuthenticationProvider delegate;
+    private final JwtAuthenticationCache cache;
+
+    public CachingJwtAuthenticationManager(JwtDecoder decoder,
+                                           Converter<Jwt, ? extends AbstractAuthenticationToken> converter,
+                                           JwtAuthenticationCache cache) {
+        this.delegate = new JwtAuthenticationProvider(decoder);
+        this.delegate.setJwtAuthenticationConverter(converter);
+        this.cache = cache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        BearerTokenAuthenticationToken bearer = (BearerTokenAuthenticationToken) authentication;
+        JwtAuthenticationToken cached = cache.get(bearer.getToken());
+        if (cached != null) {
+            JwtAuthenticationToken result = JwtAuthenticationCache.copyOf(cached);
+            result.setDetails(bearer.getDetails());
+            return result;
+        }
+
+        Authentication result = delegate.authenticate(bearer);
+        if (result instanceof JwtAuthenticationToken jwt) {
+            cache.put(bearer.getToken(), jwt);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,173 @@
+package com.easyshop.common.web.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches client-credentials access tokens per client registration and renews them on a
+ * background thread {@code refreshAhead} before they expire. Callers get the cached token
+ * straight away; only the very first call for a registration, or one made after the token
+ * could not be renewed in time, waits for the token endpoint. Concurrent renewals of the
+ * same registration share a single request.
+ */
+@Slf4j
+public class ClientCredentialsTokenManager implements AutoCloseable {
+
+    /** Delay before retrying a failed renewal while the current token is still valid. */
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    /** A token this close to expiry is not handed out, as it may lapse in flight. */
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(1);
+
+    private final OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenClient;
+    private final Duration refreshAhead;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    public ClientCredentialsTokenManager(
+            OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenClient, Duration refreshAhead) {
+        this(tokenClient, refreshAhead, Clock.systemUTC(), Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "client-credentials-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    ClientCredentialsTokenManager(OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenClient,
+                                  Duration refreshAhead, Clock clock, ScheduledExecutorService scheduler) {
+        this.tokenClient = tokenClient;
+        this.refreshAhead = refreshAhead;
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * The current access token for {@code registration}. The returned future is already
+     * complete unless no usable token is cached yet.
+     */
+    public CompletableFuture<OAuth2AccessToken> getToken(ClientRegistration registration) {
+        Slot slot = slots.computeIfAbsent(registration.getRegistrationId(), id -> new Slot(registration));
+        OAuth2AccessToken token = slot.token;
+        Instant now = clock.instant();
+        if (token != null && isUsable(token, now)) {
+            if (!now.isBefore(refreshAt(token))) {
+                // The scheduled renewal has not happened (or failed); renew without waiting for it
+                slot.refresh();
+            }
+            return CompletableFuture.completedFuture(token);
+        }
+        return slot.refresh();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean isUsable(OAuth2AccessToken token, Instant now) {
+        return token.getExpiresAt() == null || now.plus(EXPIRY_MARGIN).isBefore(token.getExpiresAt());
+    }
+
+    /**
+     * {@code refreshAhead} before expiry, or half way through the lifetime of short-lived tokens.
+     */
+    private Instant refreshAt(OAuth2AccessToken token) {
+        Instant expiresAt = token.getExpiresAt();
+        if (expiresAt == null) {
+            return Instant.MAX;
+        }
+        Instant issuedAt = token.getIssuedAt() != null ? token.getIssuedAt() : clock.instant();
+        Duration lifetime = Duration.between(issuedAt, expiresAt);
+        Duration ahead = lifetime.compareTo(refreshAhead.multipliedBy(2)) < 0 ? lifetime.dividedBy(2) : refreshAhead;
+        return expiresAt.minus(ahead);
+    }
+
+    private void schedule(Slot slot, Duration delay) {
+        try {
+            scheduler.schedule(slot::refreshIfDue, Math.max(0, delay.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            log.debug("Not scheduling token renewal for {}: {}", slot.registration.getRegistrationId(), e.toString());
+        }
+    }
+
+    private final class Slot {
+        private final ClientRegistration registration;
+        private final AtomicReference<CompletableFuture<OAuth2AccessToken>> inFlight = new AtomicReference<>();
+        private volatile OAuth2AccessToken token;
+
+        Slot(ClientRegistration registration) {
+            this.registration = registration;
+        }
+
+        void refreshIfDue() {
+            OAuth2AccessToken current = token;
+            Instant now = clock.instant();
+            if (current == null || !now.isBefore(refreshAt(current))) {
+                refresh();
+            } else {
+                // Timers may fire a little early
+                schedule(this, Duration.between(now, refreshAt(current)));
+            }
+        }
+
+        /**
+         * Starts a renewal unless one is already running, and returns the running one.
+         */
+        CompletableFuture<OAuth2AccessToken> refresh() {
+            CompletableFuture<OAuth2AccessToken> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<OAuth2AccessToken> created = new CompletableFuture<>();
+            running = inFlight.compareAndExchange(null, created);
+            if (running != null) {
+                return running;
+            }
+            try {
+                scheduler.execute(() -> fetch(created));
+            } catch (RuntimeException e) {
+                inFlight.set(null);
+                created.completeExceptionally(e);
+            }
+            return created;
+        }
+
+        private void fetch(CompletableFuture<OAuth2AccessToken> result) {
+            try {
+                OAuth2AccessToken fetched = tokenClient
+                        .getTokenResponse(new OAuth2ClientCredentialsGrantRequest(registration))
+                        .getAccessToken();
+                token = fetched;
+                inFlight.set(null);
+                result.complete(fetched);
+                schedule(this, Duration.between(clock.instant(), refreshAt(fetched)));
+            } catch (RuntimeException e) {
+                inFlight.set(null);
+                result.completeExceptionally(e);
+                OAuth2AccessToken current = token;
+                if (current != null && isUsable(current, clock.instant())) {
+                    log.warn("Renewing token for {} failed, retrying in {}: {}",
+                            registration.getRegistrationId(), RETRY_DELAY, e.toString());
+                    schedule(this, RETRY_DELAY);
+                } else {
+                    log.warn("Fetching token for {} failed: {}", registration.getRegistrationId(), e.toString());
+                }
+            }
+        }
+    }
+}
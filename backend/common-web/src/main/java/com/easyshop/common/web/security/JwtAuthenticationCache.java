@@ -0,0 +1,108 @@
+package com.easyshop.common.web.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Bounded cache of bearer tokens that already passed signature and claim validation, keyed by
+ * the SHA-256 of the token. An entry never outlives its token's {@code exp}, and lives at most
+ * {@code maxTtl} so that key rotation or config changes take effect within that window.
+ */
+public class JwtAuthenticationCache {
+
+    private final Cache<String, JwtAuthenticationToken> cache;
+    private final Clock clock;
+
+    public JwtAuthenticationCache(long maxSize, Duration maxTtl) {
+        this(maxSize, maxTtl, Clock.systemUTC(), Ticker.systemTicker());
+    }
+
+    JwtAuthenticationCache(long maxSize, Duration maxTtl, Clock clock, Ticker ticker) {
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(maxTtl, clock))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the authentication cached for {@code token}, or {@code null} if there is none
+     * or the token expired meanwhile.
+     */
+    public JwtAuthenticationToken get(String token) {
+        JwtAuthenticationToken cached = cache.getIfPresent(key(token));
+        if (cached == null || isExpired(cached)) {
+            return null;
+        }
+        return cached;
+    }
+
+    public void put(String token, JwtAuthenticationToken authentication) {
+        if (!isExpired(authentication)) {
+            cache.put(key(token), authentication);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * A copy of a cached authentication for one request, so that per-request state such as
+     * details is never shared between requests.
+     */
+    public static JwtAuthenticationToken copyOf(JwtAuthenticationToken cached) {
+        return new JwtAuthenticationToken(cached.getToken(), cached.getAuthorities(), cached.getName());
+    }
+
+    private boolean isExpired(JwtAuthenticationToken authentication) {
+        Instant exp = authentication.getToken().getExpiresAt();
+        return exp != null && !clock.instant().isBefore(exp);
+    }
+
+    private static String key(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record TokenExpiry(Duration maxTtl, Clock clock) implements Expiry<String, JwtAuthenticationToken> {
+
+        @Override
+        public long expireAfterCreate(String key, JwtAuthenticationToken value, long currentTime) {
+            Instant exp = value.getToken().getExpiresAt();
+            if (exp == null) {
+                return maxTtl.toNanos();
+            }
+            Duration untilExp = Duration.between(clock.instant(), exp);
+            return Math.max(0, Math.min(untilExp.toNanos(), maxTtl.toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
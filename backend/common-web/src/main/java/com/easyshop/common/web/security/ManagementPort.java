@@ -0,0 +1,32 @@
+package com.easyshop.common.web.security;
+
+import org.springframework.core.env.Environment;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+/**
+ * The port actuator endpoints are served on when {@code management.server.port} sets them apart
+ * from the application port. That port is only reachable inside the deployment's network, so
+ * what it serves, metrics included, needs no token; on the application port only health is public.
+ */
+public final class ManagementPort {
+
+    private ManagementPort() {
+    }
+
+    /**
+     * The management port, or -1 when actuator endpoints share the application port.
+     */
+    public static int of(Environment environment) {
+        Integer management = environment.getProperty("management.server.port", Integer.class);
+        int server = environment.getProperty("server.port", Integer.class, 8080);
+        return management != null && management > 0 && management != server ? management : -1;
+    }
+
+    /**
+     * Matches requests received on the management port; matches nothing without a separate one.
+     */
+    public static RequestMatcher requests(Environment environment) {
+        int port = of(environment);
+        return request -> port > 0 && request.getLocalPort() == port;
+    }
+}
@@ -0,0 +1,69 @@
+package com.easyshop.common.web.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.nimbusds.jwt.proc.JWTProcessor;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Builds JWT processors whose JWK set is kept fresh by a background task. The set is fetched
+ * once, then re-fetched shortly before its time to live runs out, so requests only wait on
+ * the authorization server for the very first load or for a token signed with an unknown key.
+ */
+public final class RefreshingJwkSets {
+
+    private RefreshingJwkSets() {
+    }
+
+    public static JWKSource<SecurityContext> jwkSource(String jwkSetUri, Duration ttl) {
+        return jwkSource(jwkSetUri, ttl,
+                Duration.ofMillis(JWKSourceBuilder.DEFAULT_REFRESH_AHEAD_TIME),
+                Duration.ofMillis(JWKSourceBuilder.DEFAULT_CACHE_REFRESH_TIMEOUT),
+                Duration.ofMillis(JWKSourceBuilder.DEFAULT_RATE_LIMIT_MIN_INTERVAL));
+    }
+
+    static JWKSource<SecurityContext> jwkSource(String jwkSetUri, Duration ttl, Duration refreshAhead,
+                                                Duration refreshTimeout, Duration minFetchInterval) {
+        try {
+            return JWKSourceBuilder.<SecurityContext>create(URI.create(jwkSetUri).toURL())
+                    .cache(ttl.toMillis(), refreshTimeout.toMillis())
+                    .refreshAheadCache(refreshAhead.toMillis(), true)
+                    .rateLimited(minFetchInterval.toMillis())
+                    .build();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid JWK set URI " + jwkSetUri, e);
+        }
+    }
+
+    /**
+     * RS256 processor over {@code jwkSource}. Claims are left to Spring's validators.
+     */
+    public static JWTProcessor<SecurityContext> jwtProcessor(JWKSource<SecurityContext> jwkSource) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return processor;
+    }
+
+    /**
+     * Decoder over a refreshing JWK set. The issuer is checked when one is given.
+     */
+    public static JwtDecoder jwtDecoder(String jwkSetUri, String issuer, Duration ttl) {
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor(jwkSource(jwkSetUri, ttl)));
+        decoder.setJwtValidator(issuer == null || issuer.isBlank()
+                ? JwtValidators.createDefault()
+                : JwtValidators.createDefaultWithIssuer(issuer));
+        return decoder;
+    }
+}
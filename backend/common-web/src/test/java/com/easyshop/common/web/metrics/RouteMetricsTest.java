@@ -0,0 +1,115 @@
+package com.easyshop.common.web.metrics;
+
+import com.easyshop.common.web.TraceIdFilter;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener.RepositoryMethodInvocation;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener.RepositoryMethodInvocationResult;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    RouteMetricsTest() {
+        observationRegistry.observationConfig()
+                .observationHandler(new DefaultMeterObservationHandler(meterRegistry))
+                .observationFilter(new RouteObservationFilter(Set.of("http.client.requests")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        MDC.clear();
+    }
+
+    @Test
+    void routeComesFromTheMatchedHandlerPattern() {
+        assertThat(RequestRoutes.current()).isEqualTo(RequestRoutes.NONE);
+
+        enterRequest("/api/products/{id}");
+
+        assertThat(RequestRoutes.current()).isEqualTo("/api/products/{id}");
+    }
+
+    @Test
+    void outboundCallsAreTaggedWithTheRoute() {
+        enterRequest("/api/purchases");
+        Observation.createNotStarted("http.client.requests", observationRegistry).observe(() -> { });
+        Observation.createNotStarted("other", observationRegistry).observe(() -> { });
+        RequestContextHolder.resetRequestAttributes();
+        Observation.createNotStarted("http.client.requests", observationRegistry).observe(() -> { });
+
+        assertThat(meterRegistry.get("http.client.requests").tag("route", "/api/purchases").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("http.client.requests").tag("route", "none").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("other").timer().getId().getTag("route")).isNull();
+    }
+
+    @Test
+    void repositoryCallsAreTaggedWithTheRoute() throws Exception {
+        enterRequest("/api/products/{id}");
+        RepositoryMethodInvocation invocation = new RepositoryMethodInvocation(Repository.class,
+                Repository.class.getMethod("findStockById", Long.class), success(), 1_000);
+
+        assertThat(new RouteRepositoryTagsProvider().repositoryTags(invocation))
+                .extracting(tag -> tag.getKey() + "=" + tag.getValue())
+                .contains("repository=Repository", "method=findStockById", "state=SUCCESS", "route=/api/products/{id}");
+    }
+
+    @Test
+    void histogramsCarryTheTraceIdAsExemplar() {
+        PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT,
+                new PrometheusRegistry(), Clock.SYSTEM, new MdcSpanContext());
+        Timer timer = Timer.builder("http.server.requests").publishPercentileHistogram().register(prometheus);
+        MDC.put(TraceIdFilter.TRACE_ID_KEY, "4bf92f35-77b3-4da6-a3ce-929d0e0e4736");
+        MDC.put(TraceIdFilter.SPAN_ID_KEY, "00f067aa0ba902b7");
+
+        timer.record(Duration.ofMillis(42));
+
+        assertThat(prometheus.scrape("application/openmetrics-text"))
+                .contains("trace_id=\"4bf92f35-77b3-4da6-a3ce-929d0e0e4736\"", "span_id=\"00f067aa0ba902b7\"");
+    }
+
+    private static void enterRequest(String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static RepositoryMethodInvocationResult success() {
+        return new RepositoryMethodInvocationResult() {
+            @Override
+            public State getState() {
+                return State.SUCCESS;
+            }
+
+            @Override
+            public Throwable getError() {
+                return null;
+            }
+        };
+    }
+
+    interface Repository {
+        Object findStockById(Long id);
+    }
+}
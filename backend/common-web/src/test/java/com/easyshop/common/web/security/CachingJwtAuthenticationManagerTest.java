@@ -0,0 +1,202 @@
+package com.easyshop.common.web.security;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJwtAuthenticationManagerTest {
+
+    private static final String ISSUER = "http://auth.test";
+    private static RSAKey key;
+
+    private final AtomicInteger decodes = new AtomicInteger();
+    private JwtDecoder verifying;
+    private CachingJwtAuthenticationManager manager;
+
+    @BeforeAll
+    static void generateKey() throws JOSEException {
+        key = new RSAKeyGenerator(2048).keyID("k1").generate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(RefreshingJwkSets.jwtProcessor(new ImmutableJWKSet<>(new JWKSet(key))));
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        verifying = decoder;
+        JwtDecoder counting = token -> {
+            decodes.incrementAndGet();
+            return verifying.decode(token);
+        };
+        manager = new CachingJwtAuthenticationManager(counting, converter(),
+                new JwtAuthenticationCache(100, Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void repeatedTokenIsVerifiedOnce() throws Exception {
+        String token = sign("alice", Instant.now().plusSeconds(300));
+
+        Authentication first = manager.authenticate(new BearerTokenAuthenticationToken(token));
+        Authentication second = manager.authenticate(new BearerTokenAuthenticationToken(token));
+
+        assertThat(decodes).hasValue(1);
+        assertThat(second.getName()).isEqualTo("alice");
+        assertThat(second.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrderElementsOf(first.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    void distinctTokensAreVerifiedSeparately() throws Exception {
+        manager.authenticate(new BearerTokenAuthenticationToken(sign("alice", Instant.now().plusSeconds(300))));
+        manager.authenticate(new BearerTokenAuthenticationToken(sign("bob", Instant.now().plusSeconds(300))));
+
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    void rejectedTokensAreNotCached() throws Exception {
+        String forged = sign("mallory", Instant.now().plusSeconds(300)).replaceFirst("\\.[^.]+$", ".c2lnbmF0dXJl");
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> manager.authenticate(new BearerTokenAuthenticationToken(forged)))
+                    .isInstanceOf(InvalidBearerTokenException.class);
+        }
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    void detailsBelongToEachRequest() throws Exception {
+        String token = sign("alice", Instant.now().plusSeconds(300));
+        BearerTokenAuthenticationToken first = new BearerTokenAuthenticationToken(token);
+        first.setDetails("10.0.0.1");
+        BearerTokenAuthenticationToken second = new BearerTokenAuthenticationToken(token);
+        second.setDetails("10.0.0.2");
+
+        assertThat(manager.authenticate(first).getDetails()).isEqualTo("10.0.0.1");
+        assertThat(manager.authenticate(second).getDetails()).isEqualTo("10.0.0.2");
+    }
+
+    @Test
+    void entriesNeverOutliveTokenExpiry() {
+        Instant now = Instant.parse("2024-05-01T10:00:00Z");
+        AtomicLong nanos = new AtomicLong();
+        MutableClock clock = new MutableClock(now);
+        Ticker ticker = nanos::get;
+        JwtAuthenticationCache cache = new JwtAuthenticationCache(100, Duration.ofMinutes(5), clock, ticker);
+        var auth = new JwtAuthenticationToken(
+                jwt("alice", now.plusSeconds(60)));
+        cache.put("token", auth);
+
+        assertThat(cache.get("token")).isNotNull();
+        clock.advance(Duration.ofSeconds(60));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        assertThat(cache.get("token")).isNull();
+    }
+
+    @Test
+    void entriesLiveAtMostMaxTtl() {
+        Instant now = Instant.parse("2024-05-01T10:00:00Z");
+        AtomicLong nanos = new AtomicLong();
+        JwtAuthenticationCache cache = new JwtAuthenticationCache(100, Duration.ofMinutes(5), new MutableClock(now), nanos::get);
+        cache.put("token", new JwtAuthenticationToken(
+                jwt("alice", now.plus(Duration.ofHours(1)))));
+
+        nanos.addAndGet(Duration.ofMinutes(5).toNanos());
+
+        assertThat(cache.get("token")).isNull();
+    }
+
+    private static JwtAuthenticationConverter converter() {
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthorityPrefix("ROLE_");
+        authorities.setAuthoritiesClaimName("scope");
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        return converter;
+    }
+
+    private static String sign(String subject, Instant exp) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .issuer(ISSUER)
+                        .subject(subject)
+                        .claim("scope", "USER read")
+                        .issueTime(new Date())
+                        .expirationTime(Date.from(exp))
+                        .build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static Jwt jwt(String subject, Instant exp) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(subject)
+                .issuedAt(exp.minusSeconds(600))
+                .expiresAt(exp)
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.easyshop.common.web.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ClientCredentialsTokenManagerTest {
+
+    private static final ClientRegistration REGISTRATION = ClientRegistration.withRegistrationId("purchase-service")
+            .clientId("purchase-service")
+            .clientSecret("secret")
+            .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+            .tokenUri("http://auth.test/oauth2/token")
+            .build();
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile long lifetimeSeconds = 3600;
+    private volatile RuntimeException failure;
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private ClientCredentialsTokenManager manager;
+
+    private final OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenClient = request -> {
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int n = fetches.incrementAndGet();
+        if (failure != null) {
+            throw failure;
+        }
+        return OAuth2AccessTokenResponse.withToken("token-" + n)
+                .tokenType(OAuth2AccessToken.TokenType.BEARER)
+                .expiresIn(lifetimeSeconds)
+                .build();
+    };
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
+    @Test
+    void tokenIsFetchedOnceAndServedFromCache() throws Exception {
+        manager = new ClientCredentialsTokenManager(tokenClient, Duration.ofSeconds(60));
+
+        assertThat(manager.getToken(REGISTRATION).get(1, TimeUnit.SECONDS).getTokenValue()).isEqualTo("token-1");
+        for (int i = 0; i < 100; i++) {
+            CompletableFuture<OAuth2AccessToken> cached = manager.getToken(REGISTRATION);
+            assertThat(cached).isDone();
+            assertThat(cached.join().getTokenValue()).isEqualTo("token-1");
+        }
+
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void concurrentColdCallersShareOneRequest() throws Exception {
+        manager = new ClientCredentialsTokenManager(tokenClient, Duration.ofSeconds(60));
+        gate = new CountDownLatch(1);
+
+        List<CompletableFuture<OAuth2AccessToken>> callers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> manager.getToken(REGISTRATION).join()));
+        }
+        Thread.sleep(100);
+        gate.countDown();
+
+        for (CompletableFuture<OAuth2AccessToken> caller : callers) {
+            assertThat(caller.get(1, TimeUnit.SECONDS).getTokenValue()).isEqualTo("token-1");
+        }
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void tokenIsRenewedInTheBackgroundBeforeItExpires() throws Exception {
+        lifetimeSeconds = 3;
+        manager = new ClientCredentialsTokenManager(tokenClient, Duration.ofSeconds(1));
+        assertThat(manager.getToken(REGISTRATION).get(1, TimeUnit.SECONDS).getTokenValue()).isEqualTo("token-1");
+
+        // Nobody asks for a token; the renewal happens on its own a second before expiry
+        await().atMost(Duration.ofSeconds(3)).until(() -> fetches.get() >= 2);
+
+        CompletableFuture<OAuth2AccessToken> renewed = manager.getToken(REGISTRATION);
+        assertThat(renewed).isDone();
+        assertThat(renewed.join().getTokenValue()).isEqualTo("token-2");
+    }
+
+    @Test
+    void failedRenewalKeepsServingTheCurrentToken() throws Exception {
+        lifetimeSeconds = 4;
+        manager = new ClientCredentialsTokenManager(tokenClient, Duration.ofSeconds(2));
+        manager.getToken(REGISTRATION).get(1, TimeUnit.SECONDS);
+        failure = new OAuth2AuthorizationException(new OAuth2Error("server_error"));
+
+        await().atMost(Duration.ofSeconds(3)).until(() -> fetches.get() >= 2);
+
+        CompletableFuture<OAuth2AccessToken> current = manager.getToken(REGISTRATION);
+        assertThat(current).isDone();
+        assertThat(current.join().getTokenValue()).isEqualTo("token-1");
+    }
+
+    @Test
+    void coldFailureReachesTheCallerAndNextCallRetries() throws Exception {
+        manager = new ClientCredentialsTokenManager(tokenClient, Duration.ofSeconds(60));
+        failure = new OAuth2AuthorizationException(new OAuth2Error("invalid_client"));
+
+        assertThatThrownBy(() -> manager.getToken(REGISTRATION).get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(OAuth2AuthorizationException.class);
+
+        failure = null;
+        assertThat(manager.getToken(REGISTRATION).get(1, TimeUnit.SECONDS).getTokenValue()).isEqualTo("token-2");
+    }
+
+    @Test
+    void authorizedClientManagerHandsOutCachedTokens() {
+        manager = new ClientCredentialsTokenManager(tokenClient, Duration.ofSeconds(60));
+        var authorizedClients = new CachingClientCredentialsAuthorizedClientManager(
+                new InMemoryClientRegistrationRepository(REGISTRATION), manager);
+        OAuth2AuthorizeRequest request = OAuth2AuthorizeRequest.withClientRegistrationId("purchase-service")
+                .principal("purchase-service")
+                .build();
+
+        OAuth2AuthorizedClient first = authorizedClients.authorize(request);
+        OAuth2AuthorizedClient second = authorizedClients.authorize(request);
+
+        assertThat(first.getAccessToken().getTokenValue()).isEqualTo("token-1");
+        assertThat(second.getAccessToken()).isSameAs(first.getAccessToken());
+        assertThat(fetches).hasValue(1);
+    }
+}
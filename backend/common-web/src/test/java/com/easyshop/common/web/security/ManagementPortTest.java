@@ -0,0 +1,38 @@
+package com.easyshop.common.web.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ManagementPortTest {
+
+    @Test
+    void matchesRequestsOnTheManagementPortOnly() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("server.port", "9002")
+                .withProperty("management.server.port", "9102");
+
+        assertThat(ManagementPort.requests(environment).matches(request(9102))).isTrue();
+        assertThat(ManagementPort.requests(environment).matches(request(9002))).isFalse();
+    }
+
+    @Test
+    void matchesNothingWhenActuatorSharesTheApplicationPort() {
+        MockEnvironment unset = new MockEnvironment().withProperty("server.port", "9002");
+        MockEnvironment same = new MockEnvironment()
+                .withProperty("server.port", "9002")
+                .withProperty("management.server.port", "9002");
+
+        assertThat(ManagementPort.of(unset)).isEqualTo(-1);
+        assertThat(ManagementPort.requests(unset).matches(request(9002))).isFalse();
+        assertThat(ManagementPort.requests(same).matches(request(9002))).isFalse();
+    }
+
+    private static MockHttpServletRequest request(int localPort) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        request.setLocalPort(localPort);
+        return request;
+    }
+}
@@ -0,0 +1,80 @@
+package com.easyshop.common.web.security;
+
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshingJwkSetsTest {
+
+    private static final JWKSelector ANY_KEY = new JWKSelector(new JWKMatcher.Builder().build());
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void repeatedLookupsAreServedFromCache() throws Exception {
+        server.enqueue(jwks(key("k1")));
+        JWKSource<SecurityContext> source = RefreshingJwkSets.jwkSource(server.url("/oauth2/jwks").toString(),
+                Duration.ofMinutes(5));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(source.get(ANY_KEY, null)).extracting(k -> k.getKeyID()).containsExactly("k1");
+        }
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void setIsRefreshedAheadOfExpiryInTheBackground() throws Exception {
+        server.enqueue(jwks(key("k1")));
+        RSAKey rotated = key("k2");
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(jwks(rotated));
+        }
+        JWKSource<SecurityContext> source = RefreshingJwkSets.jwkSource(server.url("/oauth2/jwks").toString(),
+                Duration.ofMillis(1_000), Duration.ofMillis(800), Duration.ofMillis(100), Duration.ofMillis(100));
+
+        assertThat(source.get(ANY_KEY, null)).extracting(k -> k.getKeyID()).containsExactly("k1");
+        server.takeRequest(1, TimeUnit.SECONDS);
+
+        // The scheduled refresh fires before the set expires, without any lookup asking for it
+        assertThat(server.takeRequest(900, TimeUnit.MILLISECONDS)).isNotNull();
+        Thread.sleep(50);
+        assertThat(source.get(ANY_KEY, null)).extracting(k -> k.getKeyID()).containsExactly("k2");
+    }
+
+    private static RSAKey key(String kid) throws Exception {
+        return new RSAKeyGenerator(2048).keyID(kid).generate();
+    }
+
+    private static MockResponse jwks(RSAKey key) {
+        return new MockResponse()
+                .setBody(new JWKSet(key).toString(true))
+                .addHeader("Content-Type", "application/json");
+    }
+}
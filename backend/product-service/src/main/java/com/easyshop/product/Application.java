@@ -2,8 +2,10 @@ package com.easyshop.product;
 
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.*;
+import org.springframework.scheduling.annotation.EnableAsync;
 
 @SpringBootApplication
+@EnableAsync
 public class Application {
     public static void main(String[] a) {
         SpringApplication.run(Application.class, a);
@@ -1,14 +1,24 @@
 package com.easyshop.product.config;
 
+import com.easyshop.common.web.security.CachingJwtAuthenticationManager;
+import com.easyshop.common.web.security.JwtAuthenticationCache;
+import com.easyshop.common.web.security.ManagementPort;
+import com.easyshop.common.web.security.RefreshingJwkSets;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.time.Duration;
+
 /**
  * Product Service security configuration as OAuth2 Resource Server.
  * Validates JWT tokens from Authorization Server and protects endpoints.
@@ -22,19 +32,30 @@ public class ProductSecurityConfig {
      * Configures OAuth2 Resource Server with JWT validation.
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtDecoder jwtDecoder, Environment environment,
+                                                   @Value("${security.jwt.cache.max-size:10000}") long cacheSize,
+                                                   @Value("${security.jwt.cache.max-ttl:5m}") Duration cacheTtl) throws Exception {
+        // Tokens seen before skip signature verification and claim conversion until they expire
+        JwtAuthenticationCache cache = new JwtAuthenticationCache(cacheSize, cacheTtl);
         return http
                 .csrf(AbstractHttpConfigurer::disable)
                 .oauth2ResourceServer(oauth2 -> oauth2
                         .jwt(jwt -> jwt
-                                .jwtAuthenticationConverter(jwtAuthenticationConverter())
+                                .authenticationManager(new CachingJwtAuthenticationManager(
+                                        jwtDecoder, jwtAuthenticationConverter(), cache))
                         )
                 )
                 .authorizeHttpRequests(authz -> authz
                         // Public endpoints - no authentication required
                         .requestMatchers("/api/products/**").permitAll()
                         .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers(ManagementPort.requests(environment)).permitAll()
                         
+                        // Stock reservation for a buyer's checkout; only purchase-service's own client holds
+                        // the STOCK_RESERVE scope, so buyers calling this port directly are refused
+                        .requestMatchers(HttpMethod.POST, "/api/admin/products/reserve-batch",
+                                "/api/admin/products/reservations/*/release").hasRole("STOCK_RESERVE")
+
                         // Admin endpoints - require ADMIN role
                         .requestMatchers("/api/admin/products/**").hasRole("ADMIN")
                         
@@ -44,6 +65,17 @@ public class ProductSecurityConfig {
                 .build();
     }
 
+    /**
+     * JWT decoder whose JWK set is refreshed in the background rather than on the request path.
+     */
+    @Bean
+    public JwtDecoder jwtDecoder(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuer,
+            @Value("${security.jwt.jwk-set-ttl:5m}") Duration jwkSetTtl) {
+        return RefreshingJwkSets.jwtDecoder(jwkSetUri, issuer, jwkSetTtl);
+    }
+
     /**
      * JWT authentication converter to map JWT claims to Spring Security authorities.
      * Maps 'scope' claims to authorities and 'roles' to ROLE_* authorities.
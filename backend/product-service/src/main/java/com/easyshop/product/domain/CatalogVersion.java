@@ -0,0 +1,25 @@
+package com.easyshop.product.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Single-row counter that changes whenever a product is added, removed or has its name,
+ * description or price changed, but not on stock changes. Maintained by a database trigger, so
+ * it is read-only here.
+ */
+@Entity
+@Immutable
+@Table(name = "catalog_version")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogVersion {
+    public static final short ID = 1;
+
+    @Id
+    Short id;
+    @Column(nullable = false)
+    Long version;
+}
@@ -0,0 +1,6 @@
+package com.easyshop.product.domain;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CatalogVersionRepository extends JpaRepository<CatalogVersion, Short> {
+}
@@ -23,4 +23,7 @@ public class Product {
     BigDecimal price;
     @Column(nullable = false)
     Integer stock;
+    @Version
+    @Column(nullable = false)
+    Long version;
 }
@@ -0,0 +1,18 @@
+package com.easyshop.product.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Stock and price of one product as pushed to live subscribers. A deleted product is sent
+ * with only its id and {@code deleted} set.
+ */
+public record StockChange(Long id, Integer stock, BigDecimal price, Long version, boolean deleted) {
+
+    public StockChange(Long id, Integer stock, BigDecimal price, Long version) {
+        this(id, stock, price, version, false);
+    }
+
+    public static StockChange deleted(Long id) {
+        return new StockChange(id, null, null, null, true);
+    }
+}
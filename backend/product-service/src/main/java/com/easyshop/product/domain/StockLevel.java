@@ -0,0 +1,7 @@
+package com.easyshop.product.domain;
+
+/**
+ * Current stock and version of one product, read without loading the rest of the row.
+ */
+public record StockLevel(Long id, Integer stock, Long version) {
+}
@@ -0,0 +1,77 @@
+package com.easyshop.product.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stock taken for one checkout under an id chosen by the caller. Released reservations are kept
+ * as tombstones until they expire, so a repeated release is a no-op and a reserve arriving after
+ * its own release is refused.
+ */
+@Entity
+@Table(name = "stock_reservation")
+@Getter
+@NoArgsConstructor
+public class StockReservation implements Persistable<UUID> {
+    @Id
+    UUID id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    Status status;
+    @Column(name = "created_at", nullable = false)
+    Instant createdAt;
+    @ElementCollection
+    @CollectionTable(name = "stock_reservation_line", joinColumns = @JoinColumn(name = "reservation_id"))
+    List<Line> lines = new ArrayList<>();
+
+    // Ids are assigned by the caller; without this every save would select before inserting
+    @Transient
+    boolean isNew = true;
+
+    public static StockReservation reserved(UUID id, Map<Long, Integer> qtyByProduct) {
+        StockReservation r = new StockReservation(id, Status.RESERVED);
+        qtyByProduct.forEach((productId, qty) -> r.lines.add(new Line(productId, qty)));
+        return r;
+    }
+
+    public static StockReservation released(UUID id) {
+        return new StockReservation(id, Status.RELEASED);
+    }
+
+    private StockReservation(UUID id, Status status) {
+        this.id = id;
+        this.status = status;
+        this.createdAt = Instant.now();
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public enum Status { RESERVED, RELEASED }
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        @Column(name = "product_id", nullable = false)
+        Long productId;
+        @Column(nullable = false)
+        Integer qty;
+    }
+}
@@ -0,0 +1,26 @@
+package com.easyshop.product.domain;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, UUID> {
+
+    /**
+     * Moves a reservation from reserved to released. Returns 1 for exactly one of any number of
+     * concurrent callers, which then owns putting the stock back.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update StockReservation r set r.status = com.easyshop.product.domain.StockReservation.Status.RELEASED
+            where r.id = :id and r.status = com.easyshop.product.domain.StockReservation.Status.RESERVED""")
+    int markReleased(@Param("id") UUID id);
+
+    @Modifying
+    @Query("delete from StockReservation r where r.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,116 @@
+package com.easyshop.product.service;
+
+import com.easyshop.product.domain.Product;
+import com.easyshop.product.domain.StockLevel;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of the rarely changing catalog fields of a product.
+ * Stock is deliberately not cached: callers combine an entry with a live stock read.
+ * <p>
+ * Loaders run on the calling thread, inside its transaction, and never inside a map
+ * compute: a JDBC call under the map's bin lock would pin a virtual thread to its carrier.
+ * Concurrent misses on one key still share a single load.
+ */
+@Component
+public class ProductCatalogCache {
+    private final AsyncCache<Long, Entry> cache;
+
+    public ProductCatalogCache(@Value("${product.cache.max-size:10000}") long maxSize,
+                               @Value("${product.cache.ttl:10m}") Duration ttl,
+                               ObjectProvider<MeterRegistry> meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, "products"));
+    }
+
+    /**
+     * Returns the cached entry, loading it on a miss. Missing products are not cached.
+     */
+    public Optional<Entry> get(Long id, Function<Long, Optional<Entry>> loader) {
+        CompletableFuture<Entry> cached = cache.getIfPresent(id);
+        if (cached == null) {
+            CompletableFuture<Entry> loading = new CompletableFuture<>();
+            cached = cache.asMap().putIfAbsent(id, loading);
+            if (cached == null) {
+                // A future completed with null is dropped by the cache, so misses are not kept
+                try {
+                    Entry entry = loader.apply(id).orElse(null);
+                    loading.complete(entry);
+                    return Optional.ofNullable(entry);
+                } catch (RuntimeException e) {
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        return Optional.ofNullable(join(cached));
+    }
+
+    /**
+     * Returns the cached entries for {@code ids}, loading all misses with one call.
+     * Ids unknown to the loader are absent from the result.
+     */
+    public Map<Long, Entry> getAll(Collection<Long> ids, Function<List<Long>, Map<Long, Entry>> loader) {
+        return join(cache.getAll(ids, (missing, executor) ->
+                CompletableFuture.completedFuture(loader.apply(List.copyOf(missing)))));
+    }
+
+    public void evict(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    /**
+     * Runs pending maintenance, such as size-based eviction, on the calling thread.
+     */
+    void cleanUp() {
+        cache.synchronous().cleanUp();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Surface the loader's own exception to threads that waited on someone else's load
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public record Entry(Long id, String name, String description, BigDecimal price) {
+
+        public static Entry of(Product p) {
+            return new Entry(p.getId(), p.getName(), p.getDescription(), p.getPrice());
+        }
+
+        public Product withStock(StockLevel live) {
+            return new Product(id, name, description, price, live.stock(), live.version());
+        }
+    }
+}
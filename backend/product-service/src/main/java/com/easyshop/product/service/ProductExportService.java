@@ -0,0 +1,55 @@
+package com.easyshop.product.service;
+
+import com.easyshop.product.domain.Product;
+import com.easyshop.product.domain.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes the product catalog as NDJSON (one product per line) straight from a database cursor.
+ * Each row is detached once written, so heap use stays constant for any catalog size.
+ */
+@Service
+public class ProductExportService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ProductRepository repo;
+    private final EntityManager entityManager;
+    private final ObjectWriter writer;
+
+    public ProductExportService(ProductRepository repo, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.repo = repo;
+        this.entityManager = entityManager;
+        this.writer = objectMapper.writerFor(Product.class);
+    }
+
+    /**
+     * Exports every product with an id greater than {@code afterId} in ascending id order.
+     * Clients resume an interrupted export by passing the last id they received.
+     *
+     * @return the number of products written
+     */
+    @Transactional(readOnly = true)
+    public long exportAfter(long afterId, OutputStream target) throws IOException {
+        OutputStream out = new BufferedOutputStream(target, BUFFER_SIZE);
+        long count = 0;
+        try (Stream<Product> products = repo.streamAfter(afterId)) {
+            for (Product p : (Iterable<Product>) products::iterator) {
+                out.write(writer.writeValueAsBytes(p));
+                out.write('\n');
+                entityManager.detach(p);
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+}
@@ -1,29 +1,118 @@
 package com.easyshop.product.service;
 
+import com.easyshop.common.web.metrics.RequestRoutes;
+import com.easyshop.product.domain.CatalogVersion;
+import com.easyshop.product.domain.CatalogVersionRepository;
 import com.easyshop.product.domain.Product;
 import com.easyshop.product.domain.ProductRepository;
+import com.easyshop.product.domain.StockLevel;
+import com.easyshop.product.domain.StockReservation;
+import com.easyshop.product.domain.StockReservationRepository;
 import com.easyshop.product.web.dto.ProductCreateDto;
+import com.easyshop.product.web.dto.ProductPageDto;
 import com.easyshop.product.web.dto.ProductUpdateDto;
+import com.easyshop.product.web.dto.ReserveBatchDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final ProductRepository repo;
+    private final CatalogVersionRepository catalogVersions;
+    private final StockReservationRepository reservations;
+    private final ProductCatalogCache cache;
+    private final StockFeed feed;
+    private final MeterRegistry meterRegistry;
 
-    public ProductService(ProductRepository repo) {
+    public ProductService(ProductRepository repo, CatalogVersionRepository catalogVersions,
+                          StockReservationRepository reservations, ProductCatalogCache cache,
+                          StockFeed feed, ObjectProvider<MeterRegistry> meterRegistry) {
         this.repo = repo;
+        this.catalogVersions = catalogVersions;
+        this.reservations = reservations;
+        this.cache = cache;
+        this.feed = feed;
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
     }
 
-    public List<Product> list() {
-        return repo.findAll().reversed();
+    /**
+     * Returns one keyset page of the catalog, newest first. Only {@code limit + 1} rows are
+     * read per call, so memory stays bounded regardless of catalog size.
+     */
+    @Transactional(readOnly = true)
+    public ProductPageDto list(String cursor, Integer limit, String namePrefix,
+                               BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("minPrice must not exceed maxPrice");
+        }
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+
+        List<Product> rows = repo.findPage(ProductCursor.decode(cursor), toLikePrefix(namePrefix),
+                minPrice, maxPrice, Limit.of(size + 1));
+        if (rows.size() <= size) {
+            return new ProductPageDto(rows, null);
+        }
+        List<Product> items = rows.subList(0, size);
+        return new ProductPageDto(items, ProductCursor.encode(items.getLast().getId()));
     }
 
+    /**
+     * Serves name, description and price from the catalog cache. Stock and version are always
+     * read live, which also tells us whether the product still exists.
+     */
+    @Transactional(readOnly = true)
     public Optional<Product> get(Long id) {
-        return repo.findById(id);
+        Optional<StockLevel> stock = repo.findStockById(id);
+        if (stock.isEmpty()) {
+            cache.evict(id);
+            return Optional.empty();
+        }
+        return cache.get(id, key -> repo.findById(key).map(ProductCatalogCache.Entry::of))
+                .map(e -> e.withStock(stock.get()));
+    }
+
+    /**
+     * Bulk lookup by id for callers that need several products at once (e.g. checkout).
+     * Unknown ids are simply absent from the result.
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getAll(Collection<Long> ids) {
+        Set<Long> unique = new LinkedHashSet<>(ids);
+        if (unique.size() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ids per request");
+        }
+        List<StockLevel> stock = repo.findStockByIdIn(unique);
+        Map<Long, ProductCatalogCache.Entry> catalog = cache.getAll(
+                stock.stream().map(StockLevel::id).toList(),
+                missing -> repo.findAllById(missing).stream()
+                        .collect(Collectors.toMap(Product::getId, ProductCatalogCache.Entry::of)));
+        return stock.stream()
+                .filter(s -> catalog.containsKey(s.id()))
+                .map(s -> catalog.get(s.id()).withStock(s))
+                .toList();
     }
 
     public Product create(ProductCreateDto b) {
@@ -36,13 +125,34 @@ public class ProductService {
         return repo.save(p);
     }
 
-    public Optional<Product> update(Long id, ProductUpdateDto b) {
+    /**
+     * Catalog-wide version that changes whenever a product is created or deleted or has its name,
+     * description or price updated. Stock changes leave it alone. Empty if the database does not
+     * maintain one.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> catalogVersion() {
+        return catalogVersions.findById(CatalogVersion.ID).map(CatalogVersion::getVersion);
+    }
+
+    /**
+     * Updates a product. If {@code expectedVersion} is given and the product has changed since,
+     * fails with {@link VersionMismatchException}; a concurrent update that slips in between the
+     * read and the write is caught by the {@code @Version} check on save.
+     */
+    public Optional<Product> update(Long id, ProductUpdateDto b, Long expectedVersion) {
         return repo.findById(id).map(p -> {
+            if (expectedVersion != null && !expectedVersion.equals(p.getVersion())) {
+                throw new VersionMismatchException();
+            }
             p.setName(b.name());
             p.setDescription(b.description());
             p.setPrice(b.price());
             p.setStock(b.stock());
-            return repo.save(p);
+            Product saved = repo.save(p);
+            cache.evict(id);
+            feed.changed(id);
+            return saved;
         });
     }
 
@@ -51,20 +161,125 @@ public class ProductService {
             return false;
         }
         repo.deleteById(id);
+        cache.evict(id);
+        feed.changed(id);
         return true;
     }
 
+    /**
+     * Reserves stock with a single conditional UPDATE, so concurrent checkouts of the same
+     * product never lose updates or oversell and no row lock is held beyond the statement.
+     * Each call is timed as {@code product.reserve}, tagged with its outcome and route.
+     */
     @Transactional
     public ReserveResult reserve(Long id, int qty) {
-        return repo.findById(id).map(p -> {
-            if (p.getStock() < qty) {
-                return ReserveResult.NOT_ENOUGH_STOCK;
-            }
-            p.setStock(p.getStock() - qty);
-            repo.save(p);
+        if (qty <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            ReserveResult result = decrementStock(id, qty);
+            outcome = result.name().toLowerCase(Locale.ROOT);
+            return result;
+        } finally {
+            sample.stop(Timer.builder("product.reserve")
+                    .description("Stock reservations per product line")
+                    .tag("outcome", outcome)
+                    .tag(RequestRoutes.TAG, RequestRoutes.current())
+                    .register(meterRegistry));
+        }
+    }
+
+    private ReserveResult decrementStock(Long id, int qty) {
+        if (repo.decrementStock(id, qty) == 1) {
+            feed.changed(id);
             return ReserveResult.OK;
-        }).orElse(ReserveResult.NOT_FOUND);
+        }
+        return repo.existsById(id) ? ReserveResult.NOT_ENOUGH_STOCK : ReserveResult.NOT_FOUND;
     }
 
-    public enum ReserveResult { OK, NOT_FOUND, NOT_ENOUGH_STOCK }
+    /**
+     * Reserves every line of a cart in one transaction, all or nothing, and records it under
+     * {@code reservationId} for {@link #release}. Lines for the same product are merged and rows
+     * are updated in ascending id order, so concurrent batches always lock in the same order and
+     * cannot deadlock. If any line fails the whole transaction is rolled back, but every line is
+     * still reported. Repeating a reservation answers OK again without taking more stock; a
+     * reservation that was already released is refused with {@link ReserveResult#RELEASED}.
+     */
+    @Transactional
+    public BatchReserveResult reserveAll(UUID reservationId, List<ReserveBatchDto.Line> lines) {
+        Map<Long, Integer> byProduct = mergeById(lines);
+        Optional<StockReservation> existing = reservations.findById(reservationId);
+        if (existing.isPresent()) {
+            boolean reserved = existing.get().getStatus() == StockReservation.Status.RESERVED;
+            ReserveResult replayed = reserved ? ReserveResult.OK : ReserveResult.RELEASED;
+            return new BatchReserveResult(reserved, byProduct.entrySet().stream()
+                    .map(e -> new LineResult(e.getKey(), e.getValue(), replayed))
+                    .toList());
+        }
+        List<LineResult> results = new ArrayList<>(byProduct.size());
+        boolean ok = true;
+        for (Map.Entry<Long, Integer> e : byProduct.entrySet()) {
+            ReserveResult r = reserve(e.getKey(), e.getValue());
+            ok &= r == ReserveResult.OK;
+            results.add(new LineResult(e.getKey(), e.getValue(), r));
+        }
+        if (ok) {
+            reservations.save(StockReservation.reserved(reservationId, byProduct));
+        } else {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+        return new BatchReserveResult(ok, results);
+    }
+
+    /**
+     * Puts the stock of a reservation back, at most once however often it is called. An unknown
+     * id is recorded as released, so a reserve that arrives after its caller already gave up on
+     * it is refused rather than taking stock nobody will return. Products deleted since are
+     * skipped.
+     */
+    @Transactional
+    public void release(UUID reservationId) {
+        if (reservations.markReleased(reservationId) == 1) {
+            List<StockReservation.Line> lines = reservations.findById(reservationId).orElseThrow().getLines().stream()
+                    .sorted(Comparator.comparing(StockReservation.Line::getProductId))
+                    .toList();
+            for (StockReservation.Line line : lines) {
+                if (repo.incrementStock(line.getProductId(), line.getQty()) == 1) {
+                    feed.changed(line.getProductId());
+                }
+            }
+        } else if (!reservations.existsById(reservationId)) {
+            reservations.save(StockReservation.released(reservationId));
+        }
+    }
+
+    private static Map<Long, Integer> mergeById(List<ReserveBatchDto.Line> lines) {
+        Map<Long, Integer> byProduct = new TreeMap<>();
+        for (ReserveBatchDto.Line line : lines) {
+            byProduct.merge(line.productId(), line.qty(), Integer::sum);
+        }
+        return byProduct;
+    }
+
+    private static String toLikePrefix(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return null;
+        }
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    public static class VersionMismatchException extends RuntimeException {}
+
+    public enum ReserveResult { OK, NOT_FOUND, NOT_ENOUGH_STOCK, RELEASED }
+
+    public record LineResult(Long productId, int qty, ReserveResult result) {}
+
+    public record BatchReserveResult(boolean ok, List<LineResult> lines) {
+
+        public boolean anyNotFound() {
+            return lines.stream().anyMatch(l -> l.result() == ReserveResult.NOT_FOUND);
+        }
+    }
 }
@@ -0,0 +1,394 @@
+package com.easyshop.product.service;
+
+import com.easyshop.product.domain.ProductRepository;
+import com.easyshop.product.domain.StockChange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Live stock and price changes for {@code GET /api/products/stream} (Server-Sent Events).
+ * <p>
+ * Writes only mark a product as changed, once their transaction has committed. Every
+ * {@code coalesce-window} the marked products are read back in one query and their current
+ * state is queued to the subscribers watching them, so a product that changes a hundred times
+ * within a window still costs one row and one event. Subscribers that filter by product id are
+ * indexed by id and never see the rest of the catalog go by.
+ * <p>
+ * An idle subscriber holds no thread and no buffer, just its emitter and a few fields. Events
+ * are written on virtual threads, one per subscriber with something to send, so a slow client
+ * never holds up the others. Its queue keeps only the latest state of each product; once it
+ * holds more than {@code max-pending} products the client is disconnected and is expected to
+ * reconnect and reload, as {@code EventSource} does by itself.
+ * <p>
+ * Only changes made through this instance are seen: the marks are kept in memory and nothing
+ * tells one instance about another's writes. With more than one product-service instance, a
+ * subscriber misses every change that another instance handled, such as the reservations of
+ * checkouts routed there, until it reloads. Run product-service as a single instance while the
+ * stream is in use, or have writes announce themselves across instances first, for example
+ * with PostgreSQL {@code LISTEN}/{@code NOTIFY} feeding {@link #changed}.
+ */
+@Slf4j
+@Component
+public class StockFeed implements AutoCloseable {
+    static final String EVENT_NAME = "stock";
+    private static final int QUERY_CHUNK = 500;
+
+    private final ProductRepository repo;
+    private final ObjectMapper objectMapper;
+    private final Duration coalesceWindow;
+    private final Duration heartbeat;
+    private final Duration timeout;
+    private final int maxPending;
+    private final int maxSubscribers;
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> unfiltered = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Long, Set<Subscriber>> byProduct = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService senders;
+    private final Counter dropped;
+
+    public StockFeed(ProductRepository repo, ObjectMapper objectMapper,
+                     @Value("${product.stream.coalesce-window:250ms}") Duration coalesceWindow,
+                     @Value("${product.stream.heartbeat:30s}") Duration heartbeat,
+                     @Value("${product.stream.timeout:30m}") Duration timeout,
+                     @Value("${product.stream.max-pending:1000}") int maxPending,
+                     @Value("${product.stream.max-subscribers:10000}") int maxSubscribers,
+                     ObjectProvider<MeterRegistry> meterRegistry) {
+        this.repo = repo;
+        this.objectMapper = objectMapper;
+        this.coalesceWindow = coalesceWindow;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+        this.maxPending = maxPending;
+        this.maxSubscribers = maxSubscribers;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stock-feed-send-", 0).factory());
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            Gauge.builder("product.stream.subscribers", subscribers, Set::size)
+                    .description("Open stock change streams")
+                    .register(registry);
+            dropped = Counter.builder("product.stream.dropped")
+                    .description("Stock change streams closed because the client fell behind")
+                    .register(registry);
+        } else {
+            dropped = null;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long window = coalesceWindow.toNanos();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, window, window, TimeUnit.NANOSECONDS);
+        long beat = heartbeat.toNanos();
+        scheduler.scheduleAtFixedRate(this::heartbeat, beat, beat, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Opens a stream of changes to the given products, or to every product if {@code ids} is
+     * null or empty. Changes made before this call are not replayed.
+     */
+    public SseEmitter subscribe(Collection<Long> ids) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribe(ids, emitter);
+        try {
+            // MVC sends the response headers with the first event; without one the client
+            // would not know it is connected until the first change or heartbeat
+            emitter.send(SseEmitter.event().comment("subscribed"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return emitter;
+    }
+
+    void subscribe(Collection<Long> ids, SseEmitter emitter) {
+        if (ids != null && ids.size() > ProductService.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + ProductService.MAX_PAGE_SIZE + " ids per stream");
+        }
+        if (subscribers.size() >= maxSubscribers) {
+            throw new TooManySubscribersException();
+        }
+        Subscriber subscriber = new Subscriber(emitter, ids == null || ids.isEmpty() ? null : Set.copyOf(ids));
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.add(subscriber);
+        if (subscriber.ids == null) {
+            unfiltered.add(subscriber);
+        } else {
+            for (Long id : subscriber.ids) {
+                byProduct.compute(id, (key, watching) -> {
+                    Set<Subscriber> set = watching != null ? watching : ConcurrentHashMap.newKeySet();
+                    set.add(subscriber);
+                    return set;
+                });
+            }
+        }
+    }
+
+    /**
+     * Marks a product as changed. Inside a transaction this takes effect on commit, so rolled
+     * back reservations are never announced.
+     */
+    public void changed(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changed.add(id);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> inTransaction = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (inTransaction == null) {
+            Set<Long> ids = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changed.addAll(ids);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StockFeed.this);
+                }
+            });
+            inTransaction = ids;
+        }
+        inTransaction.add(id);
+    }
+
+    /**
+     * Reads back the products changed since the last flush and queues them to their subscribers.
+     */
+    void flush() {
+        List<Long> ids = new ArrayList<>(changed.size());
+        for (Iterator<Long> it = changed.iterator(); it.hasNext(); ) {
+            Long id = it.next();
+            it.remove();
+            // Nobody watching means nothing to read
+            if (!unfiltered.isEmpty() || byProduct.containsKey(id)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            publish(ids);
+        } catch (RuntimeException e) {
+            changed.addAll(ids);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        // Clients reconnect, possibly to another instance
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        senders.shutdown();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void publish(List<Long> ids) {
+        Set<Subscriber> touched = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += QUERY_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + QUERY_CHUNK, ids.size()));
+            Map<Long, StockChange> found = repo.findChangesByIdIn(chunk).stream()
+                    .collect(Collectors.toMap(StockChange::id, Function.identity()));
+            for (Long id : chunk) {
+                // Serialized once, however many subscribers it goes to
+                String json = toJson(found.getOrDefault(id, StockChange.deleted(id)));
+                offer(unfiltered, id, json, touched);
+                Set<Subscriber> watching = byProduct.get(id);
+                if (watching != null) {
+                    offer(watching, id, json, touched);
+                }
+            }
+        }
+        for (Subscriber subscriber : touched) {
+            subscriber.schedule();
+        }
+    }
+
+    private void offer(Set<Subscriber> to, Long id, String json, Set<Subscriber> touched) {
+        for (Subscriber subscriber : to) {
+            if (subscriber.offer(id, json)) {
+                touched.add(subscriber);
+            } else {
+                drop(subscriber);
+                touched.remove(subscriber);
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            if (dropped != null) {
+                dropped.increment();
+            }
+            log.debug("Closing stock stream that fell {} products behind", maxPending);
+            subscriber.emitter.complete();
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return false;
+        }
+        if (subscriber.ids == null) {
+            unfiltered.remove(subscriber);
+        } else {
+            for (Long id : subscriber.ids) {
+                byProduct.computeIfPresent(id, (key, watching) -> {
+                    watching.remove(subscriber);
+                    return watching.isEmpty() ? null : watching;
+                });
+            }
+        }
+        return true;
+    }
+
+    private void heartbeat() {
+        // Keeps idle connections from being cut by proxies and notices clients that went away
+        for (Subscriber subscriber : subscribers) {
+            subscriber.beat();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Reading stock changes failed, retrying in {}", coalesceWindow, e);
+        }
+    }
+
+    private String toJson(StockChange change) {
+        try {
+            return objectMapper.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class TooManySubscribersException extends RuntimeException {}
+
+    /**
+     * One open stream. Its queue only exists while something is waiting to be sent.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> ids;
+        private Map<Long, String> pending;
+        private boolean heartbeatDue;
+        private boolean sending;
+
+        Subscriber(SseEmitter emitter, Set<Long> ids) {
+            this.emitter = emitter;
+            this.ids = ids;
+        }
+
+        /**
+         * Queues the latest state of a product, replacing any not yet sent; false once the
+         * client is more than {@code max-pending} products behind.
+         */
+        synchronized boolean offer(Long id, String json) {
+            if (pending == null) {
+                pending = new LinkedHashMap<>();
+            }
+            pending.put(id, json);
+            return pending.size() <= maxPending;
+        }
+
+        void beat() {
+            synchronized (this) {
+                heartbeatDue = true;
+            }
+            schedule();
+        }
+
+        void schedule() {
+            synchronized (this) {
+                if (sending || (pending == null && !heartbeatDue)) {
+                    return;
+                }
+                sending = true;
+            }
+            try {
+                senders.execute(this::send);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the stream is being closed anyway
+            }
+        }
+
+        /**
+         * Sends until nothing is queued. Changes queued meanwhile go out together in the next event.
+         */
+        private void send() {
+            while (true) {
+                Collection<String> changes;
+                synchronized (this) {
+                    if (pending == null && !heartbeatDue) {
+                        sending = false;
+                        return;
+                    }
+                    changes = pending == null ? null : pending.values();
+                    pending = null;
+                    heartbeatDue = false;
+                }
+                try {
+                    if (changes != null) {
+                        emitter.send(SseEmitter.event().name(EVENT_NAME).data("[" + String.join(",", changes) + "]"));
+                    } else {
+                        emitter.send(SseEmitter.event().comment(""));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away or the stream was closed; nothing more to send
+                    remove(this);
+                    return;
+                }
+            }
+        }
+    }
+}
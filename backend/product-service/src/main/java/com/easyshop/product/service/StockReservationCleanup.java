@@ -0,0 +1,68 @@
+package com.easyshop.product.service;
+
+import com.easyshop.product.domain.StockReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes stock reservations older than {@code retention}, released or not. By then the checkout
+ * that made them has long finished, so nothing will release or repeat them any more: one that
+ * failed stored its release and purchase-service retries it every few minutes at most, so a
+ * reservation still held this long belongs to a purchase and its stock is sold.
+ */
+@Slf4j
+@Component
+public class StockReservationCleanup implements AutoCloseable {
+
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+
+    private final StockReservationRepository reservations;
+    private final TransactionTemplate transactions;
+    private final Duration retention;
+    private final ScheduledExecutorService scheduler;
+
+    public StockReservationCleanup(StockReservationRepository reservations, TransactionTemplate transactions,
+                                   @Value("${product.reservation.retention:7d}") Duration retention) {
+        this.reservations = reservations;
+        this.transactions = transactions;
+        this.retention = retention;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-reservation-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts deleting expired reservations once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::deleteExpired, 0, CLEANUP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void deleteExpired() {
+        try {
+            Integer deleted = transactions.execute(status -> reservations.deleteCreatedBefore(Instant.now().minus(retention)));
+            log.debug("Deleted {} stock reservations older than {}", deleted, retention);
+        } catch (RuntimeException e) {
+            log.warn("Deleting expired stock reservations failed", e);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.easyshop.product.web;
 
 import com.easyshop.common.web.ApiResponseDto;
+import com.easyshop.product.service.ProductService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -24,6 +26,25 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(new ApiResponseDto(false, msg));
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponseDto> handleBadRequest(IllegalArgumentException ex) {
+        log.warn("Bad request: {}", ex.getMessage());
+        return ResponseEntity.badRequest().body(new ApiResponseDto(false, ex.getMessage()));
+    }
+
+    @ExceptionHandler(ProductService.VersionMismatchException.class)
+    public ResponseEntity<ApiResponseDto> handleVersionMismatch(ProductService.VersionMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new ApiResponseDto(false, "Product has been modified"));
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponseDto> handleConcurrentUpdate(OptimisticLockingFailureException ex) {
+        log.warn("Concurrent update: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDto(false, "Product was modified concurrently"));
+    }
+
     @ExceptionHandler(DataAccessException.class)
     public ResponseEntity<ApiResponseDto> handleDatabase(DataAccessException ex) {
         log.error("Database error", ex);
@@ -2,22 +2,46 @@ package com.easyshop.product.web;
 
 import com.easyshop.common.web.ApiResponseDto;
 import com.easyshop.product.domain.Product;
+import com.easyshop.product.service.ProductExportService;
 import com.easyshop.product.service.ProductService;
+import com.easyshop.product.service.StockFeed;
 import com.easyshop.product.web.dto.ProductCreateDto;
+import com.easyshop.product.web.dto.ProductPageDto;
 import com.easyshop.product.web.dto.ProductUpdateDto;
+import com.easyshop.product.web.dto.ReserveBatchDto;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 import jakarta.validation.*;
 
 @RestController
 public class ProductController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    // Browsers revalidate every time; shared caches (gateway, CDN) may reuse a response for a few seconds
+    private static final CacheControl PUBLIC_READ = CacheControl.maxAge(Duration.ZERO).sMaxAge(Duration.ofSeconds(5));
+
     private final ProductService service;
+    private final ProductExportService exportService;
+    private final StockFeed feed;
 
-    public ProductController(ProductService service) {
+    public ProductController(ProductService service, ProductExportService exportService, StockFeed feed) {
         this.service = service;
+        this.exportService = exportService;
+        this.feed = feed;
     }
 
     @GetMapping("/healthz")
@@ -30,14 +54,87 @@ public class ProductController {
         return new ApiResponseDto(true, null);
     }
 
+    /**
+     * A page's ETag combines the catalog-wide version, which changes with anything that can move
+     * a product onto or off a page, with the sum of the row versions on the page. Every write,
+     * stock included, bumps a row's version, so the tag changes whenever the page body does and a
+     * matching {@code If-None-Match} only saves sending the body.
+     */
     @GetMapping("/api/products")
-    public List<Product> list() {
-        return service.list();
+    public ResponseEntity<ProductPageDto> list(@RequestParam(name = "cursor", required = false) String cursor,
+                                               @RequestParam(name = "limit", required = false) Integer limit,
+                                               @RequestParam(name = "name", required = false) String namePrefix,
+                                               @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+                                               @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+                                               WebRequest request) {
+        ProductPageDto page = service.list(cursor, limit, namePrefix, minPrice, maxPrice);
+        long rowVersions = page.items().stream().mapToLong(Product::getVersion).sum();
+        Optional<String> etag = service.catalogVersion().map(v -> etag("c" + v + "-" + rowVersions));
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(PUBLIC_READ)
+                .body(page);
+    }
+
+    @GetMapping(value = "/api/products", params = "ids")
+    public List<Product> getMany(@RequestParam("ids") List<Long> ids) {
+        return service.getAll(ids);
+    }
+
+    /**
+     * Server-Sent Events carrying the stock and price of products as they change, for the given
+     * {@code ids} or the whole catalog; see {@link StockFeed}. Subscribe before loading the
+     * products to watch so that no change falls in between, and drop events whose
+     * {@code version} is older than what you have. Only changes made on the instance serving the
+     * stream are announced.
+     */
+    @GetMapping(value = "/api/products/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(name = "ids", required = false) List<Long> ids) {
+        try {
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(feed.subscribe(ids));
+        } catch (StockFeed.TooManySubscribersException e) {
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
     }
 
     @GetMapping("/api/products/{id}")
-    public ResponseEntity<?> get(@PathVariable Long id) {
-        return service.get(id).<ResponseEntity<?>>map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<?> get(@PathVariable("id") Long id, WebRequest request) {
+        Optional<Product> product = service.get(id);
+        if (product.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(etag(product.get().getVersion()))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(PUBLIC_READ).body(product.get());
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON in id order. Pass the last id received as
+     * {@code afterId} to resume an interrupted export.
+     */
+    @GetMapping("/api/admin/products/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(name = "afterId", defaultValue = "0") long afterId,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(out -> {
+            if (gzip) {
+                GZIPOutputStream zipped = new GZIPOutputStream(out, 64 * 1024);
+                exportService.exportAfter(afterId, zipped);
+                zipped.finish();
+            } else {
+                exportService.exportAfter(afterId, out);
+            }
+        });
     }
 
     @PostMapping("/api/admin/products")
@@ -46,24 +143,103 @@ public class ProductController {
         return ResponseEntity.status(201).body(p);
     }
 
+    /**
+     * Accepts an optional {@code If-Match} with the ETag the client last saw; the update is
+     * then rejected with 412 if the product has changed since.
+     */
     @PutMapping("/api/admin/products/{id}")
-    public ResponseEntity<?> updateProduct(@PathVariable Long id, @Valid @RequestBody ProductUpdateDto b) {
-        return service.update(id, b)
-                .<ResponseEntity<?>>map(ResponseEntity::ok)
+    public ResponseEntity<?> updateProduct(@PathVariable("id") Long id, @Valid @RequestBody ProductUpdateDto b,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return service.update(id, b, expectedVersion(ifMatch))
+                .<ResponseEntity<?>>map(p -> ResponseEntity.ok().eTag(etag(p.getVersion())).body(p))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/api/admin/products/{id}")
-    public ResponseEntity<?> deleteProduct(@PathVariable Long id) {
+    public ResponseEntity<?> deleteProduct(@PathVariable("id") Long id) {
         return service.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/api/admin/products/{id}/reserve")
-    public ResponseEntity<ApiResponseDto> reserveStock(@PathVariable Long id, @RequestParam int qty) {
+    public ResponseEntity<ApiResponseDto> reserveStock(@PathVariable("id") Long id, @RequestParam("qty") int qty) {
         return switch (service.reserve(id, qty)) {
             case OK -> ResponseEntity.ok(new ApiResponseDto(true, null));
             case NOT_ENOUGH_STOCK -> ResponseEntity.status(409).body(new ApiResponseDto(false, "Not enough stock"));
             case NOT_FOUND -> ResponseEntity.notFound().build();
+            case RELEASED -> ResponseEntity.status(409).body(new ApiResponseDto(false, "Reservation already released"));
         };
     }
+
+    @PostMapping("/api/admin/products/reserve-batch")
+    public ResponseEntity<ProductService.BatchReserveResult> reserveBatch(@Valid @RequestBody ReserveBatchDto b) {
+        ProductService.BatchReserveResult result = service.reserveAll(b.reservationId(), b.items());
+        if (result.ok()) {
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.status(result.anyNotFound() ? 404 : 409).body(result);
+    }
+
+    @PostMapping("/api/admin/products/reservations/{id}/release")
+    public ResponseEntity<Void> releaseReservation(@PathVariable("id") UUID id) {
+        service.release(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static String etag(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip: an explicit {@code gzip} entry
+     * decides, otherwise {@code *} does, and either only with a non-zero {@code q}. A missing or
+     * malformed {@code q} is treated as 1 and 0 respectively, so an odd header gets plain NDJSON.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip")) {
+                gzip = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        Double q = gzip != null ? gzip : any;
+        return q != null && q > 0;
+    }
+
+    /**
+     * Parses the version out of an {@code If-Match} ETag. {@code *} or no header means any
+     * version; anything that is not one of our ETags can never match.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.easyshop.product.web.dto;
+
+import com.easyshop.product.domain.Product;
+
+import java.util.List;
+
+/**
+ * One page of the product catalog. {@code nextCursor} is an opaque token for the
+ * following page, or {@code null} when this is the last one.
+ */
+public record ProductPageDto(List<Product> items, String nextCursor) {
+}
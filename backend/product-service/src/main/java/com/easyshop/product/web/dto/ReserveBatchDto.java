@@ -0,0 +1,16 @@
+package com.easyshop.product.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Request to reserve several products at once, all or nothing. The caller picks a fresh
+ * {@code reservationId} per checkout and releases the stock by it.
+ */
+public record ReserveBatchDto(@NotNull UUID reservationId, @NotEmpty @Size(max = 200) List<@Valid Line> items) {
+
+    public record Line(@NotNull Long productId, @NotNull @Min(1) Integer qty) {}
+}
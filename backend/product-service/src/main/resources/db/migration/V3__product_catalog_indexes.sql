@@ -0,0 +1,7 @@
+-- Indexes backing the keyset-paginated catalog listing (newest first, by id)
+
+-- Prefix search on name regardless of the database collation
+CREATE INDEX IF NOT EXISTS idx_product_name_prefix ON products.product(name varchar_pattern_ops, id);
+
+-- Price range filter combined with the id keyset
+CREATE INDEX IF NOT EXISTS idx_product_price_id ON products.product(price, id);
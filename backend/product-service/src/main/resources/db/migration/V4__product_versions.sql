@@ -0,0 +1,27 @@
+-- Per-product version for optimistic locking and ETags; bumped by every write, including stock updates
+ALTER TABLE products.product ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Catalog-wide version for list ETags
+CREATE TABLE IF NOT EXISTS products.catalog_version (
+  id      SMALLINT PRIMARY KEY CHECK (id = 1),
+  version BIGINT NOT NULL,
+  last_tx BIGINT
+);
+INSERT INTO products.catalog_version(id, version) VALUES (1, 0) ON CONFLICT DO NOTHING;
+
+-- Bumps the catalog version once per writing transaction. The trigger is deferred to commit,
+-- so the row lock is only held for the instant the transaction commits.
+CREATE OR REPLACE FUNCTION products.bump_catalog_version() RETURNS trigger AS $$
+BEGIN
+  UPDATE products.catalog_version
+     SET version = version + 1, last_tx = txid_current()
+   WHERE id = 1 AND last_tx IS DISTINCT FROM txid_current();
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_product_catalog_version ON products.product;
+CREATE CONSTRAINT TRIGGER trg_product_catalog_version
+  AFTER INSERT OR UPDATE OR DELETE ON products.product
+  DEFERRABLE INITIALLY DEFERRED
+  FOR EACH ROW EXECUTE FUNCTION products.bump_catalog_version();
@@ -0,0 +1,15 @@
+-- Stock taken by one checkout, keyed by an id the caller chooses. Releasing goes by that id, so it
+-- happens at most once, and a released id is kept as a tombstone so a late reserve is refused.
+CREATE TABLE IF NOT EXISTS products.stock_reservation (
+  id         UUID PRIMARY KEY,
+  status     VARCHAR(16) NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_created_at ON products.stock_reservation(created_at);
+
+CREATE TABLE IF NOT EXISTS products.stock_reservation_line (
+  reservation_id UUID NOT NULL REFERENCES products.stock_reservation(id) ON DELETE CASCADE,
+  product_id     BIGINT NOT NULL,
+  qty            INT NOT NULL CHECK (qty > 0),
+  PRIMARY KEY (reservation_id, product_id)
+);
@@ -0,0 +1,11 @@
+-- The catalog version now moves only when a product is added, removed or has its name, description
+-- or price changed. Every reservation and release used to bump it too: the deferred trigger then
+-- took the single catalog_version row lock in every checkout's commit and kept it until that commit
+-- finished, serializing checkouts across all products, and changed the list ETag on every purchase.
+-- Stock on list pages is therefore as of the last catalog change; live stock comes from the
+-- product's own ETag or from /api/products/stream.
+DROP TRIGGER IF EXISTS trg_product_catalog_version ON products.product;
+CREATE CONSTRAINT TRIGGER trg_product_catalog_version
+  AFTER INSERT OR DELETE OR UPDATE OF name, description, price ON products.product
+  DEFERRABLE INITIALLY DEFERRED
+  FOR EACH ROW EXECUTE FUNCTION products.bump_catalog_version();
@@ -0,0 +1,146 @@
+package com.easyshop.product.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductCatalogCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProductCatalogCache cache = new ProductCatalogCache(2, Duration.ofMinutes(10),
+            new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadsOnceUntilEvicted() {
+        assertThat(cache.get(1L, this::load)).isPresent();
+        assertThat(cache.get(1L, this::load)).isPresent();
+        assertThat(loads).hasValue(1);
+
+        cache.evict(1L);
+        cache.get(1L, this::load);
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotCacheMissingProducts() {
+        assertThat(cache.get(1L, id -> Optional.empty())).isEmpty();
+        assertThat(cache.get(1L, this::load)).isPresent();
+    }
+
+    @Test
+    void bulkLookupLoadsOnlyMisses() {
+        cache.get(1L, this::load);
+
+        var found = cache.getAll(List.of(1L, 2L, 3L), missing -> {
+            assertThat(missing).containsExactlyInAnyOrder(2L, 3L);
+            return missing.stream().collect(Collectors.toMap(id -> id, id -> entry(id)));
+        });
+
+        assertThat(found).containsOnlyKeys(1L, 2L, 3L);
+    }
+
+    @Test
+    void bulkLookupLeavesOutUnknownIds() {
+        var found = cache.getAll(List.of(1L, 2L), missing -> Map.of(1L, entry(1L)));
+
+        assertThat(found).containsOnlyKeys(1L);
+        assertThat(cache.getAll(List.of(2L), missing -> Map.of())).isEmpty();
+    }
+
+    @Test
+    void loadersRunOnCallingThread() {
+        Thread caller = Thread.currentThread();
+
+        cache.get(1L, id -> {
+            assertThat(Thread.currentThread()).isSameAs(caller);
+            return load(id);
+        });
+        cache.getAll(List.of(2L), missing -> {
+            assertThat(Thread.currentThread()).isSameAs(caller);
+            return Map.of(2L, entry(2L));
+        });
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Optional<ProductCatalogCache.Entry>> first = CompletableFuture.supplyAsync(() ->
+                cache.get(1L, id -> {
+                    loading.countDown();
+                    await(release);
+                    return load(id);
+                }));
+        loading.await(1, TimeUnit.SECONDS);
+
+        CompletableFuture<Optional<ProductCatalogCache.Entry>> second = CompletableFuture.supplyAsync(() ->
+                cache.get(1L, this::load));
+        release.countDown();
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isPresent();
+        assertThat(second.get(1, TimeUnit.SECONDS)).isPresent();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        assertThatThrownBy(() -> cache.get(1L, id -> {
+            throw new IllegalStateException("db down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(1L, this::load)).isPresent();
+    }
+
+    @Test
+    void boundedAndReportsMetrics() {
+        for (long id = 1; id <= 10; id++) {
+            cache.get(id, this::load);
+        }
+        cache.get(10L, this::load);
+        cache.cleanUp();
+
+        assertThat(cache.stats().evictionCount()).isGreaterThanOrEqualTo(8);
+        assertThat(registry.get("cache.gets").tag("cache", "products").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.evictions").tag("cache", "products")
+                .functionCounter().count()).isGreaterThanOrEqualTo(8);
+    }
+
+    private Optional<ProductCatalogCache.Entry> load(Long id) {
+        loads.incrementAndGet();
+        return Optional.of(entry(id));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProductCatalogCache.Entry entry(Long id) {
+        return new ProductCatalogCache.Entry(id, "P" + id, null, BigDecimal.ONE);
+    }
+}
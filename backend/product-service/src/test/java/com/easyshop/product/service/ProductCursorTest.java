@@ -0,0 +1,28 @@
+package com.easyshop.product.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductCursorTest {
+
+    @Test
+    void roundTripsLastId() {
+        assertThat(ProductCursor.decode(ProductCursor.encode(42L))).isEqualTo(42L);
+    }
+
+    @Test
+    void blankCursorMeansFirstPage() {
+        assertThat(ProductCursor.decode(null)).isNull();
+        assertThat(ProductCursor.decode("")).isNull();
+    }
+
+    @Test
+    void rejectsForeignTokens() {
+        assertThatThrownBy(() -> ProductCursor.decode("not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductCursor.decode(ProductCursor.encode(1L) + "x"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.easyshop.product.service;
+
+import com.easyshop.product.domain.Product;
+import com.easyshop.product.domain.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers a single hot product from many threads and checks that the atomic
+ * reservation never oversells. Not transactional: every reservation must commit.
+ * Throughput is measured by {@code ProductReserveBenchmark}.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.cloud.config.import-check.enabled=false",
+        "spring.config.import=",
+        "spring.flyway.enabled=false"
+})
+@Import({ProductService.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductReserveConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 100;
+    private static final int INITIAL_STOCK = 1_000;
+
+    @Autowired
+    private ProductService service;
+
+    @Autowired
+    private ProductRepository repo;
+
+    @MockBean
+    private StockFeed feed;
+
+    @AfterEach
+    void cleanUp() {
+        repo.deleteAll();
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        Product hot = repo.save(Product.builder()
+                .name("Hot")
+                .price(BigDecimal.TEN)
+                .stock(INITIAL_STOCK)
+                .build());
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    switch (service.reserve(hot.getId(), 1)) {
+                        case OK -> ok.incrementAndGet();
+                        case NOT_ENOUGH_STOCK -> rejected.incrementAndGet();
+                        case NOT_FOUND -> throw new IllegalStateException("Product vanished");
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        assertThat(ok.get()).isEqualTo(INITIAL_STOCK);
+        assertThat(rejected.get()).isEqualTo(attempts - INITIAL_STOCK);
+        assertThat(repo.findById(hot.getId()).orElseThrow().getStock()).isZero();
+    }
+}
@@ -2,15 +2,23 @@ package com.easyshop.product.service;
 
 import com.easyshop.product.domain.Product;
 import com.easyshop.product.domain.ProductRepository;
+import com.easyshop.product.web.dto.ProductUpdateDto;
+import com.easyshop.product.web.dto.ReserveBatchDto;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest(properties = {
         "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
@@ -24,9 +32,15 @@ class ProductServiceTest {
     @Autowired
     private ProductService service;
 
+    @Autowired
+    private ProductExportService exportService;
+
     @Autowired
     private ProductRepository repo;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void reserveProductSuccessfully() {
         Product p = repo.save(Product.builder()
@@ -55,6 +69,169 @@ class ProductServiceTest {
         assertThat(repo.findById(p.getId()).orElseThrow().getStock()).isEqualTo(2);
     }
 
+    @Test
+    void reserveIsTimedByOutcome() {
+        Product p = repo.save(Product.builder().name("Timed").price(BigDecimal.ONE).stock(1).build());
+
+        service.reserve(p.getId(), 1);
+        service.reserve(p.getId(), 1);
+        service.reserve(-1L, 1);
+
+        assertThat(meterRegistry.get("product.reserve").tag("outcome", "ok").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("product.reserve").tag("outcome", "not_enough_stock").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("product.reserve").tag("outcome", "not_found").tag("route", "none").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("spring.data.repository.invocations").tag("repository", "ProductRepository")
+                .tag("method", "decrementStock").tag("route", "none").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void reserveAllMergesLinesAndReservesInIdOrder() {
+        Product a = repo.save(Product.builder().name("A").price(BigDecimal.ONE).stock(5).build());
+        Product b = repo.save(Product.builder().name("B").price(BigDecimal.ONE).stock(5).build());
+
+        var result = service.reserveAll(UUID.randomUUID(), List.of(
+                new ReserveBatchDto.Line(b.getId(), 2),
+                new ReserveBatchDto.Line(a.getId(), 1),
+                new ReserveBatchDto.Line(b.getId(), 1)));
+
+        assertThat(result.ok()).isTrue();
+        assertThat(result.lines()).extracting(ProductService.LineResult::productId)
+                .containsExactly(a.getId(), b.getId());
+        assertThat(repo.findById(a.getId()).orElseThrow().getStock()).isEqualTo(4);
+        assertThat(repo.findById(b.getId()).orElseThrow().getStock()).isEqualTo(2);
+    }
+
+    @Test
+    void reserveAllReportsEveryFailingLine() {
+        Product a = repo.save(Product.builder().name("A").price(BigDecimal.ONE).stock(1).build());
+
+        var result = service.reserveAll(UUID.randomUUID(), List.of(
+                new ReserveBatchDto.Line(a.getId(), 2),
+                new ReserveBatchDto.Line(999L, 1)));
+
+        assertThat(result.ok()).isFalse();
+        assertThat(result.anyNotFound()).isTrue();
+        assertThat(result.lines()).extracting(ProductService.LineResult::result)
+                .containsExactly(ProductService.ReserveResult.NOT_ENOUGH_STOCK, ProductService.ReserveResult.NOT_FOUND);
+    }
+
+    @Test
+    void repeatedReservationTakesStockOnce() {
+        Product a = repo.save(Product.builder().name("A").price(BigDecimal.ONE).stock(5).build());
+        UUID reservation = UUID.randomUUID();
+
+        service.reserveAll(reservation, List.of(new ReserveBatchDto.Line(a.getId(), 2)));
+        var repeated = service.reserveAll(reservation, List.of(new ReserveBatchDto.Line(a.getId(), 2)));
+
+        assertThat(repeated.ok()).isTrue();
+        assertThat(repo.findById(a.getId()).orElseThrow().getStock()).isEqualTo(3);
+    }
+
+    @Test
+    void releasePutsStockBackOnce() {
+        Product a = repo.save(Product.builder().name("A").price(BigDecimal.ONE).stock(5).build());
+        UUID reservation = UUID.randomUUID();
+        service.reserveAll(reservation, List.of(new ReserveBatchDto.Line(a.getId(), 3)));
+
+        service.release(reservation);
+        service.release(reservation);
+
+        assertThat(repo.findById(a.getId()).orElseThrow().getStock()).isEqualTo(5);
+    }
+
+    @Test
+    void reservationArrivingAfterItsReleaseIsRefused() {
+        Product a = repo.save(Product.builder().name("A").price(BigDecimal.ONE).stock(5).build());
+        UUID reservation = UUID.randomUUID();
+
+        service.release(reservation);
+        var result = service.reserveAll(reservation, List.of(new ReserveBatchDto.Line(a.getId(), 3)));
+
+        assertThat(result.ok()).isFalse();
+        assertThat(result.lines()).extracting(ProductService.LineResult::result)
+                .containsExactly(ProductService.ReserveResult.RELEASED);
+        assertThat(repo.findById(a.getId()).orElseThrow().getStock()).isEqualTo(5);
+    }
+
+    @Test
+    void listWalksCatalogWithCursorAndFilters() {
+        for (int i = 0; i < 5; i++) {
+            repo.save(Product.builder()
+                    .name((i % 2 == 0 ? "Phone " : "Laptop ") + i)
+                    .price(BigDecimal.valueOf(10L * (i + 1)))
+                    .stock(1)
+                    .build());
+        }
+
+        var first = service.list(null, 2, "Phone", null, null);
+        assertThat(first.items()).extracting(Product::getName).containsExactly("Phone 4", "Phone 2");
+        assertThat(first.nextCursor()).isNotNull();
+
+        var second = service.list(first.nextCursor(), 2, "Phone", null, null);
+        assertThat(second.items()).extracting(Product::getName).containsExactly("Phone 0");
+        assertThat(second.nextCursor()).isNull();
+
+        var priced = service.list(null, 10, null, BigDecimal.valueOf(20), BigDecimal.valueOf(30));
+        assertThat(priced.items()).extracting(Product::getName).containsExactly("Phone 2", "Laptop 1");
+    }
+
+    @Test
+    void exportWritesNdjsonAndResumesAfterId() throws Exception {
+        Product first = repo.save(Product.builder().name("A").price(BigDecimal.ONE).stock(1).build());
+        Product second = repo.save(Product.builder().name("B").price(BigDecimal.TEN).stock(2).build());
+
+        var all = new ByteArrayOutputStream();
+        assertThat(exportService.exportAfter(0, all)).isEqualTo(2);
+        assertThat(all.toString(StandardCharsets.UTF_8).split("\n"))
+                .hasSize(2)
+                .allSatisfy(line -> assertThat(line).startsWith("{").endsWith("}"));
+
+        var resumed = new ByteArrayOutputStream();
+        assertThat(exportService.exportAfter(first.getId(), resumed)).isEqualTo(1);
+        assertThat(resumed.toString(StandardCharsets.UTF_8)).contains("\"id\":" + second.getId()).endsWith("\n");
+    }
+
+    @Test
+    void getServesCachedCatalogWithLiveStock() {
+        Product p = repo.save(Product.builder()
+                .name("Cached")
+                .description("desc")
+                .price(BigDecimal.TEN)
+                .stock(5)
+                .build());
+        assertThat(service.get(p.getId())).isPresent();
+
+        service.reserve(p.getId(), 2);
+        service.update(p.getId(), new ProductUpdateDto("Renamed", "desc", BigDecimal.ONE, 3), null);
+
+        Product fetched = service.get(p.getId()).orElseThrow();
+        assertThat(fetched.getName()).isEqualTo("Renamed");
+        assertThat(fetched.getStock()).isEqualTo(3);
+        assertThat(service.getAll(List.of(p.getId()))).extracting(Product::getStock).containsExactly(3);
+
+        service.delete(p.getId());
+        assertThat(service.get(p.getId())).isEmpty();
+    }
+
+    @Test
+    void stockChangesBumpVersionAndStaleUpdatesAreRejected() {
+        Product p = repo.save(Product.builder()
+                .name("Versioned")
+                .description("desc")
+                .price(BigDecimal.TEN)
+                .stock(5)
+                .build());
+        long seen = service.get(p.getId()).orElseThrow().getVersion();
+
+        service.reserve(p.getId(), 1);
+
+        assertThat(service.get(p.getId()).orElseThrow().getVersion()).isGreaterThan(seen);
+        assertThatThrownBy(() -> service.update(p.getId(),
+                new ProductUpdateDto("Versioned", "desc", BigDecimal.ONE, 4), seen))
+                .isInstanceOf(ProductService.VersionMismatchException.class);
+    }
+
     @Test
     void reserveFailsWhenProductNotFound() {
         var result = service.reserve(999L, 1);
@@ -0,0 +1,257 @@
+package com.easyshop.product.service;
+
+import com.easyshop.product.domain.ProductRepository;
+import com.easyshop.product.domain.StockChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockFeedTest {
+
+    private final Map<Long, StockChange> products = new ConcurrentHashMap<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ProductRepository repo;
+    private StockFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(ProductRepository.class);
+        when(repo.findChangesByIdIn(anyCollection())).thenAnswer(inv -> inv.<Collection<Long>>getArgument(0).stream()
+                .filter(products::containsKey)
+                .map(products::get)
+                .collect(Collectors.toList()));
+        feed = new StockFeed(repo, new ObjectMapper(), Duration.ofMinutes(1), Duration.ofMinutes(1),
+                Duration.ofMinutes(30), 2, 3,
+                new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class));
+        product(1, 5);
+        product(2, 7);
+        product(3, 9);
+        product(4, 11);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        feed.close();
+    }
+
+    @Test
+    void changesWithinAWindowGoOutAsOneEventWithTheLatestState() throws InterruptedException {
+        RecordingEmitter all = subscribe(null);
+
+        feed.changed(1L);
+        feed.changed(2L);
+        product(1, 4);
+        feed.changed(1L);
+        feed.flush();
+
+        assertThat(all.next()).isEqualTo("event:stock\ndata:["
+                + "{\"id\":1,\"stock\":4,\"price\":9.99,\"version\":6,\"deleted\":false},"
+                + "{\"id\":2,\"stock\":7,\"price\":9.99,\"version\":7,\"deleted\":false}]\n\n");
+        verify(repo, times(1)).findChangesByIdIn(anyCollection());
+    }
+
+    @Test
+    void filteredSubscribersOnlySeeTheirProducts() throws InterruptedException {
+        RecordingEmitter one = subscribe(List.of(1L));
+        RecordingEmitter two = subscribe(List.of(2L, 3L));
+
+        feed.changed(1L);
+        feed.changed(3L);
+        feed.flush();
+
+        assertThat(one.next()).contains("\"id\":1,").doesNotContain("\"id\":3,");
+        assertThat(two.next()).contains("\"id\":3,").doesNotContain("\"id\":1,");
+    }
+
+    @Test
+    void nothingIsReadWhileNobodyWatches() {
+        subscribe(List.of(2L));
+
+        feed.changed(1L);
+        feed.flush();
+
+        verify(repo, never()).findChangesByIdIn(anyCollection());
+    }
+
+    @Test
+    void deletedProductsAreAnnounced() throws InterruptedException {
+        RecordingEmitter all = subscribe(null);
+        products.remove(3L);
+
+        feed.changed(3L);
+        feed.flush();
+
+        assertThat(all.next()).contains("{\"id\":3,\"stock\":null,\"price\":null,\"version\":null,\"deleted\":true}");
+    }
+
+    @Test
+    void changesInsideATransactionArePublishedOnCommitOnly() throws InterruptedException {
+        RecordingEmitter all = subscribe(null);
+
+        List<TransactionSynchronization> rolledBack = inTransaction(() -> feed.changed(1L));
+        rolledBack.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        feed.flush();
+        verify(repo, never()).findChangesByIdIn(anyCollection());
+
+        List<TransactionSynchronization> committed = inTransaction(() -> {
+            feed.changed(2L);
+            feed.changed(3L);
+        });
+        assertThat(committed).hasSize(1);
+        feed.flush();
+        verify(repo, never()).findChangesByIdIn(anyCollection());
+
+        committed.forEach(s -> {
+            s.afterCommit();
+            s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        });
+        feed.flush();
+        assertThat(all.next()).contains("\"id\":2,", "\"id\":3,").doesNotContain("\"id\":1,");
+    }
+
+    @Test
+    void slowSubscriberIsDisconnectedWithoutHoldingUpOthers() throws InterruptedException {
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter slow = subscribe(null, unblock);
+        RecordingEmitter fast = subscribe(null);
+
+        for (long id = 1; id <= 4; id++) {
+            feed.changed(id);
+            feed.flush();
+            assertThat(fast.next()).contains("\"id\":" + id + ",");
+            // The first event is stuck in the slow client's send; the rest queue up until there are too many
+            if (id == 1) {
+                assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+
+        assertThat(slow.completed).isTrue();
+        assertThat(fast.completed).isFalse();
+        assertThat(registry.get("product.stream.dropped").counter().count()).isEqualTo(1);
+        assertThat(registry.get("product.stream.subscribers").gauge().value()).isEqualTo(1);
+        unblock.countDown();
+    }
+
+    @Test
+    void rejectsSubscribersBeyondTheLimit() {
+        subscribe(null);
+        subscribe(List.of(1L));
+        subscribe(List.of(2L));
+
+        assertThatThrownBy(() -> subscribe(null)).isInstanceOf(StockFeed.TooManySubscribersException.class);
+    }
+
+    @Test
+    void closedStreamsAreForgotten() {
+        RecordingEmitter one = subscribe(List.of(1L));
+        one.completeByClient();
+
+        feed.changed(1L);
+        feed.flush();
+
+        verify(repo, never()).findChangesByIdIn(anyCollection());
+        assertThat(registry.get("product.stream.subscribers").gauge().value()).isZero();
+    }
+
+    private void product(long id, int stock) {
+        long version = products.containsKey(id) ? products.get(id).version() + 1 : stock;
+        products.put(id, new StockChange(id, stock, new BigDecimal("9.99"), version));
+    }
+
+    private RecordingEmitter subscribe(List<Long> ids) {
+        return subscribe(ids, null);
+    }
+
+    private RecordingEmitter subscribe(List<Long> ids, CountDownLatch blockUntil) {
+        RecordingEmitter emitter = new RecordingEmitter(blockUntil);
+        feed.subscribe(ids, emitter);
+        return emitter;
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Records what would be written to the client; with a latch, every send blocks on it like a
+     * client that stopped reading.
+     */
+    static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch blockUntil;
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final List<Runnable> completionCallbacks = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        RecordingEmitter(CountDownLatch blockUntil) {
+            this.blockUntil = blockUntil;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            if (blockUntil != null) {
+                try {
+                    blockUntil.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            sent.add(builder.build().stream().map(d -> d.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            completionCallbacks.add(callback);
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        void completeByClient() {
+            completionCallbacks.forEach(Runnable::run);
+        }
+
+        String next() throws InterruptedException {
+            return sent.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
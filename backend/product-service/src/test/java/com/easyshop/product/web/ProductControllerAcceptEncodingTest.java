@@ -0,0 +1,26 @@
+package com.easyshop.product.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductControllerAcceptEncodingTest {
+
+    @Test
+    void gzipsWhenTheClientAcceptsIt() {
+        assertThat(ProductController.acceptsGzip("gzip")).isTrue();
+        assertThat(ProductController.acceptsGzip("deflate, GZIP;q=0.5, br")).isTrue();
+        assertThat(ProductController.acceptsGzip("br;q=1.0, *;q=0.1")).isTrue();
+    }
+
+    @Test
+    void doesNotGzipWhenTheClientRefusesIt() {
+        assertThat(ProductController.acceptsGzip(null)).isFalse();
+        assertThat(ProductController.acceptsGzip("identity")).isFalse();
+        assertThat(ProductController.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(ProductController.acceptsGzip("gzip; q=0.000, *")).isFalse();
+        assertThat(ProductController.acceptsGzip("*;q=0")).isFalse();
+        assertThat(ProductController.acceptsGzip("gzip;q=high")).isFalse();
+        assertThat(ProductController.acceptsGzip("x-gzipped")).isFalse();
+    }
+}
@@ -1,7 +1,11 @@
 package com.easyshop.product.web;
 
 import com.easyshop.product.config.ProductSecurityConfig;
+import com.easyshop.product.domain.Product;
+import com.easyshop.product.service.ProductExportService;
 import com.easyshop.product.service.ProductService;
+import com.easyshop.product.service.StockFeed;
+import com.easyshop.product.web.dto.ProductPageDto;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,11 +14,27 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = ProductController.class,
@@ -28,6 +48,12 @@ class ProductControllerTest {
     @MockBean
     private ProductService service;
 
+    @MockBean
+    private ProductExportService exportService;
+
+    @MockBean
+    private StockFeed feed;
+
     @Test
     void healthEndpointWorks() throws Exception {
         mvc.perform(get("/healthz"))
@@ -41,7 +67,107 @@ class ProductControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.ok").value(true));
     }
-  
+
+    @Test
+    void listReturnsPageWithCursor() throws Exception {
+        Product p = Product.builder().id(5L).name("Phone").price(BigDecimal.TEN).stock(1).version(1L).build();
+        when(service.list("abc", 1, "Ph", null, null)).thenReturn(new ProductPageDto(List.of(p), "next"));
+
+        mvc.perform(get("/api/products")
+                        .param("cursor", "abc")
+                        .param("limit", "1")
+                        .param("name", "Ph"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(5))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void getManyLooksUpAllIdsAtOnce() throws Exception {
+        Product a = Product.builder().id(1L).name("A").price(BigDecimal.ONE).stock(1).build();
+        Product b = Product.builder().id(2L).name("B").price(BigDecimal.TEN).stock(3).build();
+        when(service.getAll(List.of(1L, 2L))).thenReturn(List.of(a, b));
+
+        mvc.perform(get("/api/products").param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].stock").value(3));
+    }
+
+    @Test
+    void streamSubscribesToTheRequestedProducts() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(SseEmitter.event().comment("subscribed"));
+        when(feed.subscribe(List.of(1L, 2L))).thenReturn(emitter);
+
+        mvc.perform(get("/api/products/stream").param("ids", "1,2").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"));
+    }
+
+    @Test
+    void streamIsRefusedWhenTheFeedIsFull() throws Exception {
+        when(feed.subscribe(any())).thenThrow(new StockFeed.TooManySubscribersException());
+
+        mvc.perform(get("/api/products/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void listRejectsInvalidCursor() throws Exception {
+        when(service.list("bogus", null, null, null, null)).thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mvc.perform(get("/api/products").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid cursor"));
+    }
+
+    @Test
+    void listETagFollowsTheStockOnThePage() throws Exception {
+        Product phone = Product.builder().id(5L).name("Phone").price(BigDecimal.TEN).stock(3).version(3L).build();
+        Product case_ = Product.builder().id(4L).name("Case").price(BigDecimal.ONE).stock(9).version(2L).build();
+        when(service.catalogVersion()).thenReturn(Optional.of(7L));
+        when(service.list(null, null, null, null, null)).thenReturn(new ProductPageDto(List.of(phone, case_), null));
+
+        mvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, "\"c7-5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c7-5\""));
+
+        // A checkout took one phone: same catalog version, new row version
+        phone.setStock(2);
+        phone.setVersion(4L);
+        mvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, "\"c7-5\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"c7-6\""))
+                .andExpect(jsonPath("$.items[0].stock").value(2));
+    }
+
+    @Test
+    void getSendsVersionAsETag() throws Exception {
+        Product p = Product.builder().id(5L).name("Phone").price(BigDecimal.TEN).stock(1).version(3L).build();
+        when(service.get(5L)).thenReturn(Optional.of(p));
+
+        mvc.perform(get("/api/products/5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.name").value("Phone"));
+        mvc.perform(get("/api/products/5").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void updateRejectsStaleIfMatch() throws Exception {
+        when(service.update(eq(5L), any(), eq(2L))).thenThrow(new ProductService.VersionMismatchException());
+
+        mvc.perform(put("/api/admin/products/5")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Phone\",\"price\":10,\"stock\":1}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void reserveProductSuccessfully() throws Exception {
         when(service.reserve(1L, 2)).thenReturn(ProductService.ReserveResult.OK);
@@ -68,4 +194,37 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.ok").value(false))
                 .andExpect(jsonPath("$.message").value("Not enough stock"));
     }
+
+    @Test
+    void reserveBatchReturnsPerLineResults() throws Exception {
+        when(service.reserveAll(any(), anyList())).thenReturn(new ProductService.BatchReserveResult(false, List.of(
+                new ProductService.LineResult(1L, 2, ProductService.ReserveResult.OK),
+                new ProductService.LineResult(2L, 5, ProductService.ReserveResult.NOT_ENOUGH_STOCK))));
+
+        mvc.perform(post("/api/admin/products/reserve-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"reservationId\":\"" + UUID.randomUUID() + "\","
+                                + "\"items\":[{\"productId\":1,\"qty\":2},{\"productId\":2,\"qty\":5}]}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.ok").value(false))
+                .andExpect(jsonPath("$.lines[1].result").value("NOT_ENOUGH_STOCK"));
+    }
+
+    @Test
+    void releaseGoesByReservationId() throws Exception {
+        UUID reservation = UUID.randomUUID();
+
+        mvc.perform(post("/api/admin/products/reservations/{id}/release", reservation))
+                .andExpect(status().isNoContent());
+
+        verify(service).release(reservation);
+    }
+
+    @Test
+    void reserveBatchRejectsEmptyCart() throws Exception {
+        mvc.perform(post("/api/admin/products/reserve-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"reservationId\":\"" + UUID.randomUUID() + "\",\"items\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
 }
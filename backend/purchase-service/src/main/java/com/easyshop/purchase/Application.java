@@ -2,9 +2,11 @@ package com.easyshop.purchase;
 
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.*;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 
 @SpringBootApplication
+@EnableAsync
 @EnableFeignClients
 public class Application {
     public static void main(String[] a) {
@@ -0,0 +1,17 @@
+package com.easyshop.purchase.client;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a client method that is always called with purchase-service's own client-credentials
+ * token, never with the buyer's, because the endpoint only admits purchase-service.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AsService {
+}
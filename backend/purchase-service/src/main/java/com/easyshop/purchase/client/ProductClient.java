@@ -3,14 +3,43 @@ package com.easyshop.purchase.client;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
 
-@FeignClient(name = "product-service", url = "${product.service.url}")
+@FeignClient(name = "product-service", url = "${product.service.url}", configuration = ProductClientConfig.class)
 public interface ProductClient {
     
     @GetMapping("/api/products/{id}")
     ProductInfo getProduct(@PathVariable("id") Long id);
+
+    /**
+     * Looks up several products in one round trip. Unknown ids are left out of the result.
+     */
+    @GetMapping("/api/products")
+    List<ProductInfo> getProducts(@RequestParam("ids") Collection<Long> ids);
+
+    /**
+     * Reserves stock for a whole cart, all or nothing, under the request's reservation id.
+     * Answers 409 when some line lacks stock or the reservation was already released, and 404
+     * when some product does not exist. Repeating a reservation takes no more stock.
+     */
+    @AsService
+    @PostMapping("/api/admin/products/reserve-batch")
+    ReservationResult reserve(@RequestBody ReservationRequest request);
+
+    /**
+     * Puts stock taken by {@link #reserve} back, at most once however often it is called. An id
+     * that was never reserved is remembered as released, so a reserve still in flight is refused.
+     */
+    @AsService
+    @PostMapping("/api/admin/products/reservations/{id}/release")
+    void release(@PathVariable("id") UUID reservationId);
     
     record ProductInfo(
         Long id,
@@ -19,4 +48,14 @@ public interface ProductClient {
         BigDecimal price,
         Integer stock
     ) {}
+
+    record ReservationRequest(UUID reservationId, List<Line> items) {
+
+        public record Line(Long productId, Integer qty) {}
+    }
+
+    record ReservationResult(boolean ok, List<LineResult> lines) {
+
+        public record LineResult(Long productId, int qty, String result) {}
+    }
 }
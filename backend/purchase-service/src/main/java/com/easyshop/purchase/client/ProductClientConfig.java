@@ -0,0 +1,73 @@
+package com.easyshop.purchase.client;
+
+import com.easyshop.common.web.TraceIdFilter;
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.Response;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Feign configuration private to {@link ProductClient}. Deliberately not a
+ * {@code @Configuration}: it is only loaded into the client's own Feign context.
+ */
+public class ProductClientConfig {
+
+    @Bean
+    public ProductClientResilience productClientResilience(
+            @Value("${product.client.connect-timeout:1s}") String connectTimeout,
+            @Value("${product.client.read-timeout:2s}") String readTimeout,
+            @Value("${product.client.reservation-read-timeout:5s}") String reservationReadTimeout,
+            @Value("${product.client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${product.client.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${product.client.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${product.client.circuit-breaker.open-duration:10s}") String openDuration,
+            @Value("${product.client.bulkhead.max-concurrent-calls:25}") int maxConcurrentCalls,
+            @Value("${product.client.bulkhead.max-wait:100ms}") String maxWait) {
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("product-service", CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(duration(openDuration))
+                .permittedNumberOfCallsInHalfOpenState(3)
+                .recordResult(r -> r instanceof Response response && response.status() >= 500)
+                .build());
+        Bulkhead bulkhead = Bulkhead.of("product-service", BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(duration(maxWait))
+                .build());
+
+        Request.Options reads = new Request.Options(duration(connectTimeout), duration(readTimeout), true);
+        // Reservations lock stock rows on the other side, so they get more time than lookups
+        Request.Options reservations = new Request.Options(duration(connectTimeout), duration(reservationReadTimeout), true);
+        return new ProductClientResilience(circuitBreaker, bulkhead, reads,
+                Map.of("reserve", reservations, "release", reservations));
+    }
+
+    /**
+     * Passes the trace id on, so product-service logs and exemplars carry the same one.
+     */
+    @Bean
+    public RequestInterceptor traceIdForwardingInterceptor() {
+        return template -> {
+            String traceId = MDC.get(TraceIdFilter.TRACE_ID_KEY);
+            if (traceId != null) {
+                template.header(TraceIdFilter.TRACE_ID_HEADER, traceId);
+            }
+        };
+    }
+
+    // The client's Feign context has no conversion service, so durations arrive as plain strings
+    private static Duration duration(String value) {
+        return DurationStyle.detectAndParse(value);
+    }
+}
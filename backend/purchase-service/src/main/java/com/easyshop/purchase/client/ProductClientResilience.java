@@ -0,0 +1,85 @@
+package com.easyshop.purchase.client;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guards every call {@link ProductClient} makes. Each request first needs a permit from the
+ * circuit breaker, so an open circuit fails at once with {@code CallNotPermittedException},
+ * then a slot in the bulkhead, which caps how many threads can be blocked on product-service
+ * at the same time. Timeouts are chosen per interface method.
+ * <p>
+ * The guard runs on the calling thread, so the security context the bearer token interceptor
+ * reads and the MDC trace id stay in place. Transport errors, timeouts and 5xx answers count
+ * as failures; 4xx answers are normal business outcomes and count as successes.
+ */
+@Slf4j
+public class ProductClientResilience implements Capability {
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Request.Options defaultOptions;
+    private final Map<String, Request.Options> methodOptions;
+
+    public ProductClientResilience(CircuitBreaker circuitBreaker, Bulkhead bulkhead,
+                                   Request.Options defaultOptions, Map<String, Request.Options> methodOptions) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.defaultOptions = defaultOptions;
+        this.methodOptions = Map.copyOf(methodOptions);
+        circuitBreaker.getEventPublisher().onStateTransition(e ->
+                log.warn("Circuit breaker {}: {}", e.getCircuitBreakerName(), e.getStateTransition()));
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Bulkhead bulkhead() {
+        return bulkhead;
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, ignored) -> execute(client, request, optionsFor(request));
+    }
+
+    private Response execute(Client client, Request request, Request.Options options) throws IOException {
+        circuitBreaker.acquirePermission();
+        try {
+            bulkhead.acquirePermission();
+        } catch (BulkheadFullException e) {
+            circuitBreaker.releasePermission();
+            throw e;
+        }
+        long start = System.nanoTime();
+        try {
+            Response response = client.execute(request, options);
+            circuitBreaker.onResult(System.nanoTime() - start, TimeUnit.NANOSECONDS, response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            throw e;
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    private Request.Options optionsFor(Request request) {
+        if (request.requestTemplate() == null || request.requestTemplate().methodMetadata() == null) {
+            return defaultOptions;
+        }
+        String method = request.requestTemplate().methodMetadata().method().getName();
+        return methodOptions.getOrDefault(method, defaultOptions);
+    }
+}
@@ -1,28 +1,89 @@
 package com.easyshop.purchase.config;
 
+import com.easyshop.common.web.security.CachingClientCredentialsAuthorizedClientManager;
+import com.easyshop.common.web.security.ClientCredentialsTokenManager;
+import com.easyshop.purchase.client.AsService;
+import feign.MethodMetadata;
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.endpoint.DefaultClientCredentialsTokenResponseClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 
+import java.time.Duration;
+
 @Configuration
 public class OAuth2FeignConfig {
 
+    /**
+     * Forwards the caller's bearer token. Calls made outside a user request, such as background
+     * or batch work, and calls to methods marked {@link AsService} carry purchase-service's own
+     * client-credentials token instead.
+     */
     @Bean
-    public RequestInterceptor oauth2FeignRequestInterceptor() {
+    public RequestInterceptor oauth2FeignRequestInterceptor(
+            OAuth2AuthorizedClientManager authorizedClientManager,
+            @Value("${product.client.registration-id:purchase-service}") String registrationId) {
+        OAuth2AuthorizeRequest serviceRequest = OAuth2AuthorizeRequest.withClientRegistrationId(registrationId)
+                .principal(registrationId)
+                .build();
         return new RequestInterceptor() {
             @Override
             public void apply(RequestTemplate template) {
                 Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-                if (authentication instanceof JwtAuthenticationToken jwt) {
-                    String token = jwt.getToken().getTokenValue();
-                    template.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
-                }
+                String token = authentication instanceof JwtAuthenticationToken jwt && !asService(template)
+                        ? jwt.getToken().getTokenValue()
+                        : authorizedClientManager.authorize(serviceRequest).getAccessToken().getTokenValue();
+                template.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
             }
         };
     }
+
+    private static boolean asService(RequestTemplate template) {
+        MethodMetadata metadata = template.methodMetadata();
+        return metadata != null && metadata.method().isAnnotationPresent(AsService.class);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ClientCredentialsTokenManager clientCredentialsTokenManager(
+            @Value("${security.oauth2.client.refresh-ahead:60s}") Duration refreshAhead) {
+        return new ClientCredentialsTokenManager(new DefaultClientCredentialsTokenResponseClient(), refreshAhead);
+    }
+
+    /**
+     * Service tokens are cached and renewed in the background before they expire.
+     */
+    @Bean
+    public OAuth2AuthorizedClientManager authorizedClientManager(
+            ClientRegistrationRepository clientRegistrationRepository, ClientCredentialsTokenManager tokens) {
+        return new CachingClientCredentialsAuthorizedClientManager(clientRegistrationRepository, tokens);
+    }
+
+    /**
+     * Fetches the service token at startup so that no call waits for the first one.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> serviceTokenPrefetch(
+            ObjectProvider<ClientRegistrationRepository> clientRegistrationRepository,
+            ClientCredentialsTokenManager tokens,
+            @Value("${product.client.registration-id:purchase-service}") String registrationId) {
+        return event -> clientRegistrationRepository.ifAvailable(registrations -> {
+            ClientRegistration registration = registrations.findByRegistrationId(registrationId);
+            if (registration != null) {
+                tokens.getToken(registration);
+            }
+        });
+    }
 }
@@ -0,0 +1,37 @@
+package com.easyshop.purchase.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.*;
+
+/**
+ * A checkout sent with an {@code Idempotency-Key}. {@code response} stays null while the
+ * checkout is in flight; see {@code CheckoutIdempotency}.
+ */
+@Entity
+@Table(name = "checkout_request", uniqueConstraints = @UniqueConstraint(
+        name = "uq_checkout_request_key", columnNames = {"user_email", "idempotency_key"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CheckoutRequest {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "checkout_request_seq")
+    @SequenceGenerator(name = "checkout_request_seq", sequenceName = "checkout_request_seq", allocationSize = 50)
+    Long id;
+    @Column(nullable = false)
+    String userEmail;
+    @Column(nullable = false)
+    String idempotencyKey;
+    @Column(nullable = false, length = 64)
+    String requestHash;
+    Long purchaseId;
+    @Column(columnDefinition = "text")
+    String response;
+    @Column(nullable = false)
+    @Builder.Default
+    Instant createdAt = Instant.now();
+}
@@ -0,0 +1,32 @@
+package com.easyshop.purchase.domain;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface CheckoutRequestRepository extends JpaRepository<CheckoutRequest, Long> {
+
+    Optional<CheckoutRequest> findByUserEmailAndIdempotencyKey(String userEmail, String idempotencyKey);
+
+    /**
+     * Stores the response of a claimed checkout; called in the transaction that creates the purchase.
+     */
+    @Modifying
+    @Query("update CheckoutRequest r set r.purchaseId = :purchaseId, r.response = :response where r.id = :id")
+    int complete(@Param("id") Long id, @Param("purchaseId") Long purchaseId, @Param("response") String response);
+
+    /**
+     * Gives up a claim that never got a response, so the key can be claimed again.
+     */
+    @Modifying
+    @Query("delete from CheckoutRequest r where r.id = :id and r.response is null and r.createdAt < :before")
+    int releasePending(@Param("id") Long id, @Param("before") Instant before);
+
+    @Modifying
+    @Query("delete from CheckoutRequest r where r.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,39 @@
+package com.easyshop.purchase.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.*;
+
+/**
+ * An event waiting in the transactional outbox to be published; see {@code OutboxRelay}.
+ */
+@Entity
+@Table(name = "outbox_event")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    Long id;
+    @Column(nullable = false)
+    Long purchaseId;
+    @Column(nullable = false)
+    String type;
+    @Column(nullable = false, columnDefinition = "text")
+    String payload;
+    @Column(nullable = false)
+    @Builder.Default
+    Instant createdAt = Instant.now();
+    /** Failed attempts to publish the event on its own. */
+    @Column(nullable = false)
+    int attempts;
+    /** Not relayed before this time after a failed attempt; null when due. */
+    Instant retryAt;
+    /** Set once the event has failed too many times; parked events are no longer relayed. */
+    Instant parkedAt;
+}
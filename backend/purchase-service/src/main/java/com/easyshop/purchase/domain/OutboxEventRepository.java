@@ -0,0 +1,33 @@
+package com.easyshop.purchase.domain;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Oldest unpublished events that are due and not parked, locked until the transaction ends.
+     * Oldest means by creation time: ids come from a pooled sequence, each instance handing out
+     * its own block of them, so they are not in creation order across instances. Rows another relay has
+     * locked are skipped rather than waited for (a lock timeout of -2 is Hibernate's
+     * {@code SKIP LOCKED}), so several instances can relay at once without blocking each other.
+     * Databases without it, such as H2, wait for the lock instead.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            select e from OutboxEvent e
+            where e.parkedAt is null and (e.retryAt is null or e.retryAt <= :now)
+            order by e.createdAt, e.id
+            """)
+    List<OutboxEvent> findNextBatch(@Param("now") Instant now, Limit limit);
+}
@@ -0,0 +1,31 @@
+package com.easyshop.purchase.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.*;
+import java.util.UUID;
+
+/**
+ * A stock reservation whose release failed and is being retried; see {@code StockReleases}.
+ */
+@Entity
+@Table(name = "pending_release")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PendingRelease {
+    @Id
+    UUID reservationId;
+    /** Failed attempts to release the reservation. */
+    @Column(nullable = false)
+    int attempts;
+    /** Not retried before this time. */
+    @Column(nullable = false)
+    Instant retryAt;
+    @Column(nullable = false)
+    @Builder.Default
+    Instant createdAt = Instant.now();
+}
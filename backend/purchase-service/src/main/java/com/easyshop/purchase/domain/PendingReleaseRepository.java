@@ -0,0 +1,30 @@
+package com.easyshop.purchase.domain;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface PendingReleaseRepository extends JpaRepository<PendingRelease, UUID> {
+
+    /**
+     * Releases due for another attempt, longest due first, locked until the transaction ends.
+     * Rows another instance has locked are skipped, as in {@link OutboxEventRepository#findNextBatch}.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            select r from PendingRelease r
+            where r.retryAt <= :now
+            order by r.retryAt
+            """)
+    List<PendingRelease> findDue(@Param("now") Instant now, Limit limit);
+}
@@ -16,7 +16,8 @@ import java.util.*;
 @Builder
 public class Purchase {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_seq")
+    @SequenceGenerator(name = "purchase_seq", sequenceName = "purchase_seq", allocationSize = 50)
     Long id;
     @Column(nullable = false)
     String userEmail;
@@ -27,7 +28,7 @@ public class Purchase {
     @Column(nullable = false)
     @Builder.Default
     Instant createdAt = Instant.now();
-    @OneToMany(mappedBy = "purchase", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "purchase", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @Builder.Default
     List<PurchaseItem> items = new ArrayList<>();
 }
@@ -14,7 +14,8 @@ import java.math.*;
 @Builder
 public class PurchaseItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_item_seq")
+    @SequenceGenerator(name = "purchase_item_seq", sequenceName = "purchase_item_seq", allocationSize = 50)
     Long id;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "purchase_id")
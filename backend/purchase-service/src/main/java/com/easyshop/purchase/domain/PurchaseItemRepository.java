@@ -1,6 +1,22 @@
 package com.easyshop.purchase.domain;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface PurchaseItemRepository extends JpaRepository<PurchaseItem, Long> {
+
+    /**
+     * Items of several purchases in one query, for rendering a page of purchase history.
+     */
+    @Query("""
+            select new com.easyshop.purchase.domain.PurchaseItemRow(i.purchase.id, i.productId, i.name, i.price, i.quantity)
+            from PurchaseItem i
+            where i.purchase.id in :purchaseIds
+            order by i.id
+            """)
+    List<PurchaseItemRow> findRowsByPurchaseIds(@Param("purchaseIds") Collection<Long> purchaseIds);
 }
@@ -0,0 +1,9 @@
+package com.easyshop.purchase.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only projection of a purchase item, tagged with the purchase it belongs to.
+ */
+public record PurchaseItemRow(Long purchaseId, Long productId, String name, BigDecimal price, Integer quantity) {
+}
@@ -1,9 +1,38 @@
 package com.easyshop.purchase.domain;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
-    List<Purchase> findByUserEmailOrderByCreatedAtDesc(String email);
+
+    /**
+     * First page of a user's purchase history, newest first.
+     */
+    @Query("""
+            select new com.easyshop.purchase.domain.PurchaseSummary(p.id, p.total, p.status, p.createdAt)
+            from Purchase p
+            where p.userEmail = :email
+            order by p.createdAt desc, p.id desc
+            """)
+    List<PurchaseSummary> findHistory(@Param("email") String email, Limit limit);
+
+    /**
+     * Next page of a user's purchase history, continuing after the (createdAt, id) keyset.
+     */
+    @Query("""
+            select new com.easyshop.purchase.domain.PurchaseSummary(p.id, p.total, p.status, p.createdAt)
+            from Purchase p
+            where p.userEmail = :email
+              and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))
+            order by p.createdAt desc, p.id desc
+            """)
+    List<PurchaseSummary> findHistoryBefore(@Param("email") String email,
+                                            @Param("createdAt") Instant createdAt,
+                                            @Param("id") Long id,
+                                            Limit limit);
 }
@@ -0,0 +1,10 @@
+package com.easyshop.purchase.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Read-only projection of a purchase header, without its items.
+ */
+public record PurchaseSummary(Long id, BigDecimal total, String status, Instant createdAt) {
+}
@@ -0,0 +1,34 @@
+package com.easyshop.purchase.outbox;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Broker stand-in that delivers each batch to subscribers in this JVM, on the relay's thread.
+ * A subscriber that throws fails the batch, which is then delivered again to every subscriber.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.outbox.broker", havingValue = "in-process", matchIfMissing = true)
+public class InProcessPurchaseEventBroker implements PurchaseEventPublisher {
+
+    private final List<Consumer<List<PurchaseEvent>>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a consumer of event batches; closing the returned handle unsubscribes it.
+     */
+    public AutoCloseable subscribe(Consumer<List<PurchaseEvent>> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void publish(List<PurchaseEvent> events) {
+        for (Consumer<List<PurchaseEvent>> subscriber : subscribers) {
+            subscriber.accept(events);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.easyshop.purchase.outbox;
+
+import com.easyshop.purchase.domain.OutboxEvent;
+import com.easyshop.purchase.domain.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes outbox events in batches, oldest first, on a single background thread. Each batch
+ * is locked, handed to the {@link PurchaseEventPublisher} and deleted in one transaction, so an
+ * event is deleted only after it was published: a crash or a failed commit in between means it
+ * is published again (at-least-once delivery). Checkouts wake the relay when they commit
+ * ({@link #nudge}), after a short {@code linger} so that under load one batch carries the
+ * events of many checkouts instead of each paying for its own relay transaction; the
+ * {@code poll-interval} run picks up anything else, such as events left behind by another
+ * instance or a failed publish.
+ * <p>
+ * When a batch fails, its events are published one at a time, so that one event the broker
+ * keeps refusing does not hold up the others. An event that fails on its own is retried after
+ * {@code retry-backoff}, doubled with every attempt, and parked after {@code max-attempts}:
+ * it stays in the outbox, no longer relayed, until an operator re-queues it. If every event
+ * of the batch fails, even a batch of one, the broker is taken to be down and nothing is
+ * counted against them; an event is only counted when it fails next to one that went through.
+ */
+@Slf4j
+@Component
+public class OutboxRelay implements AutoCloseable {
+
+    private final OutboxEventRepository outbox;
+    private final PurchaseEventPublisher publisher;
+    private final TransactionTemplate transactions;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration linger;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean nudged = new AtomicBoolean();
+    private final Counter published;
+    private final Counter failures;
+    private final Counter parked;
+    private final Timer lag;
+
+    public OutboxRelay(OutboxEventRepository outbox, PurchaseEventPublisher publisher, TransactionTemplate transactions,
+                       @Value("${purchase.outbox.batch-size:100}") int batchSize,
+                       @Value("${purchase.outbox.poll-interval:1s}") Duration pollInterval,
+                       @Value("${purchase.outbox.linger:20ms}") Duration linger,
+                       @Value("${purchase.outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${purchase.outbox.retry-backoff:1s}") Duration retryBackoff,
+                       ObjectProvider<MeterRegistry> meterRegistry) {
+        this.outbox = outbox;
+        this.publisher = publisher;
+        this.transactions = transactions;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.linger = linger;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            published = Counter.builder("purchase.outbox.published")
+                    .description("Outbox events handed to the broker")
+                    .register(registry);
+            failures = Counter.builder("purchase.outbox.failures")
+                    .description("Outbox batches that failed to publish and will be retried")
+                    .register(registry);
+            parked = Counter.builder("purchase.outbox.parked")
+                    .description("Outbox events parked after failing to publish max-attempts times")
+                    .register(registry);
+            lag = Timer.builder("purchase.outbox.lag")
+                    .description("Time from writing an outbox event to publishing it")
+                    .register(registry);
+        } else {
+            published = null;
+            failures = null;
+            parked = null;
+            lag = null;
+        }
+    }
+
+    /**
+     * Starts polling once the application is ready, first draining whatever earlier runs left.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::drainQuietly, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Asks for a drain {@code linger} from now; nudges arriving until it starts are coalesced.
+     */
+    public void nudge() {
+        if (nudged.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(() -> {
+                    nudged.set(false);
+                    drainQuietly();
+                }, linger.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the next start drains the outbox
+                nudged.set(false);
+            }
+        }
+    }
+
+    /**
+     * Publishes batches until the outbox is empty and answers how many events were published.
+     */
+    public int drain() {
+        int total = 0;
+        int relayed;
+        do {
+            relayed = relayBatch();
+            total += relayed;
+        } while (relayed == batchSize);
+        return total;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch;
+        try {
+            batch = transactions.execute(status -> {
+                List<OutboxEvent> events = outbox.findNextBatch(Instant.now(), Limit.of(batchSize));
+                if (!events.isEmpty()) {
+                    publisher.publish(events.stream().map(PurchaseEvent::of).toList());
+                    outbox.deleteAllInBatch(events);
+                }
+                return events;
+            });
+        } catch (RuntimeException e) {
+            batch = relayOneByOne(e);
+        }
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        if (published != null) {
+            published.increment(batch.size());
+            Instant now = Instant.now();
+            for (OutboxEvent event : batch) {
+                lag.record(Duration.between(event.getCreatedAt(), now));
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * Publishes the next batch one event at a time after it failed as a whole, and answers the
+     * events that were published. Rethrows {@code batchFailure} when none was.
+     */
+    private List<OutboxEvent> relayOneByOne(RuntimeException batchFailure) {
+        return transactions.execute(status -> {
+            List<OutboxEvent> events = outbox.findNextBatch(Instant.now(), Limit.of(batchSize));
+            List<OutboxEvent> published = new ArrayList<>();
+            Map<OutboxEvent, RuntimeException> failed = new LinkedHashMap<>();
+            for (OutboxEvent event : events) {
+                try {
+                    publisher.publish(List.of(PurchaseEvent.of(event)));
+                    published.add(event);
+                } catch (RuntimeException e) {
+                    failed.put(event, e);
+                }
+            }
+            if (published.isEmpty() && !failed.isEmpty()) {
+                throw batchFailure;
+            }
+            Instant now = Instant.now();
+            failed.forEach((event, failure) -> {
+                event.setAttempts(event.getAttempts() + 1);
+                if (event.getAttempts() >= maxAttempts) {
+                    event.setParkedAt(now);
+                    if (parked != null) {
+                        parked.increment();
+                    }
+                    log.error("Parked outbox event {} ({} of purchase {}) after {} failed attempts",
+                            event.getId(), event.getType(), event.getPurchaseId(), event.getAttempts(), failure);
+                } else {
+                    Duration backoff = retryBackoff.multipliedBy(1L << (event.getAttempts() - 1));
+                    event.setRetryAt(now.plus(backoff));
+                    log.warn("Publishing outbox event {} failed (attempt {} of {}), retrying in {}",
+                            event.getId(), event.getAttempts(), maxAttempts, backoff, failure);
+                }
+            });
+            outbox.saveAll(failed.keySet());
+            if (!published.isEmpty()) {
+                outbox.deleteAllInBatch(published);
+            }
+            return published;
+        });
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            if (failures != null) {
+                failures.increment();
+            }
+            log.warn("Publishing outbox events failed, retrying in {}", pollInterval, e);
+        }
+    }
+}
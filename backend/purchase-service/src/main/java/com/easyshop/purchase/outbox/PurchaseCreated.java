@@ -0,0 +1,14 @@
+package com.easyshop.purchase.outbox;
+
+import com.easyshop.purchase.web.dto.PurchaseItemDto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Payload of a {@value PurchaseEventOutbox#PURCHASE_CREATED} event.
+ */
+public record PurchaseCreated(Long purchaseId, String userEmail, BigDecimal total, String status,
+                              Instant createdAt, List<PurchaseItemDto> items) {
+}
@@ -0,0 +1,19 @@
+package com.easyshop.purchase.outbox;
+
+import com.easyshop.purchase.domain.OutboxEvent;
+
+import java.time.Instant;
+
+/**
+ * An event as handed to consumers. Delivery is at least once, so consumers should skip an
+ * {@code id} they have already processed.
+ *
+ * @param payload the event body as JSON, e.g. a {@link PurchaseCreated}
+ */
+public record PurchaseEvent(long id, String type, long purchaseId, Instant createdAt, String payload) {
+
+    static PurchaseEvent of(OutboxEvent event) {
+        return new PurchaseEvent(event.getId(), event.getType(), event.getPurchaseId(), event.getCreatedAt(),
+                event.getPayload());
+    }
+}
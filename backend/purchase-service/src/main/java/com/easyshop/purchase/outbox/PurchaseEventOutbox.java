@@ -0,0 +1,56 @@
+package com.easyshop.purchase.outbox;
+
+import com.easyshop.purchase.domain.OutboxEvent;
+import com.easyshop.purchase.domain.OutboxEventRepository;
+import com.easyshop.purchase.domain.Purchase;
+import com.easyshop.purchase.web.dto.PurchaseItemDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Records purchase events in the outbox table. Must be called inside the transaction that
+ * writes the purchase, so the event is committed exactly when the purchase is; once it
+ * commits, the relay is woken up instead of waiting for its next poll.
+ */
+@Component
+public class PurchaseEventOutbox {
+
+    public static final String PURCHASE_CREATED = "PurchaseCreated";
+
+    private final OutboxEventRepository outbox;
+    private final ObjectMapper objectMapper;
+    private final OutboxRelay relay;
+
+    public PurchaseEventOutbox(OutboxEventRepository outbox, ObjectMapper objectMapper, OutboxRelay relay) {
+        this.outbox = outbox;
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+    }
+
+    public void purchaseCreated(Purchase purchase, List<PurchaseItemDto> items) {
+        PurchaseCreated payload = new PurchaseCreated(purchase.getId(), purchase.getUserEmail(), purchase.getTotal(),
+                purchase.getStatus(), purchase.getCreatedAt(), items);
+        try {
+            outbox.save(OutboxEvent.builder()
+                    .purchaseId(purchase.getId())
+                    .type(PURCHASE_CREATED)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + PURCHASE_CREATED + " event", e);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relay.nudge();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.easyshop.purchase.outbox;
+
+import java.util.List;
+
+/**
+ * Where {@link OutboxRelay} hands events to. An implementation must not return before the
+ * batch is safely with the broker: once it returns the events are deleted from the outbox,
+ * and if it throws the whole batch is offered again later.
+ */
+public interface PurchaseEventPublisher {
+
+    void publish(List<PurchaseEvent> events);
+}
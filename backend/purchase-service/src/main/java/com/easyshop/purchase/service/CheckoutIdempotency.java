@@ -0,0 +1,343 @@
+package com.easyshop.purchase.service;
+
+import com.easyshop.purchase.domain.CheckoutRequest;
+import com.easyshop.purchase.domain.CheckoutRequestRepository;
+import com.easyshop.purchase.web.dto.CheckoutDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Runs each checkout sent with an {@code Idempotency-Key} at most once per user and answers
+ * repeats with the stored response.
+ * <p>
+ * Duplicates reaching this instance while the first attempt is in flight wait for its outcome,
+ * success or failure, instead of running in parallel, and successful responses stay in memory
+ * for {@code hot-window} so quick retries skip the database. Across instances the unique
+ * (user, key) row decides: it is claimed before any product-service call, receives the response
+ * in the transaction that creates the purchase and is released when the checkout fails, so a
+ * failed attempt can be retried with the same key. Reusing a key for a different cart is
+ * rejected. Rows are deleted after {@code retention}.
+ */
+@Slf4j
+@Component
+public class CheckoutIdempotency implements AutoCloseable {
+
+    public static final int MAX_KEY_LENGTH = 255;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+
+    private final CheckoutRequestRepository requests;
+    private final TransactionTemplate transactions;
+    private final ObjectMapper objectMapper;
+    private final Duration waitTimeout;
+    private final Duration claimTimeout;
+    private final long hotWindowNanos;
+    private final int hotWindowSize;
+    private final Duration retention;
+    private final Map<Key, Attempt> attempts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter joined;
+
+    public CheckoutIdempotency(CheckoutRequestRepository requests, TransactionTemplate transactions,
+                               ObjectMapper objectMapper,
+                               @Value("${purchase.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                               @Value("${purchase.idempotency.claim-timeout:1m}") Duration claimTimeout,
+                               @Value("${purchase.idempotency.hot-window:2m}") Duration hotWindow,
+                               @Value("${purchase.idempotency.hot-window-size:10000}") int hotWindowSize,
+                               @Value("${purchase.idempotency.retention:24h}") Duration retention,
+                               ObjectProvider<MeterRegistry> meterRegistry) {
+        this.requests = requests;
+        this.transactions = transactions;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+        this.claimTimeout = claimTimeout;
+        this.hotWindowNanos = hotWindow.toNanos();
+        this.hotWindowSize = hotWindowSize;
+        this.retention = retention;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkout-request-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            executed = checkouts(registry, "executed");
+            replayed = checkouts(registry, "replayed");
+            joined = checkouts(registry, "joined");
+        } else {
+            executed = null;
+            replayed = null;
+            joined = null;
+        }
+    }
+
+    /**
+     * Identifies the claimed row to {@link #complete} from the checkout transaction.
+     */
+    public record Claim(long id) {
+    }
+
+    /**
+     * Answers the response of the first checkout with this key, running {@code checkout} only
+     * if there is none yet.
+     */
+    public PurchaseResponseDto checkout(String email, String idempotencyKey, CheckoutDto dto,
+                                        Function<Claim, PurchaseResponseDto> checkout) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = fingerprint(dto);
+        Key key = new Key(email, idempotencyKey);
+        Attempt attempt = new Attempt(requestHash);
+        Attempt current;
+        while ((current = attempts.putIfAbsent(key, attempt)) != null) {
+            if (!current.isExpired(System.nanoTime(), hotWindowNanos)) {
+                return join(current, requestHash);
+            }
+            attempts.remove(key, current);
+        }
+        try {
+            PurchaseResponseDto response = claimAndRun(email, idempotencyKey, requestHash, checkout);
+            attempt.completedAt = System.nanoTime();
+            attempt.response.complete(response);
+            trim();
+            return response;
+        } catch (RuntimeException e) {
+            attempts.remove(key, attempt);
+            attempt.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stores the response with the claim; must run in the transaction that creates the purchase.
+     */
+    public void complete(Claim claim, PurchaseResponseDto response) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize checkout response", e);
+        }
+        if (requests.complete(claim.id(), response.id(), json) == 0) {
+            // Released as abandoned and claimed again elsewhere; roll back rather than buy twice
+            throw new CheckoutInProgressException();
+        }
+    }
+
+    /**
+     * Starts deleting expired rows once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::deleteExpired, 0, CLEANUP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private PurchaseResponseDto join(Attempt attempt, String requestHash) {
+        if (!attempt.requestHash.equals(requestHash)) {
+            throw new IdempotencyKeyReusedException();
+        }
+        increment(attempt.response.isDone() ? replayed : joined);
+        try {
+            return attempt.response.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new CheckoutInProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CheckoutInProgressException();
+        }
+    }
+
+    private PurchaseResponseDto claimAndRun(String email, String idempotencyKey, String requestHash,
+                                            Function<Claim, PurchaseResponseDto> checkout) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            Optional<CheckoutRequest> stored = requests.findByUserEmailAndIdempotencyKey(email, idempotencyKey);
+            if (stored.isEmpty()) {
+                Long id = claim(email, idempotencyKey, requestHash);
+                if (id != null) {
+                    return run(id, checkout);
+                }
+                // Another instance claimed it first; read its row
+                continue;
+            }
+            CheckoutRequest request = stored.get();
+            if (!request.getRequestHash().equals(requestHash)) {
+                throw new IdempotencyKeyReusedException();
+            }
+            if (request.getResponse() != null) {
+                increment(replayed);
+                return read(request.getResponse());
+            }
+            // In flight on another instance, or left behind by one that stopped mid-checkout
+            if (request.getCreatedAt().isBefore(Instant.now().minus(claimTimeout)) && releaseAbandoned(request)) {
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new CheckoutInProgressException();
+            }
+            sleep();
+        }
+    }
+
+    private Long claim(String email, String idempotencyKey, String requestHash) {
+        try {
+            return transactions.execute(status -> requests.saveAndFlush(CheckoutRequest.builder()
+                    .userEmail(email)
+                    .idempotencyKey(idempotencyKey)
+                    .requestHash(requestHash)
+                    .build()).getId());
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    private PurchaseResponseDto run(long id, Function<Claim, PurchaseResponseDto> checkout) {
+        increment(executed);
+        try {
+            return checkout.apply(new Claim(id));
+        } catch (RuntimeException e) {
+            try {
+                transactions.executeWithoutResult(status -> requests.deleteById(id));
+            } catch (RuntimeException releaseFailure) {
+                log.warn("Failed to release checkout claim {}; the key is blocked for {}", id, claimTimeout, releaseFailure);
+            }
+            throw e;
+        }
+    }
+
+    private boolean releaseAbandoned(CheckoutRequest request) {
+        Integer released = transactions.execute(status ->
+                requests.releasePending(request.getId(), Instant.now().minus(claimTimeout)));
+        if (released != null && released > 0) {
+            log.warn("Released checkout claim {} abandoned since {}", request.getId(), request.getCreatedAt());
+            return true;
+        }
+        return false;
+    }
+
+    private PurchaseResponseDto read(String json) {
+        try {
+            return objectMapper.readValue(json, PurchaseResponseDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored checkout response", e);
+        }
+    }
+
+    private void trim() {
+        if (attempts.size() <= hotWindowSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        attempts.values().removeIf(a -> a.isExpired(now, hotWindowNanos));
+        if (attempts.size() > hotWindowSize) {
+            // Still over capacity; repeats of these are answered from the database instead
+            attempts.values().removeIf(a -> a.response.isDone());
+        }
+    }
+
+    private void deleteExpired() {
+        try {
+            Integer deleted = transactions.execute(status -> requests.deleteCreatedBefore(Instant.now().minus(retention)));
+            log.debug("Deleted {} checkout requests older than {}", deleted, retention);
+        } catch (RuntimeException e) {
+            log.warn("Deleting expired checkout requests failed", e);
+        }
+    }
+
+    private void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CheckoutInProgressException();
+        }
+    }
+
+    // The cart, so a key reused for a different one is told apart from a retry
+    static String fingerprint(CheckoutDto dto) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            for (CheckoutDto.Item item : dto.items()) {
+                sha256.update((item.productId() + "x" + item.quantity() + ";").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter checkouts(MeterRegistry registry, String result) {
+        return Counter.builder("purchase.checkout.idempotent")
+                .description("Checkouts sent with an Idempotency-Key")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private record Key(String email, String idempotencyKey) {
+    }
+
+    private static final class Attempt {
+        final String requestHash;
+        final CompletableFuture<PurchaseResponseDto> response = new CompletableFuture<>();
+        volatile long completedAt;
+
+        Attempt(String requestHash) {
+            this.requestHash = requestHash;
+        }
+
+        boolean isExpired(long now, long windowNanos) {
+            return response.isDone() && now - completedAt > windowNanos;
+        }
+    }
+
+    public static class IdempotencyKeyReusedException extends RuntimeException {}
+    public static class CheckoutInProgressException extends RuntimeException {}
+}
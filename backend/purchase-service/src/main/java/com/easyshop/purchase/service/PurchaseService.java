@@ -4,101 +4,274 @@ import com.easyshop.purchase.client.ProductClient;
 import com.easyshop.purchase.domain.Purchase;
 import com.easyshop.purchase.domain.PurchaseItem;
 import com.easyshop.purchase.domain.PurchaseItemRepository;
+import com.easyshop.purchase.domain.PurchaseItemRow;
 import com.easyshop.purchase.domain.PurchaseRepository;
+import com.easyshop.purchase.domain.PurchaseSummary;
+import com.easyshop.purchase.outbox.PurchaseEventOutbox;
 import com.easyshop.purchase.web.dto.CheckoutDto;
 import com.easyshop.purchase.web.dto.PurchaseItemDto;
+import com.easyshop.purchase.web.dto.PurchasePageDto;
 import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import feign.FeignException;
+import feign.codec.DecodeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class PurchaseService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    // Well below the product client's bulkhead (25 calls), so one large cart cannot fill it and
+    // have its own lookups, or everyone else's, rejected
+    private static final int MAX_PARALLEL_LOOKUPS = 8;
+
     private final PurchaseRepository purchases;
     private final PurchaseItemRepository items;
     private final ProductClient productClient;
+    private final TransactionTemplate transactions;
+    private final PurchaseEventOutbox events;
+    private final CheckoutIdempotency idempotency;
+    private final StockReleases releases;
 
-    public PurchaseService(PurchaseRepository purchases, PurchaseItemRepository items, ProductClient productClient) {
+    public PurchaseService(PurchaseRepository purchases, PurchaseItemRepository items,
+                           ProductClient productClient, TransactionTemplate transactions,
+                           PurchaseEventOutbox events, CheckoutIdempotency idempotency, StockReleases releases) {
         this.purchases = purchases;
         this.items = items;
         this.productClient = productClient;
+        this.transactions = transactions;
+        this.events = events;
+        this.idempotency = idempotency;
+        this.releases = releases;
     }
 
-    public List<PurchaseResponseDto> list(String email) {
-        return purchases.findByUserEmailOrderByCreatedAtDesc(email).stream()
+    /**
+     * Returns one keyset page of the user's purchase history, newest first. Reads the page's
+     * purchase headers and then all of their items in a single query, so the cost is two
+     * round trips per page however many purchases it holds.
+     */
+    @Transactional(readOnly = true)
+    public PurchasePageDto list(String email, String cursor, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        PurchaseCursor.Position after = PurchaseCursor.decode(cursor);
+
+        List<PurchaseSummary> rows = after == null
+                ? purchases.findHistory(email, Limit.of(size + 1))
+                : purchases.findHistoryBefore(email, after.createdAt(), after.id(), Limit.of(size + 1));
+        List<PurchaseSummary> page = rows.size() > size ? rows.subList(0, size) : rows;
+        if (page.isEmpty()) {
+            return new PurchasePageDto(List.of(), null);
+        }
+
+        Map<Long, List<PurchaseItemDto>> itemsByPurchase = items
+                .findRowsByPurchaseIds(page.stream().map(PurchaseSummary::id).toList()).stream()
+                .collect(Collectors.groupingBy(PurchaseItemRow::purchaseId, Collectors.mapping(
+                        i -> new PurchaseItemDto(i.productId(), i.name(), i.price(), i.quantity()),
+                        Collectors.toList())));
+
+        List<PurchaseResponseDto> dtos = page.stream()
                 .map(p -> new PurchaseResponseDto(
-                        p.getId(),
-                        p.getTotal(),
-                        p.getStatus(),
-                        p.getItems().stream()
-                                .map(i -> new PurchaseItemDto(
-                                        i.getProductId(),
-                                        i.getName(),
-                                        i.getPrice(),
-                                        i.getQuantity()
-                                ))
-                                .toList()
+                        p.id(),
+                        p.total(),
+                        p.status(),
+                        itemsByPurchase.getOrDefault(p.id(), List.of())
                 ))
                 .toList();
+        PurchaseSummary last = page.getLast();
+        String next = rows.size() > size ? PurchaseCursor.encode(last.createdAt(), last.id()) : null;
+        return new PurchasePageDto(dtos, next);
     }
 
-    @Transactional
+    /**
+     * Prices the cart, reserves its stock with one call to product-service and then persists
+     * the purchase. The remote calls run before the database transaction starts, so no
+     * connection is held while waiting on them. If persisting fails the reservation is released,
+     * through {@link StockReleases} so that a release product-service refuses is retried later.
+     * The {@code PurchaseCreated} event is written to the outbox in the same transaction and
+     * published to consumers in the background.
+     */
     public PurchaseResponseDto checkout(CheckoutDto dto, String email) {
+        return runCheckout(dto, email, null);
+    }
+
+    /**
+     * {@link #checkout(CheckoutDto, String)} at most once per {@code idempotencyKey}: a repeat
+     * gets the stored response without calling product-service, and a concurrent duplicate
+     * waits for the checkout in flight. A null key checks out unconditionally.
+     */
+    public PurchaseResponseDto checkout(CheckoutDto dto, String email, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return checkout(dto, email);
+        }
+        return idempotency.checkout(email, idempotencyKey, dto, claim -> runCheckout(dto, email, claim));
+    }
+
+    private PurchaseResponseDto runCheckout(CheckoutDto dto, String email, CheckoutIdempotency.Claim claim) {
         List<PurchaseItemDto> det = new ArrayList<>();
         BigDecimal total = BigDecimal.ZERO;
+        Map<Long, ProductClient.ProductInfo> catalog = fetchProducts(dto.items());
 
         for (CheckoutDto.Item item : dto.items()) {
-            try {
-                ProductClient.ProductInfo productInfo = productClient.getProduct(item.productId());
+            ProductClient.ProductInfo productInfo = catalog.get(item.productId());
+            if (productInfo == null) {
+                throw new ProductNotFoundException();
+            }
+            // Cheap early rejection; the reservation below is what actually guarantees stock
+            if (productInfo.stock() < item.quantity()) {
+                throw new StockNotAvailableException();
+            }
 
-                if (productInfo.stock() < item.quantity()) {
-                    throw new StockNotAvailableException();
-                }
+            BigDecimal itemTotal = productInfo.price().multiply(BigDecimal.valueOf(item.quantity()));
+            total = total.add(itemTotal);
 
-                BigDecimal itemTotal = productInfo.price().multiply(BigDecimal.valueOf(item.quantity()));
-                total = total.add(itemTotal);
-
-                det.add(new PurchaseItemDto(
-                        item.productId(),
-                        productInfo.name(),
-                        productInfo.price(),
-                        item.quantity()
-                ));
-            } catch (Exception e) {
-                if (e instanceof StockNotAvailableException) {
-                    throw e;
-                }
-                throw new ServiceUnavailableException();
-            }
+            det.add(new PurchaseItemDto(
+                    item.productId(),
+                    productInfo.name(),
+                    productInfo.price(),
+                    item.quantity()
+            ));
         }
 
+        ProductClient.ReservationRequest reservation = new ProductClient.ReservationRequest(UUID.randomUUID(),
+                dto.items().stream()
+                        .map(i -> new ProductClient.ReservationRequest.Line(i.productId(), i.quantity()))
+                        .toList());
+        reserve(reservation);
+
+        BigDecimal purchaseTotal = total;
+        try {
+            return transactions.execute(status -> persist(email, purchaseTotal, det, claim));
+        } catch (RuntimeException e) {
+            releases.release(reservation.reservationId());
+            throw e;
+        }
+    }
+
+    private PurchaseResponseDto persist(String email, BigDecimal total, List<PurchaseItemDto> det,
+                                        CheckoutIdempotency.Claim claim) {
         Purchase p = new Purchase();
         p.setUserEmail(email);
         p.setTotal(total);
         p.setStatus("CREATED");
-        purchases.save(p);
-
         for (PurchaseItemDto d : det) {
-            PurchaseItem pi = PurchaseItem.builder()
+            p.getItems().add(PurchaseItem.builder()
                     .purchase(p)
                     .productId(d.productId())
                     .name(d.name())
                     .price(d.price())
                     .quantity(d.quantity())
-                    .build();
-            items.save(pi);
+                    .build());
         }
+        // Items are inserted through the cascade, batched by Hibernate
+        purchases.save(p);
+        events.purchaseCreated(p, det);
 
-        return new PurchaseResponseDto(
+        PurchaseResponseDto response = new PurchaseResponseDto(
                 p.getId(),
                 p.getTotal(),
                 p.getStatus(),
                 det
         );
+        if (claim != null) {
+            idempotency.complete(claim, response);
+        }
+        return response;
+    }
+
+    private void reserve(ProductClient.ReservationRequest reservation) {
+        try {
+            productClient.reserve(reservation);
+        } catch (FeignException.Conflict e) {
+            throw new StockNotAvailableException();
+        } catch (FeignException.NotFound e) {
+            throw new ProductNotFoundException();
+        } catch (FeignException.BadRequest e) {
+            throw new InvalidCartException();
+        } catch (FeignException e) {
+            // Timed out or failed in flight: product-service may still have taken the stock
+            releases.release(reservation.reservationId());
+            throw new ServiceUnavailableException();
+        } catch (Exception e) {
+            throw new ServiceUnavailableException();
+        }
+    }
+
+    /**
+     * Fetches every product in the cart with one bulk call. If product-service does not offer
+     * the bulk endpoint, falls back to single lookups on virtual threads, at most
+     * {@value #MAX_PARALLEL_LOOKUPS} at a time, so the cost is a few round trips rather than one
+     * per line.
+     */
+    private Map<Long, ProductClient.ProductInfo> fetchProducts(List<CheckoutDto.Item> items) {
+        Set<Long> ids = items.stream().map(CheckoutDto.Item::productId).collect(Collectors.toCollection(LinkedHashSet::new));
+        List<ProductClient.ProductInfo> found;
+        try {
+            found = productClient.getProducts(ids);
+        } catch (FeignException.NotFound | FeignException.MethodNotAllowed | FeignException.NotImplemented
+                 | DecodeException e) {
+            log.debug("Bulk product lookup unavailable, fanning out {} lookups", ids.size(), e);
+            found = fetchEach(ids);
+        } catch (FeignException.BadRequest e) {
+            // Refused by product-service, not failed: report the cart, not an outage
+            throw new InvalidCartException();
+        } catch (Exception e) {
+            throw new ServiceUnavailableException();
+        }
+        return found.stream().collect(Collectors.toMap(ProductClient.ProductInfo::id, Function.identity(), (a, b) -> a));
+    }
+
+    private List<ProductClient.ProductInfo> fetchEach(Set<Long> ids) {
+        // Virtual threads do not inherit the caller's security context, which the Feign interceptor needs
+        try (ExecutorService executor = new DelegatingSecurityContextExecutorService(Executors.newVirtualThreadPerTaskExecutor())) {
+            Semaphore permits = new Semaphore(MAX_PARALLEL_LOOKUPS);
+            List<Future<ProductClient.ProductInfo>> lookups = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                lookups.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return productClient.getProduct(id);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<ProductClient.ProductInfo> found = new ArrayList<>(ids.size());
+            for (Future<ProductClient.ProductInfo> lookup : lookups) {
+                try {
+                    found.add(lookup.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof FeignException.NotFound) {
+                        throw new ProductNotFoundException();
+                    }
+                    if (e.getCause() instanceof FeignException.BadRequest) {
+                        throw new InvalidCartException();
+                    }
+                    throw new ServiceUnavailableException();
+                }
+            }
+            return found;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException();
+        }
     }
 
+    public static class InvalidCartException extends RuntimeException {}
     public static class ProductNotFoundException extends RuntimeException {}
     public static class StockNotAvailableException extends RuntimeException {}
     public static class ServiceUnavailableException extends RuntimeException {}
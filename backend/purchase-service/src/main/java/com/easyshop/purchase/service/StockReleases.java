@@ -0,0 +1,155 @@
+package com.easyshop.purchase.service;
+
+import com.easyshop.purchase.client.ProductClient;
+import com.easyshop.purchase.domain.PendingRelease;
+import com.easyshop.purchase.domain.PendingReleaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts back stock reserved for checkouts that did not go through. A release is tried once right
+ * away; if that fails it is stored in the {@code pending_release} table and retried on a
+ * background thread after {@code retry-backoff}, doubled with every attempt up to
+ * {@code max-backoff}, until product-service takes it. Releasing is idempotent there, so
+ * repeating one that got through after all does no harm. Product-service forgets reservations
+ * after its {@code product.reservation.retention}, and a release still pending by then puts
+ * nothing back; {@code purchase.release.queued} counts the releases that had to be stored.
+ * An instance that dies between reserving and persisting the purchase leaves no release behind.
+ */
+@Slf4j
+@Component
+public class StockReleases implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 50;
+
+    private final PendingReleaseRepository pending;
+    private final ProductClient productClient;
+    private final TransactionTemplate transactions;
+    private final Duration pollInterval;
+    private final Duration retryBackoff;
+    private final Duration maxBackoff;
+    private final ScheduledExecutorService scheduler;
+    private final Counter queued;
+
+    public StockReleases(PendingReleaseRepository pending, ProductClient productClient, TransactionTemplate transactions,
+                         @Value("${purchase.release.poll-interval:10s}") Duration pollInterval,
+                         @Value("${purchase.release.retry-backoff:1s}") Duration retryBackoff,
+                         @Value("${purchase.release.max-backoff:5m}") Duration maxBackoff,
+                         ObjectProvider<MeterRegistry> meterRegistry) {
+        this.pending = pending;
+        this.productClient = productClient;
+        this.transactions = transactions;
+        this.pollInterval = pollInterval;
+        this.retryBackoff = retryBackoff;
+        this.maxBackoff = maxBackoff;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-releases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        queued = registry == null ? null : Counter.builder("purchase.release.queued")
+                .description("Stock releases that failed and were stored to be retried")
+                .register(registry);
+    }
+
+    /**
+     * Starts retrying stored releases once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::retryQuietly, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Releases the reservation, or stores the release to be retried if product-service does not
+     * take it now. Never throws, so it can run while another failure is being reported.
+     */
+    public void release(UUID reservationId) {
+        try {
+            productClient.release(reservationId);
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Releasing stock reservation {} failed, retrying in {}", reservationId, retryBackoff, e);
+        }
+        try {
+            transactions.executeWithoutResult(status -> pending.save(PendingRelease.builder()
+                    .reservationId(reservationId)
+                    .attempts(1)
+                    .retryAt(Instant.now().plus(retryBackoff))
+                    .build()));
+            if (queued != null) {
+                queued.increment();
+            }
+        } catch (RuntimeException e) {
+            // Nothing left to fall back on; the stock stays reserved until reconciled
+            log.error("Failed to store the release of stock reservation {}", reservationId, e);
+        }
+    }
+
+    /**
+     * Attempts one batch of the stored releases that are due and answers how many went through.
+     */
+    public int retryDue() {
+        Integer released = transactions.execute(status -> {
+            List<PendingRelease> due = pending.findDue(Instant.now(), Limit.of(BATCH_SIZE));
+            List<PendingRelease> done = new ArrayList<>();
+            List<PendingRelease> failed = new ArrayList<>();
+            for (PendingRelease release : due) {
+                try {
+                    productClient.release(release.getReservationId());
+                    done.add(release);
+                } catch (RuntimeException e) {
+                    release.setAttempts(release.getAttempts() + 1);
+                    Duration backoff = backoff(release.getAttempts());
+                    release.setRetryAt(Instant.now().plus(backoff));
+                    failed.add(release);
+                    log.warn("Releasing stock reservation {} failed (attempt {}, pending since {}), retrying in {}",
+                            release.getReservationId(), release.getAttempts(), release.getCreatedAt(), backoff, e);
+                }
+            }
+            pending.saveAll(failed);
+            if (!done.isEmpty()) {
+                pending.deleteAllInBatch(done);
+            }
+            return done.size();
+        });
+        return released == null ? 0 : released;
+    }
+
+    private Duration backoff(int attempts) {
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void retryQuietly() {
+        try {
+            retryDue();
+        } catch (RuntimeException e) {
+            log.warn("Retrying stock releases failed, trying again in {}", pollInterval, e);
+        }
+    }
+}
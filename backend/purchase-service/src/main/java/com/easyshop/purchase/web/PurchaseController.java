@@ -1,18 +1,21 @@
 package com.easyshop.purchase.web;
 
 import com.easyshop.common.web.ApiResponseDto;
+import com.easyshop.purchase.service.CheckoutIdempotency.CheckoutInProgressException;
+import com.easyshop.purchase.service.CheckoutIdempotency.IdempotencyKeyReusedException;
 import com.easyshop.purchase.service.PurchaseService;
+import com.easyshop.purchase.service.PurchaseService.InvalidCartException;
 import com.easyshop.purchase.service.PurchaseService.ProductNotFoundException;
 import com.easyshop.purchase.service.PurchaseService.ServiceUnavailableException;
 import com.easyshop.purchase.service.PurchaseService.StockNotAvailableException;
 import com.easyshop.purchase.web.dto.CheckoutDto;
-import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import com.easyshop.purchase.web.dto.PurchasePageDto;
+import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
-import java.util.List;
 
 @RestController
 public class PurchaseController {
@@ -33,17 +36,19 @@ public class PurchaseController {
     }
 
     @GetMapping("/api/purchases")
-    public List<PurchaseResponseDto> myPurchases(Principal p) {
-        return service.list(p.getName());
+    public PurchasePageDto myPurchases(Principal p,
+                                       @RequestParam(name = "cursor", required = false) String cursor,
+                                       @RequestParam(name = "limit", required = false) Integer limit) {
+        return service.list(p.getName(), cursor, limit);
     }
 
     @PostMapping("/api/purchases/checkout")
-    public ResponseEntity<?> checkout(@RequestBody CheckoutDto dto, Principal pr) {
-        if (dto.items() == null || dto.items().isEmpty()) {
-            return ResponseEntity.badRequest().body(new ApiResponseDto(false, "Empty cart"));
-        }
+    public ResponseEntity<?> checkout(@Valid @RequestBody CheckoutDto dto, Principal pr,
+                                      @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            return ResponseEntity.ok(service.checkout(dto, pr.getName()));
+            return ResponseEntity.ok(service.checkout(dto, pr.getName(), idempotencyKey));
+        } catch (InvalidCartException e) {
+            return ResponseEntity.badRequest().body(new ApiResponseDto(false, "Invalid cart"));
         } catch (ProductNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ApiResponseDto(false, "Product not found"));
@@ -53,6 +58,12 @@ public class PurchaseController {
         } catch (ServiceUnavailableException e) {
             return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                     .body(new ApiResponseDto(false, "Product service unavailable"));
+        } catch (CheckoutInProgressException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ApiResponseDto(false, "Checkout already in progress"));
+        } catch (IdempotencyKeyReusedException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(new ApiResponseDto(false, "Idempotency-Key was used for a different cart"));
         }
     }
 }
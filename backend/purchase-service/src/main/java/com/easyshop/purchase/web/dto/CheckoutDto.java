@@ -1,12 +1,22 @@
 package com.easyshop.purchase.web.dto;
 
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
 import java.util.List;
 
 /**
  * Data transfer object for checkout request
  */
-public record CheckoutDto(List<Item> items) {
+public record CheckoutDto(
+        @NotEmpty(message = "Empty cart")
+        @Size(max = CheckoutDto.MAX_ITEMS, message = "Too many items in the cart")
+        List<@NotNull @Valid Item> items) {
+
+    /** Product-service looks up at most this many products in one call. */
+    public static final int MAX_ITEMS = 100;
 
-    public record Item(Long productId, Integer quantity) {}
+    public record Item(@NotNull Long productId,
+                       @NotNull @Min(value = 1, message = "Quantity must be at least 1") Integer quantity) {}
 }
@@ -0,0 +1,10 @@
+package com.easyshop.purchase.web.dto;
+
+import java.util.List;
+
+/**
+ * One page of a user's purchase history. {@code nextCursor} is an opaque token for the
+ * following page, or {@code null} when this is the last one.
+ */
+public record PurchasePageDto(List<PurchaseResponseDto> items, String nextCursor) {
+}
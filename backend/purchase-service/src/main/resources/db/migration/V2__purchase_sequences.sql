@@ -0,0 +1,12 @@
+-- Pooled sequences for purchase ids so Hibernate can batch inserts
+-- (IDENTITY columns force one INSERT round trip per row)
+CREATE SEQUENCE IF NOT EXISTS purchases.purchase_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS purchases.purchase_item_seq INCREMENT BY 50;
+
+-- Hibernate's pooled optimizer hands out [value - 49, value], so start past existing ids
+SELECT setval('purchases.purchase_seq', COALESCE((SELECT MAX(id) FROM purchases.purchase), 0) + 50);
+SELECT setval('purchases.purchase_item_seq', COALESCE((SELECT MAX(id) FROM purchases.purchase_item), 0) + 50);
+
+-- Ids are allocated by the application only; a serial default would collide with pooled blocks
+ALTER TABLE purchases.purchase ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE purchases.purchase_item ALTER COLUMN id DROP DEFAULT;
@@ -0,0 +1,6 @@
+-- Purchase history is read per user, newest first, with a (created_at, id) keyset
+CREATE INDEX IF NOT EXISTS idx_purchase_user_created
+  ON purchases.purchase(user_email, created_at DESC, id DESC);
+
+-- Superseded by the composite index above
+DROP INDEX IF EXISTS purchases.idx_purchase_user;
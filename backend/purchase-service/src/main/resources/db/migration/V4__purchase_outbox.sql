@@ -0,0 +1,11 @@
+-- Events written in the same transaction as the purchase they describe and relayed to
+-- consumers by OutboxRelay, which deletes each row once it has been published
+CREATE SEQUENCE IF NOT EXISTS purchases.outbox_event_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS purchases.outbox_event (
+  id           BIGINT PRIMARY KEY,
+  purchase_id  BIGINT NOT NULL,
+  type         VARCHAR(64) NOT NULL,
+  payload      TEXT NOT NULL,
+  created_at   TIMESTAMPTZ NOT NULL
+);
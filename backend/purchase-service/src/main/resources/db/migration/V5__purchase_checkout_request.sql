@@ -0,0 +1,16 @@
+-- Checkouts sent with an Idempotency-Key. A row is claimed before the checkout runs and gets
+-- the response in the transaction that creates the purchase, so a retry replays it
+CREATE SEQUENCE IF NOT EXISTS purchases.checkout_request_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS purchases.checkout_request (
+  id               BIGINT PRIMARY KEY,
+  user_email       VARCHAR(255) NOT NULL,
+  idempotency_key  VARCHAR(255) NOT NULL,
+  request_hash     VARCHAR(64) NOT NULL,
+  purchase_id      BIGINT,
+  response         TEXT,
+  created_at       TIMESTAMPTZ NOT NULL,
+  CONSTRAINT uq_checkout_request_key UNIQUE (user_email, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_checkout_request_created ON purchases.checkout_request(created_at);
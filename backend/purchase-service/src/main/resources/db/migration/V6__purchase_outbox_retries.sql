@@ -0,0 +1,10 @@
+-- Events that keep failing to publish on their own are retried later and eventually parked
+-- rather than holding up the events behind them. Parked rows stay for an operator to inspect
+-- and re-queue (set parked_at and retry_at to NULL, attempts to 0).
+ALTER TABLE purchases.outbox_event ADD COLUMN IF NOT EXISTS attempts INT NOT NULL DEFAULT 0;
+ALTER TABLE purchases.outbox_event ADD COLUMN IF NOT EXISTS retry_at TIMESTAMPTZ;
+ALTER TABLE purchases.outbox_event ADD COLUMN IF NOT EXISTS parked_at TIMESTAMPTZ;
+
+-- The relay reads oldest first by creation time: ids come from a pooled sequence, each instance
+-- handing out its own block, so they are not in creation order across instances
+CREATE INDEX IF NOT EXISTS idx_outbox_event_created ON purchases.outbox_event(created_at, id);
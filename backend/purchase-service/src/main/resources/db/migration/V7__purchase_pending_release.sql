@@ -0,0 +1,10 @@
+-- Stock reservations whose release failed along with their checkout. StockReleases retries them
+-- with backoff and deletes each row once product-service has put the stock back
+CREATE TABLE IF NOT EXISTS purchases.pending_release (
+  reservation_id  UUID PRIMARY KEY,
+  attempts        INT NOT NULL,
+  retry_at        TIMESTAMPTZ NOT NULL,
+  created_at      TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_pending_release_retry ON purchases.pending_release(retry_at);
@@ -0,0 +1,162 @@
+package com.easyshop.purchase.client;
+
+import feign.Feign;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import feign.Retryer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.cloud.openfeign.support.SpringEncoder;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductClientResilienceTest {
+
+    private static final String PRODUCT_JSON = """
+            {"id":1,"name":"Test","description":"Test product","price":1.00,"stock":10}
+            """;
+    private static final String RESERVATION_JSON = """
+            {"ok":true,"lines":[{"productId":1,"qty":1,"result":"OK"}]}
+            """;
+
+    private MockWebServer server;
+    private ProductClientResilience resilience;
+    private ProductClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        resilience = new ProductClientResilience(
+                CircuitBreaker.of("product-service", CircuitBreakerConfig.custom()
+                        .slidingWindowSize(4)
+                        .minimumNumberOfCalls(4)
+                        .failureRateThreshold(50)
+                        .waitDurationInOpenState(Duration.ofMinutes(1))
+                        .recordResult(r -> r instanceof Response response && response.status() >= 500)
+                        .build()),
+                Bulkhead.of("product-service", BulkheadConfig.custom()
+                        .maxConcurrentCalls(1)
+                        .maxWaitDuration(Duration.ZERO)
+                        .build()),
+                new Request.Options(Duration.ofSeconds(1), Duration.ofMillis(200), true),
+                Map.of("reserve", new Request.Options(Duration.ofSeconds(1), Duration.ofSeconds(2), true)));
+        ObjectFactory<HttpMessageConverters> converters =
+                () -> new HttpMessageConverters(new MappingJackson2HttpMessageConverter());
+        client = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder(new SpringEncoder(converters))
+                .decoder(new SpringDecoder(converters))
+                // Spring Cloud OpenFeign never retries by default; plain Feign does
+                .retryer(Retryer.NEVER_RETRY)
+                .addCapability(resilience)
+                .target(ProductClient.class, server.url("/").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void slowLookupTimesOutAtMethodReadTimeout() {
+        server.enqueue(json(PRODUCT_JSON).setHeadersDelay(1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.getProduct(1L)).isInstanceOf(RetryableException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(900));
+    }
+
+    @Test
+    void reservationGetsItsOwnLongerTimeout() {
+        server.enqueue(json(RESERVATION_JSON).setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        var result = client.reserve(new ProductClient.ReservationRequest(UUID.randomUUID(),
+                List.of(new ProductClient.ReservationRequest.Line(1L, 1))));
+
+        assertThat(result.ok()).isTrue();
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingUpstream() {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.getProduct(1L)).isInstanceOf(FeignException.ServiceUnavailable.class);
+        }
+        assertThat(resilience.circuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThatThrownBy(() -> client.getProduct(1L)).isInstanceOf(CallNotPermittedException.class);
+        assertThat(server.getRequestCount()).isEqualTo(4);
+    }
+
+    @Test
+    void timeoutsOpenTheCircuit() {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(json(PRODUCT_JSON).setHeadersDelay(1, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.getProduct(1L)).isInstanceOf(RetryableException.class);
+        }
+
+        assertThat(resilience.circuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void clientErrorsDoNotCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(409));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.getProduct(1L)).isInstanceOf(FeignException.Conflict.class);
+        }
+
+        assertThat(resilience.circuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(resilience.circuitBreaker().getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondConcurrencyLimit() throws Exception {
+        server.enqueue(json(PRODUCT_JSON).setHeadersDelay(150, TimeUnit.MILLISECONDS));
+        CompletableFuture<ProductClient.ProductInfo> inFlight = CompletableFuture.supplyAsync(() -> client.getProduct(1L));
+        server.takeRequest(1, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> client.getProduct(2L)).isInstanceOf(BulkheadFullException.class);
+
+        assertThat(inFlight.get(1, TimeUnit.SECONDS).id()).isEqualTo(1L);
+        assertThat(resilience.bulkhead().getMetrics().getAvailableConcurrentCalls()).isEqualTo(1);
+        // A rejected call was never attempted and must not count against the circuit
+        assertThat(resilience.circuitBreaker().getMetrics().getNumberOfBufferedCalls()).isEqualTo(1);
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setBody(body).addHeader("Content-Type", "application/json");
+    }
+}
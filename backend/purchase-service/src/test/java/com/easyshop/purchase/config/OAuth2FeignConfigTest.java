@@ -0,0 +1,115 @@
+package com.easyshop.purchase.config;
+
+import com.easyshop.purchase.client.ProductClient;
+import feign.Feign;
+import feign.Retryer;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.cloud.openfeign.support.SpringEncoder;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OAuth2FeignConfigTest {
+
+    private MockWebServer server;
+    private ProductClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        ClientRegistration registration = ClientRegistration.withRegistrationId("purchase-service")
+                .tokenUri("http://auth-server/token")
+                .clientId("purchase-service")
+                .clientSecret("secret")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+        OAuth2AccessToken token = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "service-token",
+                Instant.now(), Instant.now().plusSeconds(60));
+        OAuth2AuthorizedClientManager manager = mock(OAuth2AuthorizedClientManager.class);
+        when(manager.authorize(any())).thenReturn(new OAuth2AuthorizedClient(registration, "purchase-service", token));
+
+        ObjectFactory<HttpMessageConverters> converters =
+                () -> new HttpMessageConverters(new MappingJackson2HttpMessageConverter());
+        client = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder(new SpringEncoder(converters))
+                .decoder(new SpringDecoder(converters))
+                .retryer(Retryer.NEVER_RETRY)
+                .requestInterceptor(new OAuth2FeignConfig().oauth2FeignRequestInterceptor(manager, "purchase-service"))
+                .target(ProductClient.class, server.url("/").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        SecurityContextHolder.clearContext();
+        server.shutdown();
+    }
+
+    @Test
+    void lookupsForwardTheBuyersToken() throws InterruptedException {
+        signInAsBuyer();
+        server.enqueue(json("{\"id\":1,\"name\":\"Test\",\"price\":1.00,\"stock\":10}"));
+
+        client.getProduct(1L);
+
+        assertThat(server.takeRequest().getHeader("Authorization")).isEqualTo("Bearer buyer-token");
+    }
+
+    @Test
+    void reservationsCarryTheServiceTokenEvenInsideABuyersRequest() throws InterruptedException {
+        signInAsBuyer();
+        UUID reservation = UUID.randomUUID();
+        server.enqueue(json("{\"ok\":true,\"lines\":[]}"));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        client.reserve(new ProductClient.ReservationRequest(reservation,
+                List.of(new ProductClient.ReservationRequest.Line(1L, 1))));
+        client.release(reservation);
+
+        assertThat(server.takeRequest().getHeader("Authorization")).isEqualTo("Bearer service-token");
+        assertThat(server.takeRequest().getHeader("Authorization")).isEqualTo("Bearer service-token");
+    }
+
+    @Test
+    void callsOutsideAUserRequestCarryTheServiceToken() throws InterruptedException {
+        server.enqueue(json("{\"id\":1,\"name\":\"Test\",\"price\":1.00,\"stock\":10}"));
+
+        client.getProduct(1L);
+
+        assertThat(server.takeRequest().getHeader("Authorization")).isEqualTo("Bearer service-token");
+    }
+
+    private static void signInAsBuyer() {
+        Jwt jwt = Jwt.withTokenValue("buyer-token").header("alg", "none").subject("buyer@example.com").build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setBody(body).addHeader("Content-Type", "application/json");
+    }
+}
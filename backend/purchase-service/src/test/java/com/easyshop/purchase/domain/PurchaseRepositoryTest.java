@@ -0,0 +1,214 @@
+package com.easyshop.purchase.domain;
+
+import com.easyshop.purchase.service.CheckoutIdempotency;
+import com.easyshop.purchase.web.dto.CheckoutDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that a purchase and its items are written with batched inserts, reports
+ * the insert rate for 50-line orders, walks the keyset-paginated history, relays
+ * an outbox batch, picks the stock releases due for a retry and replays a checkout
+ * by its idempotency key.
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:purchasedb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.flyway.enabled=false",
+        "product.service.url=http://localhost",
+        // Keeps the background relay from draining the outbox test events
+        "purchase.outbox.poll-interval=1h",
+        "purchase.release.poll-interval=1h"
+})
+@Disabled
+class PurchaseRepositoryTest {
+    private static final int LINES = 50;
+    private static final int ORDERS = 200;
+
+    @Autowired
+    private PurchaseRepository purchases;
+
+    @Autowired
+    private PurchaseItemRepository items;
+
+    @Autowired
+    private TransactionTemplate transactions;
+
+    @Autowired
+    private OutboxEventRepository outbox;
+
+    @Autowired
+    private PendingReleaseRepository pendingReleases;
+
+    @Autowired
+    private CheckoutIdempotency idempotency;
+
+    @Autowired
+    private CheckoutRequestRepository checkoutRequests;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Test
+    void fiftyLineOrderIsInsertedInAHandfulOfStatements() {
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        transactions.executeWithoutResult(s -> purchases.save(order()));
+        stats.clear();
+
+        transactions.executeWithoutResult(s -> purchases.save(order()));
+
+        // one batch for the purchase, one for its items, at most one sequence call each
+        assertThat(stats.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void reportInsertRate() {
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            transactions.executeWithoutResult(s -> purchases.save(order()));
+        }
+        long elapsed = System.nanoTime() - start;
+        long rows = (long) ORDERS * (LINES + 1);
+        log.info("Inserted {} rows in {} ms ({} inserts/sec)", rows, elapsed / 1_000_000, rows * 1_000_000_000L / elapsed);
+    }
+
+    @Test
+    void historyPagesFollowKeysetWithoutGapsOrDuplicates() {
+        Instant sameInstant = Instant.parse("2024-05-01T10:00:00Z");
+        transactions.executeWithoutResult(s -> {
+            for (int i = 0; i < 5; i++) {
+                Purchase p = order("history@example.com");
+                // Ties on createdAt must be broken by id
+                p.setCreatedAt(i < 3 ? sameInstant : sameInstant.plusSeconds(i));
+                purchases.save(p);
+            }
+        });
+
+        List<PurchaseSummary> first = purchases.findHistory("history@example.com", Limit.of(2));
+        PurchaseSummary last = first.getLast();
+        List<PurchaseSummary> rest = purchases.findHistoryBefore("history@example.com",
+                last.createdAt(), last.id(), Limit.of(10));
+
+        assertThat(first).hasSize(2);
+        assertThat(rest).hasSize(3);
+        assertThat(rest).extracting(PurchaseSummary::id).doesNotContainAnyElementsOf(
+                first.stream().map(PurchaseSummary::id).toList());
+        assertThat(items.findRowsByPurchaseIds(first.stream().map(PurchaseSummary::id).toList()))
+                .hasSize(LINES * 2);
+    }
+
+    @Test
+    void outboxBatchesComeOldestFirstAndAreDeletedTogether() {
+        Instant now = Instant.now();
+        transactions.executeWithoutResult(s -> {
+            // Created in the reverse order of their ids, as with ids from another instance's block
+            for (long i = 1; i <= 5; i++) {
+                outbox.save(OutboxEvent.builder().purchaseId(i).type("PurchaseCreated").payload("{}")
+                        .createdAt(now.minusSeconds(i)).build());
+            }
+            outbox.save(OutboxEvent.builder().purchaseId(6L).type("PurchaseCreated").payload("{}")
+                    .createdAt(now.minusSeconds(60)).attempts(1).retryAt(now.plusSeconds(60)).build());
+            outbox.save(OutboxEvent.builder().purchaseId(7L).type("PurchaseCreated").payload("{}")
+                    .createdAt(now.minusSeconds(60)).attempts(10).parkedAt(now).build());
+        });
+
+        List<Long> relayed = transactions.execute(s -> {
+            List<OutboxEvent> batch = outbox.findNextBatch(now, Limit.of(3));
+            outbox.deleteAllInBatch(batch);
+            return batch.stream().map(OutboxEvent::getPurchaseId).toList();
+        });
+
+        assertThat(relayed).containsExactly(5L, 4L, 3L);
+        assertThat(outbox.findAll()).extracting(OutboxEvent::getPurchaseId).containsExactlyInAnyOrder(1L, 2L, 6L, 7L);
+    }
+
+    @Test
+    void pendingReleasesAreRetriedOnceDue() {
+        Instant now = Instant.now();
+        UUID overdue = UUID.randomUUID();
+        UUID due = UUID.randomUUID();
+        transactions.executeWithoutResult(s -> {
+            pendingReleases.save(PendingRelease.builder().reservationId(due).attempts(1)
+                    .retryAt(now.minusSeconds(1)).build());
+            pendingReleases.save(PendingRelease.builder().reservationId(overdue).attempts(3)
+                    .retryAt(now.minusSeconds(60)).build());
+            pendingReleases.save(PendingRelease.builder().reservationId(UUID.randomUUID()).attempts(1)
+                    .retryAt(now.plusSeconds(60)).build());
+        });
+
+        List<UUID> picked = transactions.execute(s -> pendingReleases.findDue(now, Limit.of(10)).stream()
+                .map(PendingRelease::getReservationId).toList());
+
+        assertThat(picked).containsExactly(overdue, due);
+    }
+
+    @Test
+    void idempotencyKeyIsClaimedOnceAndReplayed() {
+        CheckoutDto cart = new CheckoutDto(List.of(new CheckoutDto.Item(1L, 2)));
+        AtomicInteger runs = new AtomicInteger();
+        Function<CheckoutIdempotency.Claim, PurchaseResponseDto> checkout = claim -> transactions.execute(s -> {
+            runs.incrementAndGet();
+            Purchase p = purchases.save(order("idempotent@example.com"));
+            PurchaseResponseDto response = new PurchaseResponseDto(p.getId(), p.getTotal(), p.getStatus(), List.of());
+            idempotency.complete(claim, response);
+            return response;
+        });
+
+        PurchaseResponseDto first = idempotency.checkout("idempotent@example.com", "key-1", cart, checkout);
+        assertThat(checkoutRequests.findByUserEmailAndIdempotencyKey("idempotent@example.com", "key-1"))
+                .hasValueSatisfying(r -> assertThat(r.getPurchaseId()).isEqualTo(first.id()));
+        // Unique (user, key): a second claim from another instance must lose
+        assertThatThrownBy(() -> transactions.execute(s -> checkoutRequests.saveAndFlush(CheckoutRequest.builder()
+                .userEmail("idempotent@example.com").idempotencyKey("key-1").requestHash("x").build())))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(idempotency.checkout("idempotent@example.com", "key-1", cart, checkout)).isEqualTo(first);
+        assertThat(runs).hasValue(1);
+    }
+
+    private static Purchase order() {
+        return order("bench@example.com");
+    }
+
+    private static Purchase order(String email) {
+        Purchase p = Purchase.builder()
+                .userEmail(email)
+                .total(BigDecimal.valueOf(LINES))
+                .status("CREATED")
+                .build();
+        for (long i = 1; i <= LINES; i++) {
+            p.getItems().add(PurchaseItem.builder()
+                    .purchase(p)
+                    .productId(i)
+                    .name("P" + i)
+                    .price(BigDecimal.ONE)
+                    .quantity(1)
+                    .build());
+        }
+        return p;
+    }
+}
@@ -0,0 +1,230 @@
+package com.easyshop.purchase.outbox;
+
+import com.easyshop.purchase.domain.OutboxEvent;
+import com.easyshop.purchase.domain.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final List<OutboxEvent> table = new ArrayList<>();
+    private final List<List<PurchaseEvent>> delivered = new CopyOnWriteArrayList<>();
+    private final InProcessPurchaseEventBroker broker = new InProcessPurchaseEventBroker();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private OutboxEventRepository outbox;
+    private OutboxRelay relay;
+    private long nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        outbox = mock(OutboxEventRepository.class);
+        when(outbox.findNextBatch(any(Instant.class), any(Limit.class))).thenAnswer(inv -> {
+            Instant now = inv.getArgument(0);
+            synchronized (table) {
+                return table.stream()
+                        .filter(e -> e.getParkedAt() == null && (e.getRetryAt() == null || !e.getRetryAt().isAfter(now)))
+                        .sorted(Comparator.comparing(OutboxEvent::getCreatedAt).thenComparing(OutboxEvent::getId))
+                        .limit(inv.<Limit>getArgument(1).max())
+                        .toList();
+            }
+        });
+        doAnswer(inv -> {
+            synchronized (table) {
+                table.removeAll(inv.<List<OutboxEvent>>getArgument(0));
+            }
+            return null;
+        }).when(outbox).deleteAllInBatch(anyCollection());
+        broker.subscribe(delivered::add);
+        relay = new OutboxRelay(outbox, broker, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                10, Duration.ofMinutes(1), Duration.ofMillis(100), 3, Duration.ofMinutes(1),
+                new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        relay.close();
+    }
+
+    @Test
+    void publishesInBatchesOldestFirstAndDeletesWhatWasPublished() {
+        addEvents(25);
+
+        assertThat(relay.drain()).isEqualTo(25);
+
+        assertThat(delivered).extracting(List::size).containsExactly(10, 10, 5);
+        assertThat(delivered.stream().flatMap(List::stream).map(PurchaseEvent::id))
+                .containsExactlyElementsOf(ids(1, 25));
+        assertThat(table).isEmpty();
+        assertThat(registry.get("purchase.outbox.published").counter().count()).isEqualTo(25);
+        assertThat(registry.get("purchase.outbox.lag").timer().count()).isEqualTo(25);
+    }
+
+    @Test
+    void keepsEventsWhileTheBrokerIsDownAndDeliversThemAgain() {
+        addEvents(3);
+        AtomicBoolean down = new AtomicBoolean(true);
+        broker.subscribe(events -> {
+            if (down.get()) {
+                throw new IllegalStateException("broker down");
+            }
+        });
+
+        assertThatThrownBy(relay::drain).isInstanceOf(IllegalStateException.class);
+        verify(outbox, never()).deleteAllInBatch(anyCollection());
+        assertThat(table).hasSize(3).allSatisfy(event -> {
+            assertThat(event.getAttempts()).isZero();
+            assertThat(event.getRetryAt()).isNull();
+        });
+
+        down.set(false);
+        assertThat(relay.drain()).isEqualTo(3);
+        // At least once: the first subscriber saw the events on every attempt
+        assertThat(delivered.getLast()).extracting(PurchaseEvent::id).containsExactlyElementsOf(ids(1, 3));
+        assertThat(table).isEmpty();
+    }
+
+    @Test
+    void loneEventIsNotCountedWhileTheBrokerIsDown() {
+        addEvents(1);
+        AtomicBoolean down = new AtomicBoolean(true);
+        broker.subscribe(events -> {
+            if (down.get()) {
+                throw new IllegalStateException("broker down");
+            }
+        });
+
+        for (int poll = 0; poll < 5; poll++) {
+            assertThatThrownBy(relay::drain).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(table).singleElement().satisfies(event -> {
+            assertThat(event.getAttempts()).isZero();
+            assertThat(event.getRetryAt()).isNull();
+            assertThat(event.getParkedAt()).isNull();
+        });
+
+        down.set(false);
+        assertThat(relay.drain()).isEqualTo(1);
+        assertThat(table).isEmpty();
+    }
+
+    @Test
+    void eventThatKeepsFailingIsRetriedLaterThenParkedWithoutHoldingUpOthers() {
+        addEvents(3);
+        broker.subscribe(events -> {
+            if (events.stream().anyMatch(event -> event.id() == 2)) {
+                throw new IllegalArgumentException("unpublishable");
+            }
+        });
+
+        assertThat(relay.drain()).isEqualTo(2);
+        OutboxEvent poison = table.getFirst();
+        assertThat(poison.getId()).isEqualTo(2);
+        assertThat(poison.getAttempts()).isEqualTo(1);
+        assertThat(poison.getRetryAt()).isAfter(Instant.now().plusSeconds(50));
+
+        // Not due yet: events behind it go out on their own
+        addEvents(1);
+        assertThat(relay.drain()).isEqualTo(1);
+        assertThat(table).containsExactly(poison);
+
+        // Failing on its own would look like an outage; it is counted while others go through
+        poison.setRetryAt(null);
+        addEvents(1);
+        assertThat(relay.drain()).isEqualTo(1);
+        assertThat(poison.getAttempts()).isEqualTo(2);
+        assertThat(poison.getRetryAt()).isAfter(Instant.now().plusSeconds(110));
+
+        poison.setRetryAt(null);
+        addEvents(1);
+        assertThat(relay.drain()).isEqualTo(1);
+        assertThat(poison.getAttempts()).isEqualTo(3);
+        assertThat(poison.getParkedAt()).isNotNull();
+        assertThat(registry.get("purchase.outbox.parked").counter().count()).isEqualTo(1);
+        assertThat(delivered.stream().flatMap(List::stream).map(PurchaseEvent::id)).contains(1L, 3L, 4L, 5L, 6L);
+
+        int attempts = delivered.size();
+        assertThat(relay.drain()).isZero();
+        assertThat(delivered).hasSize(attempts);
+        assertThat(table).containsExactly(poison);
+    }
+
+    @Test
+    void nudgePublishesWithoutWaitingForThePoll() throws InterruptedException {
+        CountDownLatch published = new CountDownLatch(1);
+        broker.subscribe(events -> published.countDown());
+        addEvents(1);
+
+        relay.nudge();
+
+        assertThat(published.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delivered.getFirst()).singleElement().satisfies(event -> {
+            assertThat(event.type()).isEqualTo(PurchaseEventOutbox.PURCHASE_CREATED);
+            assertThat(event.purchaseId()).isEqualTo(101L);
+        });
+    }
+
+    @Test
+    void nudgesWithinTheLingerShareOneBatch() throws InterruptedException {
+        CountDownLatch published = new CountDownLatch(1);
+        broker.subscribe(events -> published.countDown());
+
+        for (int i = 0; i < 5; i++) {
+            addEvents(1);
+            relay.nudge();
+        }
+
+        assertThat(published.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delivered).singleElement().satisfies(batch -> assertThat(batch).hasSize(5));
+    }
+
+    private void addEvents(int count) {
+        synchronized (table) {
+            for (int i = 0; i < count; i++) {
+                long id = nextId++;
+                table.add(OutboxEvent.builder()
+                        .id(id)
+                        .purchaseId(100 + id)
+                        .type(PurchaseEventOutbox.PURCHASE_CREATED)
+                        .payload("{\"purchaseId\":" + (100 + id) + "}")
+                        .createdAt(Instant.now())
+                        .build());
+            }
+        }
+    }
+
+    private static List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
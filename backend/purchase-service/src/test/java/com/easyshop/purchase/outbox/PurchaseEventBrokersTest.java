@@ -0,0 +1,92 @@
+package com.easyshop.purchase.outbox;
+
+import com.easyshop.purchase.domain.OutboxEvent;
+import com.easyshop.purchase.domain.OutboxEventRepository;
+import com.easyshop.purchase.domain.Purchase;
+import com.easyshop.purchase.web.dto.PurchaseItemDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class PurchaseEventBrokersTest {
+
+    // Configured like Spring Boot's mapper
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void outboxStoresPurchaseCreatedPayload() throws Exception {
+        OutboxEventRepository repository = mock(OutboxEventRepository.class);
+        PurchaseEventOutbox outbox = new PurchaseEventOutbox(repository, objectMapper, mock(OutboxRelay.class));
+        Purchase purchase = Purchase.builder()
+                .id(7L)
+                .userEmail("user@example.com")
+                .total(new BigDecimal("5.00"))
+                .status("CREATED")
+                .createdAt(Instant.parse("2024-05-01T10:00:00Z"))
+                .build();
+
+        outbox.purchaseCreated(purchase, List.of(new PurchaseItemDto(1L, "P1", new BigDecimal("2.50"), 2)));
+
+        ArgumentCaptor<OutboxEvent> saved = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).save(saved.capture());
+        assertThat(saved.getValue().getPurchaseId()).isEqualTo(7L);
+        assertThat(saved.getValue().getType()).isEqualTo(PurchaseEventOutbox.PURCHASE_CREATED);
+        JsonNode payload = objectMapper.readTree(saved.getValue().getPayload());
+        assertThat(payload.path("userEmail").asText()).isEqualTo("user@example.com");
+        assertThat(payload.path("createdAt").asText()).isEqualTo("2024-05-01T10:00:00Z");
+        assertThat(payload.path("items").get(0).path("quantity").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void inProcessBrokerStopsDeliveringAfterUnsubscribe() throws Exception {
+        InProcessPurchaseEventBroker broker = new InProcessPurchaseEventBroker();
+        List<PurchaseEvent> received = new ArrayList<>();
+        AutoCloseable subscription = broker.subscribe(received::addAll);
+
+        broker.publish(List.of(event(1)));
+        subscription.close();
+        broker.publish(List.of(event(2)));
+
+        assertThat(received).extracting(PurchaseEvent::id).containsExactly(1L);
+    }
+
+    @Test
+    void fileBrokerAppendsOneJsonLinePerEvent() throws Exception {
+        Path file = dir.resolve("events/purchase-events.ndjson");
+        FilePurchaseEventBroker broker = new FilePurchaseEventBroker(file, objectMapper);
+
+        broker.publish(List.of(event(1), event(2)));
+        broker.publish(List.of(event(3)));
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(3);
+        assertThat(lines).extracting(line -> objectMapper.readTree(line).path("id").asLong()).containsExactly(1L, 2L, 3L);
+        assertThat(objectMapper.readValue(lines.get(2), PurchaseEvent.class)).isEqualTo(event(3));
+    }
+
+    private static PurchaseEvent event(long id) {
+        return new PurchaseEvent(id, PurchaseEventOutbox.PURCHASE_CREATED, 100 + id,
+                Instant.parse("2024-05-01T10:00:00Z"), "{\"purchaseId\":" + (100 + id) + "}");
+    }
+}
@@ -0,0 +1,290 @@
+package com.easyshop.purchase.service;
+
+import com.easyshop.purchase.domain.CheckoutRequest;
+import com.easyshop.purchase.domain.CheckoutRequestRepository;
+import com.easyshop.purchase.service.CheckoutIdempotency.CheckoutInProgressException;
+import com.easyshop.purchase.service.CheckoutIdempotency.Claim;
+import com.easyshop.purchase.service.CheckoutIdempotency.IdempotencyKeyReusedException;
+import com.easyshop.purchase.service.PurchaseService.StockNotAvailableException;
+import com.easyshop.purchase.web.dto.CheckoutDto;
+import com.easyshop.purchase.web.dto.PurchaseItemDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CheckoutIdempotencyTest {
+
+    private static final String EMAIL = "user@example.com";
+
+    private final Map<Long, CheckoutRequest> rows = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private CheckoutRequestRepository requests;
+
+    @BeforeEach
+    void setUp() {
+        requests = mock(CheckoutRequestRepository.class);
+        when(requests.findByUserEmailAndIdempotencyKey(anyString(), anyString())).thenAnswer(inv -> find(
+                inv.getArgument(0), inv.getArgument(1)).map(CheckoutIdempotencyTest::copy));
+        when(requests.saveAndFlush(any())).thenAnswer(inv -> {
+            CheckoutRequest request = inv.getArgument(0);
+            synchronized (rows) {
+                if (find(request.getUserEmail(), request.getIdempotencyKey()).isPresent()) {
+                    throw new DataIntegrityViolationException("uq_checkout_request_key");
+                }
+                request.setId(ids.incrementAndGet());
+                rows.put(request.getId(), copy(request));
+            }
+            return request;
+        });
+        when(requests.complete(anyLong(), anyLong(), anyString())).thenAnswer(inv -> {
+            CheckoutRequest row = rows.get(inv.<Long>getArgument(0));
+            if (row == null) {
+                return 0;
+            }
+            row.setPurchaseId(inv.getArgument(1));
+            row.setResponse(inv.getArgument(2));
+            return 1;
+        });
+        when(requests.releasePending(anyLong(), any())).thenAnswer(inv -> {
+            CheckoutRequest row = rows.get(inv.<Long>getArgument(0));
+            boolean abandoned = row != null && row.getResponse() == null
+                    && row.getCreatedAt().isBefore(inv.getArgument(1));
+            return abandoned && rows.remove(row.getId()) != null ? 1 : 0;
+        });
+        doAnswer(inv -> rows.remove(inv.<Long>getArgument(0))).when(requests).deleteById(anyLong());
+    }
+
+    @Test
+    void retryGetsTheStoredResponseWithoutCheckingOutAgain() {
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        PurchaseResponseDto first = idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, runs));
+        PurchaseResponseDto retry = idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, runs));
+
+        assertThat(retry).isEqualTo(first);
+        assertThat(runs).hasValue(1);
+        assertThat(rows.values()).singleElement().satisfies(row -> assertThat(row.getPurchaseId()).isEqualTo(1L));
+        assertThat(registry.get("purchase.checkout.idempotent").tag("result", "replayed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void storedResponseIsReplayedByAnotherInstance() {
+        CheckoutIdempotency first = idempotency(Duration.ofMinutes(1));
+        PurchaseResponseDto response = first.checkout(EMAIL, "key-1", cart(1), checkout(first, new AtomicInteger()));
+        CheckoutIdempotency other = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThat(other.checkout(EMAIL, "key-1", cart(1), checkout(other, runs))).isEqualTo(response);
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void keysAreScopedToTheUser() {
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, runs));
+        idempotency.checkout("other@example.com", "key-1", cart(1), checkout(idempotency, runs));
+
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheCheckoutInFlight() throws Exception {
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<Claim, PurchaseResponseDto> slow = claim -> {
+            started.countDown();
+            await(release);
+            return checkout(idempotency, runs).apply(claim);
+        };
+
+        CompletableFuture<PurchaseResponseDto> first = CompletableFuture.supplyAsync(
+                () -> idempotency.checkout(EMAIL, "key-1", cart(2), slow));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<PurchaseResponseDto> duplicate = CompletableFuture.supplyAsync(
+                () -> idempotency.checkout(EMAIL, "key-1", cart(2), checkout(idempotency, runs)));
+        Thread.sleep(100);
+        assertThat(duplicate).isNotDone();
+        release.countDown();
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+        assertThat(runs).hasValue(1);
+        assertThat(registry.get("purchase.checkout.idempotent").tag("result", "joined").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCheckoutReleasesTheKeyForARetry() {
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotency.checkout(EMAIL, "key-1", cart(1), claim -> {
+            throw new StockNotAvailableException();
+        })).isInstanceOf(StockNotAvailableException.class);
+        assertThat(rows).isEmpty();
+
+        idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, runs));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void keyReusedForADifferentCartIsRejected() {
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+        idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, new AtomicInteger()));
+
+        assertThatThrownBy(() -> idempotency.checkout(EMAIL, "key-1", cart(2), checkout(idempotency, new AtomicInteger())))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        CheckoutIdempotency other = idempotency(Duration.ofMinutes(1));
+        assertThatThrownBy(() -> other.checkout(EMAIL, "key-1", cart(2), checkout(other, new AtomicInteger())))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    void claimInFlightOnAnotherInstanceIsWaitedForThenReplayed() throws Exception {
+        CheckoutIdempotency elsewhere = idempotency(Duration.ofMinutes(1));
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<PurchaseResponseDto> first = CompletableFuture.supplyAsync(() ->
+                elsewhere.checkout(EMAIL, "key-1", cart(1), claim -> {
+                    claimed.countDown();
+                    await(release);
+                    return checkout(elsewhere, new AtomicInteger()).apply(claim);
+                }));
+        assertThat(claimed.await(5, TimeUnit.SECONDS)).isTrue();
+        CheckoutIdempotency here = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        CompletableFuture<PurchaseResponseDto> retry = CompletableFuture.supplyAsync(
+                () -> here.checkout(EMAIL, "key-1", cart(1), checkout(here, runs)));
+        Thread.sleep(200);
+        release.countDown();
+
+        assertThat(retry.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void givesUpWaitingOnAClaimThatDoesNotComplete() {
+        rows.put(1L, pending(Instant.now()));
+        CheckoutIdempotency idempotency = new CheckoutIdempotency(requests, transactions(), objectMapper,
+                Duration.ofMillis(200), Duration.ofMinutes(1), Duration.ofMinutes(1), 100, Duration.ofHours(24), meters());
+
+        assertThatThrownBy(() -> idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, new AtomicInteger())))
+                .isInstanceOf(CheckoutInProgressException.class);
+    }
+
+    @Test
+    void abandonedClaimIsTakenOver() {
+        rows.put(1L, pending(Instant.now().minus(Duration.ofMinutes(5))));
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotency.checkout(EMAIL, "key-1", cart(1), checkout(idempotency, runs));
+
+        assertThat(runs).hasValue(1);
+        assertThat(rows.values()).singleElement().satisfies(row -> assertThat(row.getResponse()).isNotNull());
+    }
+
+    @Test
+    void rejectsMalformedKeys() {
+        CheckoutIdempotency idempotency = idempotency(Duration.ofMinutes(1));
+
+        assertThatThrownBy(() -> idempotency.checkout(EMAIL, " ", cart(1), checkout(idempotency, new AtomicInteger())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> idempotency.checkout(EMAIL, "k".repeat(256), cart(1), checkout(idempotency, new AtomicInteger())))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CheckoutIdempotency idempotency(Duration hotWindow) {
+        return new CheckoutIdempotency(requests, transactions(), objectMapper, Duration.ofSeconds(5),
+                Duration.ofMinutes(1), hotWindow, 100, Duration.ofHours(24), meters());
+    }
+
+    private ObjectProvider<MeterRegistry> meters() {
+        return new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class);
+    }
+
+    private static TransactionTemplate transactions() {
+        return new TransactionTemplate(mock(PlatformTransactionManager.class));
+    }
+
+    // Stands in for PurchaseService: creates purchase n and stores the response with the claim
+    private static Function<Claim, PurchaseResponseDto> checkout(CheckoutIdempotency idempotency, AtomicInteger runs) {
+        return claim -> {
+            PurchaseResponseDto response = new PurchaseResponseDto((long) runs.incrementAndGet(), new BigDecimal("9.99"),
+                    "CREATED", List.of(new PurchaseItemDto(1L, "P1", new BigDecimal("9.99"), 1)));
+            idempotency.complete(claim, response);
+            return response;
+        };
+    }
+
+    private static CheckoutDto cart(int quantity) {
+        return new CheckoutDto(List.of(new CheckoutDto.Item(1L, quantity)));
+    }
+
+    private CheckoutRequest pending(Instant createdAt) {
+        return CheckoutRequest.builder()
+                .id(1L)
+                .userEmail(EMAIL)
+                .idempotencyKey("key-1")
+                .requestHash(CheckoutIdempotency.fingerprint(cart(1)))
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private Optional<CheckoutRequest> find(String email, String key) {
+        return rows.values().stream()
+                .filter(r -> r.getUserEmail().equals(email) && r.getIdempotencyKey().equals(key))
+                .findFirst();
+    }
+
+    // Callers get detached entities, like rows read in a finished transaction
+    private static CheckoutRequest copy(CheckoutRequest row) {
+        return new CheckoutRequest(row.getId(), row.getUserEmail(), row.getIdempotencyKey(), row.getRequestHash(),
+                row.getPurchaseId(), row.getResponse(), row.getCreatedAt());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
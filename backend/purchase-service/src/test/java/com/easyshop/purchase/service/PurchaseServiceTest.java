@@ -0,0 +1,297 @@
+package com.easyshop.purchase.service;
+
+import com.easyshop.purchase.client.ProductClient;
+import com.easyshop.purchase.domain.PurchaseItemRepository;
+import com.easyshop.purchase.domain.PurchaseItemRow;
+import com.easyshop.purchase.domain.PurchaseRepository;
+import com.easyshop.purchase.domain.PurchaseSummary;
+import com.easyshop.purchase.outbox.PurchaseEventOutbox;
+import com.easyshop.purchase.web.dto.CheckoutDto;
+import com.easyshop.purchase.web.dto.PurchaseResponseDto;
+import feign.FeignException;
+import feign.Request;
+import feign.RetryableException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class PurchaseServiceTest {
+    private PurchaseRepository purchases;
+    private PurchaseItemRepository items;
+    private ProductClient productClient;
+    private PurchaseEventOutbox events;
+    private CheckoutIdempotency idempotency;
+    private StockReleases releases;
+    private PurchaseService service;
+
+    @BeforeEach
+    void setUp() {
+        purchases = mock(PurchaseRepository.class);
+        items = mock(PurchaseItemRepository.class);
+        productClient = mock(ProductClient.class);
+        events = mock(PurchaseEventOutbox.class);
+        idempotency = mock(CheckoutIdempotency.class);
+        releases = mock(StockReleases.class);
+        when(purchases.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        service = new PurchaseService(purchases, items, productClient,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), events, idempotency, releases);
+    }
+
+    @Test
+    void checkoutFetchesWholeCartInOneCall() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+
+        var result = service.checkout(cart(3), "user@example.com");
+
+        assertThat(result.items()).hasSize(3);
+        assertThat(result.total()).isEqualByComparingTo("6.00");
+        verify(productClient, times(1)).getProducts(anyCollection());
+        verify(productClient, never()).getProduct(anyLong());
+    }
+
+    @Test
+    void checkoutFallsBackToParallelLookupsWithoutBulkEndpoint() {
+        when(productClient.getProducts(anyCollection())).thenThrow(notFound());
+        when(productClient.getProduct(anyLong())).thenAnswer(inv -> info(inv.getArgument(0)));
+
+        var result = service.checkout(cart(4), "user@example.com");
+
+        assertThat(result.items()).hasSize(4);
+        verify(productClient, times(4)).getProduct(anyLong());
+    }
+
+    @Test
+    void fallbackLookupsStayWellWithinTheBulkhead() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(productClient.getProducts(anyCollection())).thenThrow(notFound());
+        when(productClient.getProduct(anyLong())).thenAnswer(inv -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return info(inv.getArgument(0));
+        });
+
+        var result = service.checkout(cart(50), "user@example.com");
+
+        assertThat(result.items()).hasSize(50);
+        assertThat(maxInFlight.get()).isBetween(1, 8);
+    }
+
+    @Test
+    void checkoutReportsUnknownProduct() {
+        when(productClient.getProducts(anyCollection())).thenReturn(List.of(info(1L)));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(PurchaseService.ProductNotFoundException.class);
+        verifyNoInteractions(purchases);
+    }
+
+    @Test
+    void checkoutReservesWholeCartBeforePersisting() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+
+        service.checkout(cart(3), "user@example.com");
+
+        var order = inOrder(productClient, purchases);
+        order.verify(productClient).reserve(argThat(r -> r.items().size() == 3));
+        order.verify(purchases).save(any());
+        verify(releases, never()).release(any());
+    }
+
+    @Test
+    void checkoutRecordsPurchaseCreatedEventWithThePurchase() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+
+        service.checkout(cart(3), "user@example.com");
+
+        var order = inOrder(purchases, events);
+        order.verify(purchases).save(any());
+        order.verify(events).purchaseCreated(argThat(p -> p.getUserEmail().equals("user@example.com")),
+                argThat(lines -> lines.size() == 3));
+    }
+
+    @Test
+    void checkoutWithKeyStoresResponseWithThePurchase() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+        when(idempotency.checkout(eq("user@example.com"), eq("key-1"), any(), any())).thenAnswer(inv ->
+                inv.<Function<CheckoutIdempotency.Claim, PurchaseResponseDto>>getArgument(3)
+                        .apply(new CheckoutIdempotency.Claim(7)));
+
+        var result = service.checkout(cart(2), "user@example.com", "key-1");
+
+        var order = inOrder(purchases, idempotency);
+        order.verify(purchases).save(any());
+        order.verify(idempotency).complete(new CheckoutIdempotency.Claim(7), result);
+    }
+
+    @Test
+    void checkoutFailsWhenReservationConflicts() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+        when(productClient.reserve(any())).thenThrow(new FeignException.Conflict("Conflict", request(), null, Map.of()));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(PurchaseService.StockNotAvailableException.class);
+        verifyNoInteractions(purchases, events);
+        verify(releases, never()).release(any());
+    }
+
+    @Test
+    void cartProductServiceRefusesIsReportedAsInvalidNotUnavailable() {
+        when(productClient.getProducts(anyCollection()))
+                .thenThrow(new FeignException.BadRequest("Bad Request", request(), null, Map.of()));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(PurchaseService.InvalidCartException.class);
+        verify(productClient, never()).reserve(any());
+        verifyNoInteractions(purchases);
+    }
+
+    @Test
+    void refusedReservationIsReportedAsInvalidAndNotReleased() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+        when(productClient.reserve(any()))
+                .thenThrow(new FeignException.BadRequest("Bad Request", request(), null, Map.of()));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(PurchaseService.InvalidCartException.class);
+        verify(releases, never()).release(any());
+        verifyNoInteractions(purchases);
+    }
+
+    @Test
+    void checkoutFailsFastWhenCircuitIsOpen() {
+        CircuitBreaker breaker = CircuitBreaker.ofDefaults("product-service");
+        breaker.transitionToOpenState();
+        when(productClient.getProducts(anyCollection()))
+                .thenThrow(CallNotPermittedException.createCallNotPermittedException(breaker));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(PurchaseService.ServiceUnavailableException.class);
+        verify(productClient, never()).getProduct(anyLong());
+        verify(productClient, never()).reserve(any());
+        verifyNoInteractions(purchases);
+    }
+
+    @Test
+    void checkoutReleasesReservationWhenPersistingFails() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+        when(purchases.save(any())).thenThrow(new IllegalStateException("db down"));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(IllegalStateException.class);
+        UUID reservation = reservedId();
+        verify(releases).release(reservation);
+    }
+
+    @Test
+    void checkoutReleasesReservationWhoseOutcomeIsUnknown() {
+        when(productClient.getProducts(anyCollection())).thenAnswer(inv -> infos(inv.getArgument(0)));
+        when(productClient.reserve(any())).thenThrow(new RetryableException(-1, "Read timed out",
+                Request.HttpMethod.POST, (Long) null, request()));
+
+        assertThatThrownBy(() -> service.checkout(cart(2), "user@example.com"))
+                .isInstanceOf(PurchaseService.ServiceUnavailableException.class);
+        UUID reservation = reservedId();
+        verify(releases).release(reservation);
+        verifyNoInteractions(purchases);
+    }
+
+    @Test
+    void listFetchesItemsForWholePageInOneQuery() {
+        Instant now = Instant.parse("2024-05-01T10:00:00Z");
+        when(purchases.findHistory(eq("user@example.com"), any(Limit.class))).thenReturn(List.of(
+                summary(3L, now), summary(2L, now), summary(1L, now.minusSeconds(60))));
+        when(items.findRowsByPurchaseIds(anyCollection())).thenReturn(List.of(
+                new PurchaseItemRow(3L, 10L, "P10", BigDecimal.ONE, 1),
+                new PurchaseItemRow(3L, 11L, "P11", BigDecimal.ONE, 2),
+                new PurchaseItemRow(2L, 10L, "P10", BigDecimal.ONE, 1)));
+
+        var page = service.list("user@example.com", null, 2);
+
+        assertThat(page.items()).extracting(r -> r.id()).containsExactly(3L, 2L);
+        assertThat(page.items().get(0).items()).hasSize(2);
+        assertThat(page.items().get(1).items()).hasSize(1);
+        assertThat(page.nextCursor()).isNotNull();
+        verify(purchases).findHistory("user@example.com", Limit.of(3));
+        verify(items, times(1)).findRowsByPurchaseIds(List.of(3L, 2L));
+    }
+
+    @Test
+    void listContinuesFromCursor() {
+        Instant createdAt = Instant.parse("2024-05-01T10:00:00.123456Z");
+        String cursor = PurchaseCursor.encode(createdAt, 2L);
+        when(purchases.findHistoryBefore(anyString(), any(), anyLong(), any(Limit.class)))
+                .thenReturn(List.of(summary(1L, createdAt)));
+
+        var page = service.list("user@example.com", cursor, null);
+
+        assertThat(page.items()).hasSize(1);
+        assertThat(page.nextCursor()).isNull();
+        verify(purchases).findHistoryBefore("user@example.com", createdAt, 2L,
+                Limit.of(PurchaseService.DEFAULT_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void listRejectsInvalidCursor() {
+        assertThatThrownBy(() -> service.list("user@example.com", "not-a-cursor", null))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(purchases, items);
+    }
+
+    private static PurchaseSummary summary(Long id, Instant createdAt) {
+        return new PurchaseSummary(id, BigDecimal.ONE, "CREATED", createdAt);
+    }
+
+    private static CheckoutDto cart(int size) {
+        return new CheckoutDto(LongStream.rangeClosed(1, size)
+                .mapToObj(id -> new CheckoutDto.Item(id, 1))
+                .toList());
+    }
+
+    private static List<ProductClient.ProductInfo> infos(Collection<Long> ids) {
+        return ids.stream().map(PurchaseServiceTest::info).toList();
+    }
+
+    private static ProductClient.ProductInfo info(Long id) {
+        return new ProductClient.ProductInfo(id, "P" + id, null, BigDecimal.valueOf(id).setScale(2), 100);
+    }
+
+    private UUID reservedId() {
+        ArgumentCaptor<ProductClient.ReservationRequest> reserved = ArgumentCaptor.forClass(ProductClient.ReservationRequest.class);
+        verify(productClient).reserve(reserved.capture());
+        assertThat(reserved.getValue().reservationId()).isNotNull();
+        return reserved.getValue().reservationId();
+    }
+
+    private static FeignException notFound() {
+        return new FeignException.NotFound("Not Found", request(), null, Map.of());
+    }
+
+    private static Request request() {
+        return Request.create(Request.HttpMethod.GET, "/api/products", Map.of(), null, StandardCharsets.UTF_8, null);
+    }
+}
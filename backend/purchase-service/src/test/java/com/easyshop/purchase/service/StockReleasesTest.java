@@ -0,0 +1,139 @@
+package com.easyshop.purchase.service;
+
+import com.easyshop.purchase.client.ProductClient;
+import com.easyshop.purchase.domain.PendingRelease;
+import com.easyshop.purchase.domain.PendingReleaseRepository;
+import feign.FeignException;
+import feign.Request;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockReleasesTest {
+
+    private final Map<UUID, PendingRelease> table = new LinkedHashMap<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PendingReleaseRepository pending;
+    private ProductClient productClient;
+    private StockReleases releases;
+
+    @BeforeEach
+    void setUp() {
+        pending = mock(PendingReleaseRepository.class);
+        productClient = mock(ProductClient.class);
+        when(pending.save(any())).thenAnswer(inv -> {
+            PendingRelease release = inv.getArgument(0);
+            table.put(release.getReservationId(), release);
+            return release;
+        });
+        when(pending.findDue(any(Instant.class), any(Limit.class))).thenAnswer(inv -> {
+            Instant now = inv.getArgument(0);
+            return table.values().stream()
+                    .filter(r -> !r.getRetryAt().isAfter(now))
+                    .sorted(Comparator.comparing(PendingRelease::getRetryAt))
+                    .limit(inv.<Limit>getArgument(1).max())
+                    .toList();
+        });
+        doAnswer(inv -> {
+            inv.<List<PendingRelease>>getArgument(0).forEach(r -> table.remove(r.getReservationId()));
+            return null;
+        }).when(pending).deleteAllInBatch(anyCollection());
+        releases = new StockReleases(pending, productClient, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofSeconds(3),
+                new StaticListableBeanFactory(Map.of("registry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releases.close();
+    }
+
+    @Test
+    void releaseThatGoesThroughStoresNothing() {
+        UUID reservation = UUID.randomUUID();
+
+        releases.release(reservation);
+
+        verify(productClient).release(reservation);
+        assertThat(table).isEmpty();
+    }
+
+    @Test
+    void failedReleaseIsStoredAndRetriedWithGrowingBackoffUntilItGoesThrough() {
+        UUID reservation = UUID.randomUUID();
+        doThrow(unavailable()).doThrow(unavailable()).doThrow(unavailable()).doNothing()
+                .when(productClient).release(reservation);
+
+        releases.release(reservation);
+
+        PendingRelease stored = table.get(reservation);
+        assertThat(stored.getAttempts()).isEqualTo(1);
+        assertThat(stored.getRetryAt()).isCloseTo(Instant.now().plusSeconds(1), within(500, ChronoUnit.MILLIS));
+        assertThat(releases.retryDue()).isZero();
+        assertThat(registry.get("purchase.release.queued").counter().count()).isEqualTo(1);
+
+        dueNow(reservation);
+        assertThat(releases.retryDue()).isZero();
+        assertThat(stored.getAttempts()).isEqualTo(2);
+        assertThat(stored.getRetryAt()).isCloseTo(Instant.now().plusSeconds(2), within(500, ChronoUnit.MILLIS));
+
+        dueNow(reservation);
+        assertThat(releases.retryDue()).isZero();
+        assertThat(stored.getAttempts()).isEqualTo(3);
+        assertThat(stored.getRetryAt()).isCloseTo(Instant.now().plusSeconds(3), within(500, ChronoUnit.MILLIS));
+
+        dueNow(reservation);
+        assertThat(releases.retryDue()).isEqualTo(1);
+        assertThat(table).isEmpty();
+        verify(productClient, times(4)).release(reservation);
+    }
+
+    @Test
+    void releaseThatCannotBeStoredIsOnlyLogged() {
+        UUID reservation = UUID.randomUUID();
+        doThrow(unavailable()).when(productClient).release(reservation);
+        doThrow(new IllegalStateException("db down")).when(pending).save(any());
+
+        releases.release(reservation);
+
+        assertThat(table).isEmpty();
+    }
+
+    private void dueNow(UUID reservation) {
+        table.get(reservation).setRetryAt(Instant.now());
+    }
+
+    private static FeignException unavailable() {
+        return new FeignException.ServiceUnavailable("Unavailable",
+                Request.create(Request.HttpMethod.POST, "/api/admin/products/reservations", Map.of(), null,
+                        StandardCharsets.UTF_8, null),
+                null, Map.of());
+    }
+}
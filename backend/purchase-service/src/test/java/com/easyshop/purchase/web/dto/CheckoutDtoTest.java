@@ -0,0 +1,63 @@
+package com.easyshop.purchase.web.dto;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CheckoutDtoTest {
+
+    private static ValidatorFactory factory;
+    private static Validator validator;
+
+    @BeforeAll
+    static void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        validator = factory.getValidator();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void acceptsCartProductServiceCanLookUpInOneCall() {
+        assertThat(validator.validate(cart(CheckoutDto.MAX_ITEMS, 1))).isEmpty();
+    }
+
+    @Test
+    void rejectsEmptyCart() {
+        assertThat(messages(new CheckoutDto(List.of()))).containsExactly("Empty cart");
+        assertThat(messages(new CheckoutDto(null))).containsExactly("Empty cart");
+    }
+
+    @Test
+    void rejectsCartLargerThanOneLookup() {
+        assertThat(messages(cart(CheckoutDto.MAX_ITEMS + 1, 1))).containsExactly("Too many items in the cart");
+    }
+
+    @Test
+    void rejectsQuantityBelowOne() {
+        assertThat(messages(cart(2, 0))).containsOnly("Quantity must be at least 1");
+        assertThat(messages(new CheckoutDto(List.of(new CheckoutDto.Item(1L, null))))).hasSize(1);
+    }
+
+    private static List<String> messages(CheckoutDto dto) {
+        return validator.validate(dto).stream().map(ConstraintViolation::getMessage).toList();
+    }
+
+    private static CheckoutDto cart(int size, int quantity) {
+        return new CheckoutDto(LongStream.rangeClosed(1, size)
+                .mapToObj(id -> new CheckoutDto.Item(id, quantity))
+                .toList());
+    }
+}
@@ -6,7 +6,19 @@ import ProtectedRoute from '../components/ProtectedRoute'
 function AdminContent(){
   const { t } = useTranslation()
   const [list,setList]=useState([])
-  async function load(){ try{ const l = await api('/products'); setList(l) } catch(e){ alert(e.message) } }
+  // Follows the cursor so the whole catalog is listed, however large
+  async function load(){
+    try{
+      let page = await api('/products?limit=100')
+      const items = [...page.items]
+      while (page.nextCursor){
+        page = await api('/products?limit=100&cursor='+encodeURIComponent(page.nextCursor))
+        items.push(...page.items)
+      }
+      setList(items)
+    }
+    catch(e){ alert(e.message) }
+  }
   useEffect(()=>{ load() },[])
   async function create(e){
     e.preventDefault()
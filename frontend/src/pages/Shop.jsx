@@ -7,18 +7,27 @@ export default function Shop(){
   const [list,setList]=useState([])
   const [loading,setLoading]=useState(true)
   const [error,setError]=useState(null)
+  const [nextCursor,setNextCursor]=useState(null)
   
   useEffect(()=>{ 
     setLoading(true)
     setError(null)
     api('/products')
-      .then(setList)
+      .then(page=>{ setList(page.items); setNextCursor(page.nextCursor) })
       .catch(e=>{
         console.error('Failed to load products:', e)
         setError(e.message)
       })
       .finally(()=>setLoading(false))
   },[])
+  async function loadMore(){
+    try{
+      const page = await api('/products?cursor='+encodeURIComponent(nextCursor))
+      setList(l=>[...l, ...page.items])
+      setNextCursor(page.nextCursor)
+    }
+    catch(e){ alert(e.message) }
+  }
   async function buyOne(p){
     if (!getToken()){ alert(t('shop.login_first')); return }
     try{ await api('/purchases/checkout', { method:'POST', body: JSON.stringify({ items: [{ productId: p.id, quantity: 1 }] }) }); alert(t('shop.order_done')) }
@@ -68,6 +77,11 @@ export default function Shop(){
           ))}
         </div>
       )}
+      {nextCursor && (
+        <div style={{textAlign: 'center', padding: '20px'}}>
+          <button onClick={loadMore}>{t('shop.load_more')}</button>
+        </div>
+      )}
     </div>
   )
 }